@@ -0,0 +1,92 @@
+package ch.inftec.ju.json;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import ch.inftec.ju.util.ChainFileResourceType;
+import ch.inftec.ju.util.JuException;
+import ch.inftec.ju.util.JuStringUtils;
+
+/**
+ * Chain file resource type <code>json</code> that reads properties from JSON documents, e.g.
+ * <code>60,json,config/app.json,optional</code>
+ * <p>
+ * The document is parsed as a stream, without building a tree, and flattened to dotted keys:
+ * <code>{"db": {"url": "jdbc:h2", "users": ["sa", "admin"]}}</code> results in the properties
+ * <code>db.url=jdbc:h2</code>, <code>db.users.0=sa</code> and <code>db.users.1=admin</code>.
+ * <p>
+ * Numbers and booleans are stored as their JSON text. Null values are ignored, i.e. the keys are undefined.
+ * The root of the document must be an object.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+public class JsonChainFileResourceType implements ChainFileResourceType {
+	/**
+	 * JsonFactory is thread safe and meant to be reused.
+	 */
+	private static final JsonFactory jsonFactory = new JsonFactory();
+	
+	@Override
+	public String getName() {
+		return "json";
+	}
+	
+	@Override
+	public Properties load(URL resourceUrl) throws JuException {
+		try (InputStream in = resourceUrl.openStream();
+				JsonParser parser = jsonFactory.createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new JuException("Root of JSON document must be an object: %s", resourceUrl);
+			}
+			
+			Properties props = new Properties();
+			this.readObject(parser, "", props);
+			return props;
+		} catch (JuException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new JuException("Couldn't load properties from JSON %s", ex, resourceUrl);
+		}
+	}
+	
+	/**
+	 * Reads the fields of an object. The parser must be positioned at the START_OBJECT token.
+	 */
+	private void readObject(JsonParser parser, String prefix, Properties props) throws Exception {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String key = prefix.isEmpty() ? parser.getCurrentName() : prefix + "." + parser.getCurrentName();
+			this.readValue(parser, parser.nextToken(), key, props);
+		}
+	}
+	
+	/**
+	 * Reads the elements of an array. The parser must be positioned at the START_ARRAY token.
+	 */
+	private void readArray(JsonParser parser, String prefix, Properties props) throws Exception {
+		int index = 0;
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			this.readValue(parser, token, prefix + "." + index++, props);
+		}
+	}
+	
+	private void readValue(JsonParser parser, JsonToken token, String key, Properties props) throws Exception {
+		if (token == JsonToken.START_OBJECT) {
+			this.readObject(parser, key, props);
+		} else if (token == JsonToken.START_ARRAY) {
+			this.readArray(parser, key, props);
+		} else if (token != JsonToken.VALUE_NULL) {
+			props.setProperty(key, parser.getText());
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return JuStringUtils.toString(this);
+	}
+}
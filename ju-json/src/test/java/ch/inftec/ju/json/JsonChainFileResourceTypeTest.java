@@ -0,0 +1,38 @@
+package ch.inftec.ju.json;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ch.inftec.ju.util.JuUrl;
+import ch.inftec.ju.util.PropertyChain;
+import ch.inftec.ju.util.PropertyChainBuilder;
+import ch.inftec.ju.util.TestUtils;
+
+public class JsonChainFileResourceTypeTest {
+	@Test
+	public void canLoad_jsonDocument_asFlattenedProperties() throws Exception {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addPropertiesPropertyEvaluator(new JsonChainFileResourceType().load(
+					JuUrl.resource("ch/inftec/ju/json/JsonChainFileResourceTypeTest.json")))
+			.getPropertyChain();
+		
+		TestUtils.assertCollectionEquals(chain.listKeys()
+				, "app.debug", "app.name", "app.port", "app.url", "servers.0.host", "servers.1.host", "servers.1.tags.0", "servers.1.tags.1");
+		Assert.assertEquals(8080, chain.getInt("app.port"));
+		Assert.assertFalse(chain.getBoolean("app.debug"));
+		Assert.assertNull(chain.get("app.description"));
+		Assert.assertEquals("h2", chain.get("servers.1.host"));
+		Assert.assertEquals("b", chain.get("servers.1.tags.1"));
+	}
+	
+	@Test
+	public void canResolve_jsonType_inChainFiles() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addEvaluatorsByChainFiles()
+				.name("ch/inftec/ju/json/JsonChainFileResourceTypeTest.files")
+				.resolve()
+			.getPropertyChain();
+		
+		Assert.assertEquals("http://ju:8080", chain.get("app.url"));
+	}
+}
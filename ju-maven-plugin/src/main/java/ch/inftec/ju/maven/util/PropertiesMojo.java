@@ -1,15 +1,25 @@
 package ch.inftec.ju.maven.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -19,10 +29,12 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
 import ch.inftec.ju.security.JuSecurityUtils;
+import ch.inftec.ju.util.JuCollectionUtils;
+import ch.inftec.ju.util.JuRuntimeException;
+import ch.inftec.ju.util.JuUrl;
+import ch.inftec.ju.util.KeyMatcher;
 import ch.inftec.ju.util.PropertyChain;
 import ch.inftec.ju.util.PropertyChain.PropertyInfo;
-import ch.inftec.ju.util.PropertyChainBuilder;
-import ch.inftec.ju.util.RegexUtil;
 
 /**
  * Mojo that allows to load properties from a property chain.
@@ -38,136 +50,377 @@ public class PropertiesMojo extends AbstractMojo {
 	@Component
 	private MavenProject project;
 	
-	private Map<FilterConfig, List<RegexUtil>> includedPatterns = new HashMap<>();
+	@Parameter(defaultValue="${session}", readonly=true)
+	private MavenSession session;
 	
-	private Map<FilterConfig, List<RegexUtil>> excludedPatterns = new HashMap<>();
+	/**
+	 * Matcher containing the include and exclude patterns of the filter and exportToSystemProperty configs.
+	 */
+	private KeyMatcher keyMatcher;
+	
+	/**
+	 * Indexes of the first filter include, filter exclude, export include and export exclude pattern within the
+	 * keyMatcher, followed by the total number of patterns.
+	 */
+	private int[] keyMatcherOffsets;
 	
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
 		if (this.chain != null) {
-			PropertyChainBuilder chainBuilder = new PropertyChainBuilder();
-			
+			List<Path> resourceFolders = new ArrayList<>();
 			if (this.chain.resourceFolders.size() == 0) {
-				chainBuilder.addResourceFolder(this.project.getBasedir().toPath());
+				resourceFolders.add(this.project.getBasedir().toPath());
 			} else {
 				for (File resourceFolder : this.chain.resourceFolders) {
 					if (this.chain.silentlyIgnoreMissingResourceFolder && !resourceFolder.exists()) {
 						// Ignore resource
 					} else {
-						chainBuilder.addResourceFolder(resourceFolder.toPath());
+						resourceFolders.add(resourceFolder.toPath());
 					}
 				}
 			}
-				
-			for (ChainElementConfig chainElement : this.chain.chainElements) {
-				if (chainElement.lookupConfigFile != null && chainElement.lookupConfigFile.fileName != null) {
-					chainBuilder.addEvaluatorsByChainFiles()
-						.name(chainElement.lookupConfigFile.fileName)
-						.resolve();
-				}
-				if (chainElement.systemProperties != null) {
-					chainBuilder.addSystemPropertyEvaluator();
+			
+			PropertiesMojoCache cache = null;
+			String configHash = null;
+			if (this.chain.incremental) {
+				configHash = this.getCacheConfigFingerprint(resourceFolders).get();
+				cache = this.createCache(configHash);
+				PropertiesMojoCache.CachedProperties cachedProperties = cache.read();
+				if (cachedProperties != null
+						&& this.getInputFingerprint(configHash, resourceFolders, cachedProperties.inputs).equals(cachedProperties.fingerprint)) {
+					this.getLog().info("Properties are up to date, using cached properties");
+					for (PropertiesMojoCache.CachedProperty property : cachedProperties.properties) {
+						this.addProperty(property.key, property.value, property.value, property.exportToSystemProperties);
+					}
+					return;
 				}
 			}
 			
-			Set<String> exportedProperty = new HashSet<>();
+			PropertiesMojoChainCache.ResolvedChain resolvedChain;
+			if (this.chain.shareChain && this.session != null) {
+				resolvedChain = this.getSharedChain(resourceFolders);
+			} else {
+				resolvedChain = this.resolveChain(resourceFolders);
+			}
+			PropertyChain chain = resolvedChain.chain;
+			Set<String> exportedProperty = resolvedChain.exportedProperties;
 			
-			// Add explicit properties (if any)
-			if (this.chain.properties.size() > 0) {
-				Properties props = new Properties();
-				for (Property property : this.chain.properties) {
-					String key = chainBuilder.peekChain().interpolate(property.key);
-					String value = property.value;
-					
-					if (value == null) continue;
-					
-					props.put(key, value);
-					
-					if (property.exportToSystemProperty) {
-						exportedProperty.add(key);
+			// Match each key against all filter patterns in one go
+			List<String> includedKeys = new ArrayList<>();
+			Set<String> exportedKeys = new HashSet<>();
+			for (String key : chain.listKeys()) {
+				BitSet matches = this.getKeyMatcher().getMatches(key);
+				if (this.isIncluded(matches, this.chain.filter, 0, true)) {
+					includedKeys.add(key);
+					if (this.isIncluded(matches, this.chain.exportToSystemProperty, 2, false)) {
+						exportedKeys.add(key);
 					}
 				}
+			}
+			
+			// Resolve all keys in bulk
+			Map<String, String> values = chain.getAll(includedKeys);
+			
+			// Fingerprint the inputs before adding the properties, as exported properties might be inputs themselves
+			PropertiesMojoCache.Inputs inputs = null;
+			String inputFingerprint = null;
+			if (cache != null) {
+				inputs = new PropertiesMojoCache.Inputs(resolvedChain.inputs.getResolvedResources().keySet()
+						, resolvedChain.inputs.getSystemPropertyKeys()
+						, resolvedChain.inputs.isSystemPropertiesListed()
+						, resolvedChain.inputs.getEnvironmentVariableKeys());
+				inputFingerprint = this.getInputFingerprint(configHash, resourceFolders, inputs);
+			}
+			
+			boolean sensitive = false;
+			for (Map.Entry<String, String> entry : values.entrySet()) {
+				String key = entry.getKey();
+				
+				boolean exportToSystemProperties = exportedKeys.contains(key) || exportedProperty.contains(key);
+				
+				String displayValue = entry.getValue();
+				if (this.chain.logAddedKeys || cache != null) {
+					PropertyInfo pi = chain.getInfo(key);
+					displayValue = pi.getDisplayValue();
+					sensitive |= pi.isSensitive();
+				}
+				this.addProperty(key, entry.getValue(), displayValue, exportToSystemProperties);
 				
-				chainBuilder.addPropertiesPropertyEvaluator(props);
+				if (cache != null) {
+					cache.add(key, entry.getValue(), exportToSystemProperties);
+				}
 			}
 			
-			// Set decryptor (if any)
-			if (this.chain.decryptor != null) {
-				if (!StringUtils.isEmpty(this.chain.decryptor.decryptionPasswordPropertyName)) {
-					String decryptionPassword = chainBuilder.peekChain().get(this.chain.decryptor.decryptionPasswordPropertyName);
-					chainBuilder.setDecryptor(JuSecurityUtils.buildEncryptor()
-							.password(decryptionPassword)
-							.strong(this.chain.decryptor.strongEncryption)
-							.createTextEncryptor());
-				} else if (!StringUtils.isEmpty(this.chain.decryptor.keyFilePathPropertyName)) {
-					String keyFileName = chainBuilder.peekChain().get(this.chain.decryptor.keyFilePathPropertyName);
-					try {
-						chainBuilder.setDecryptorByResource(keyFileName, this.chain.decryptor.strongEncryption);
-					} catch (Exception ex) {
-						if (this.chain.decryptor.ignoreMissingDecryption) {
-							this.getLog().warn("Couldn't set decryptor. Continuing as ignoreMissingDecryption is true: " + ex);
-						} else {
-							throw ex;
-						}
-					}
+			if (cache != null) {
+				if (sensitive) {
+					// Never write decrypted values to disk
+					this.getLog().info("Properties contain sensitive values and won't be cached");
+					cache.delete();
+				} else {
+					cache.write(inputs, inputFingerprint);
 				}
 			}
+		}
+	}
+	
+	private PropertiesMojoChainCache.ResolvedChain resolveChain(List<Path> resourceFolders) throws MojoExecutionException {
+		PropertiesMojoChainBuilder chainBuilder = new PropertiesMojoChainBuilder();
+		for (Path resourceFolder : resourceFolders) {
+			chainBuilder.addResourceFolder(resourceFolder);
+		}
 			
-			PropertyChain chain = chainBuilder.getPropertyChain();
-			Set<String> keys = chain.listKeys();
+		for (ChainElementConfig chainElement : this.chain.chainElements) {
+			if (chainElement.lookupConfigFile != null && chainElement.lookupConfigFile.fileName != null) {
+				chainBuilder.addEvaluatorsByChainFiles()
+					.name(chainElement.lookupConfigFile.fileName)
+					.resolve();
+			}
+			if (chainElement.systemProperties != null) {
+				chainBuilder.addSystemPropertyEvaluator();
+			}
+		}
+		
+		Set<String> exportedProperty = new HashSet<>();
+		
+		// Add explicit properties (if any)
+		if (this.chain.properties.size() > 0) {
+			Properties props = new Properties();
+			for (Property property : this.chain.properties) {
+				String key = chainBuilder.peekChain().interpolate(property.key);
+				String value = property.value;
+				
+				if (value == null) continue;
+				
+				props.put(key, value);
+				
+				if (property.exportToSystemProperty) {
+					exportedProperty.add(key);
+				}
+			}
 			
-			for (String key : keys) {
-				if (this.isIncluded(key, this.chain.filter, true)) {
-					PropertyInfo pi = chain.getInfo(key);
-					
-					this.project.getProperties().put(key, pi.getValue());
-					
-					boolean exportToSystemProperties = this.isIncluded(key, this.chain.exportToSystemProperty, false)
-							|| exportedProperty.contains(key);
-					if (exportToSystemProperties) {
-						System.setProperty(key, pi.getValue());
-					}
-					if (this.chain.logAddedKeys) {
-						String addedKeyLog = String.format("Added key: %s=%s", key, pi.getDisplayValue());
-						if (exportToSystemProperties) addedKeyLog += " (-> sys-export)";
-						this.getLog().info(addedKeyLog);
+			chainBuilder.addPropertiesPropertyEvaluator(props);
+		}
+		
+		// Set decryptor (if any)
+		if (this.chain.decryptor != null) {
+			if (!StringUtils.isEmpty(this.chain.decryptor.decryptionPasswordPropertyName)) {
+				String decryptionPassword = chainBuilder.peekChain().get(this.chain.decryptor.decryptionPasswordPropertyName);
+				chainBuilder.setDecryptor(JuSecurityUtils.buildEncryptor()
+						.password(decryptionPassword)
+						.strong(this.chain.decryptor.strongEncryption)
+						.createTextEncryptor());
+			} else if (!StringUtils.isEmpty(this.chain.decryptor.keyFilePathPropertyName)) {
+				String keyFileName = chainBuilder.peekChain().get(this.chain.decryptor.keyFilePathPropertyName);
+				try {
+					chainBuilder.setDecryptorByResource(keyFileName, this.chain.decryptor.strongEncryption);
+				} catch (Exception ex) {
+					if (this.chain.decryptor.ignoreMissingDecryption) {
+						this.getLog().warn("Couldn't set decryptor. Continuing as ignoreMissingDecryption is true: " + ex);
+					} else {
+						throw ex;
 					}
 				}
 			}
 		}
+		
+		// The chain is only used during this execution (or shared by executions with the same configuration),
+		// so we can cache resolved values
+		PropertyChain chain = chainBuilder
+				.setCacheResolvedValues(true)
+				.getPropertyChain();
+		
+		return new PropertiesMojoChainCache.ResolvedChain(chain, exportedProperty, chainBuilder, resourceFolders);
 	}
 	
-	private boolean isIncluded(String key, FilterConfig filter, boolean includeIfNoFilter) {
-		if (filter != null) {
-			List<RegexUtil> includedPatterns = this.includedPatterns.get(filter);
-			List<RegexUtil> excludedPatterns = this.excludedPatterns.get(filter);
-			if (includedPatterns == null) {
-				includedPatterns = new ArrayList<>();
-				this.includedPatterns.put(filter, includedPatterns);
-				excludedPatterns = new ArrayList<>();
-				this.excludedPatterns.put(filter, excludedPatterns);
-				
-				if (this.chain != null && filter != null) {
-					for (String includeFilter : filter.includes) {
-						includedPatterns.add(new RegexUtil(includeFilter));
-					}
-					for (String excludeFilter : filter.excludes) {
-						excludedPatterns.add(new RegexUtil(excludeFilter));
-					}
+	/**
+	 * Gets the chain from the session, resolving it if no module with the same chain configuration and the
+	 * same resources in its resource folders has resolved it yet.
+	 */
+	private PropertiesMojoChainCache.ResolvedChain getSharedChain(final List<Path> resourceFolders) throws MojoExecutionException {
+		try {
+			return PropertiesMojoChainCache.get(this.session, this.getChainFingerprint().get(), resourceFolders
+					, new Callable<PropertiesMojoChainCache.ResolvedChain>() {
+						@Override
+						public PropertiesMojoChainCache.ResolvedChain call() throws Exception {
+							return PropertiesMojo.this.resolveChain(resourceFolders);
+						}
+					});
+		} catch (RuntimeException | MojoExecutionException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new MojoExecutionException("Couldn't resolve chain", ex);
+		}
+	}
+	
+	private void addProperty(String key, String value, String displayValue, boolean exportToSystemProperties) {
+		this.project.getProperties().put(key, value);
+		
+		if (exportToSystemProperties) {
+			System.setProperty(key, value);
+		}
+		if (this.chain.logAddedKeys) {
+			String addedKeyLog = String.format("Added key: %s=%s", key, displayValue);
+			if (exportToSystemProperties) addedKeyLog += " (-> sys-export)";
+			this.getLog().info(addedKeyLog);
+		}
+	}
+	
+	/**
+	 * Gets a fingerprint of the configuration the chain is resolved from, not including the resource folders.
+	 */
+	private PropertiesMojoCache.Fingerprint getChainFingerprint() {
+		PropertiesMojoCache.Fingerprint chainFingerprint = new PropertiesMojoCache.Fingerprint();
+		for (ChainElementConfig chainElement : this.chain.chainElements) {
+			chainFingerprint.add("lookupConfigFile", chainElement.lookupConfigFile != null ? chainElement.lookupConfigFile.fileName : null);
+			chainFingerprint.add("systemProperties", chainElement.systemProperties != null);
+		}
+		for (Property property : this.chain.properties) {
+			chainFingerprint.add(property.key, property.value);
+			chainFingerprint.add("exportToSystemProperty", property.exportToSystemProperty);
+		}
+		DecryptorConfig decryptor = this.chain.decryptor;
+		chainFingerprint.add("decryptor", decryptor != null);
+		if (decryptor != null) {
+			chainFingerprint.add("decryptionPasswordPropertyName", decryptor.decryptionPasswordPropertyName);
+			chainFingerprint.add("keyFilePathPropertyName", decryptor.keyFilePathPropertyName);
+			chainFingerprint.add("strongEncryption", decryptor.strongEncryption);
+			chainFingerprint.add("ignoreMissingDecryption", decryptor.ignoreMissingDecryption);
+		}
+		return chainFingerprint;
+	}
+	
+	/**
+	 * Gets a fingerprint of the configuration of incremental builds, i.e. the chain configuration, the
+	 * resource folders and the filters.
+	 */
+	private PropertiesMojoCache.Fingerprint getCacheConfigFingerprint(List<Path> resourceFolders) {
+		PropertiesMojoCache.Fingerprint configFingerprint = this.getChainFingerprint();
+		for (Path resourceFolder : resourceFolders) {
+			configFingerprint.add("resourceFolder", resourceFolder.toAbsolutePath().normalize());
+		}
+		for (FilterConfig filter : Arrays.asList(this.chain.filter, this.chain.exportToSystemProperty)) {
+			configFingerprint.add("filter", filter != null);
+			if (filter != null) {
+				configFingerprint.add("includes", filter.includes);
+				configFingerprint.add("excludes", filter.excludes);
+			}
+		}
+		return configFingerprint;
+	}
+		
+	/**
+	 * Creates the cache for incremental builds.
+	 * <p>
+	 * Executions with different configurations use different cache files.
+	 */
+	private PropertiesMojoCache createCache(String configHash) {
+		Path buildDirectory = this.project.getBuild() != null && this.project.getBuild().getDirectory() != null
+				? Paths.get(this.project.getBuild().getDirectory())
+				: this.project.getBasedir().toPath().resolve("target");
+		
+		return new PropertiesMojoCache(buildDirectory.resolve("ju-properties").resolve(configHash.substring(0, 16) + ".properties"));
+	}
+	
+	/**
+	 * Computes the fingerprint of the inputs a chain has been resolved from.
+	 * <p>
+	 * Covers the configuration, the contents of the resources looked up by the chain (in the resource folders
+	 * as well as on the classpath, so new resources hiding the used ones are detected) and the system properties
+	 * and environment variables read by the chain. If the chain listed the system properties, the keys of the
+	 * system properties passing the filter are included as well.
+	 */
+	private String getInputFingerprint(String configHash, List<Path> resourceFolders, PropertiesMojoCache.Inputs inputs) {
+		PropertiesMojoCache.Fingerprint inputFingerprint = new PropertiesMojoCache.Fingerprint()
+				.add("config", configHash);
+		
+		for (String resourceName : inputs.resourceNames) {
+			// Same lookups as the PropertyChainBuilder uses
+			for (Path resourceFolder : resourceFolders) {
+				Path resourcePath = resourceFolder.resolve(resourceName).toAbsolutePath().normalize();
+				if (Files.isRegularFile(resourcePath)) {
+					inputFingerprint.addResource(JuUrl.toUrl(resourcePath));
+				} else {
+					inputFingerprint.add(resourcePath.toString(), "missing");
 				}
 			}
-			
-			for (RegexUtil ru :excludedPatterns) {
-				if (ru.matches(key)) return false;
+			try {
+				for (URL resourceUrl : Collections.list(Thread.currentThread().getContextClassLoader().getResources(resourceName))) {
+					inputFingerprint.addResource(resourceUrl);
+				}
+			} catch (IOException ex) {
+				throw new JuRuntimeException("Couldn't lookup resource %s", ex, resourceName);
 			}
-			if (includedPatterns.size() == 0) {
-				return true;
-			} else {
-				for (RegexUtil ru : includedPatterns) {
-					if (ru.matches(key)) return true;
+		}
+		
+		inputFingerprint.add("systemPropertiesListed", inputs.systemPropertiesListed);
+		if (inputs.systemPropertiesListed) {
+			for (String key : new TreeSet<>(JuCollectionUtils.getKeyStrings(System.getProperties()))) {
+				if (this.isIncluded(this.getKeyMatcher().getMatches(key), this.chain.filter, 0, true)) {
+					inputFingerprint.add("systemProperty", key);
+				}
+			}
+		}
+		for (String key : inputs.systemPropertyKeys) {
+			inputFingerprint.add(key, System.getProperty(key));
+		}
+		if (!inputs.environmentVariableKeys.isEmpty()) {
+			PropertiesMojoChainBuilder environment = new PropertiesMojoChainBuilder();
+			for (String key : inputs.environmentVariableKeys) {
+				inputFingerprint.add("environmentVariable", key);
+				inputFingerprint.add(key, environment.getEnvironmentVariable(key));
+			}
+		}
+		
+		return inputFingerprint.get();
+	}
+	
+	private KeyMatcher getKeyMatcher() {
+		if (this.keyMatcher == null) {
+			KeyMatcher.KeyMatcherBuilder builder = KeyMatcher.build();
+			List<Integer> offsets = new ArrayList<>();
+			int patterns = 0;
+			for (FilterConfig filter : Arrays.asList(this.chain.filter, this.chain.exportToSystemProperty)) {
+				offsets.add(patterns);
+				if (filter != null) {
+					builder.regexes(filter.includes);
+					patterns += filter.includes.size();
+				}
+				offsets.add(patterns);
+				if (filter != null) {
+					builder.regexes(filter.excludes);
+					patterns += filter.excludes.size();
 				}
+			}
+			offsets.add(patterns);
+			
+			this.keyMatcherOffsets = new int[offsets.size()];
+			for (int i = 0; i < offsets.size(); i++) {
+				this.keyMatcherOffsets[i] = offsets.get(i);
+			}
+			this.keyMatcher = builder.create();
+		}
+		return this.keyMatcher;
+	}
+	
+	/**
+	 * Checks whether a key is included by a filter.
+	 * @param matches Patterns of the keyMatcher matching the key
+	 * @param filter Filter
+	 * @param offsetIndex Index of the filter's include offset within keyMatcherOffsets
+	 * @param includeIfNoFilter Result if no filter is configured
+	 * @return True if no exclude pattern matches and either there are no include patterns or one of them matches
+	 */
+	private boolean isIncluded(BitSet matches, FilterConfig filter, int offsetIndex, boolean includeIfNoFilter) {
+		if (filter != null) {
+			int includesStart = this.keyMatcherOffsets[offsetIndex];
+			int excludesStart = this.keyMatcherOffsets[offsetIndex + 1];
+			int excludesEnd = this.keyMatcherOffsets[offsetIndex + 2];
+			
+			if (!matches.get(excludesStart, excludesEnd).isEmpty()) {
 				return false;
 			}
+			return includesStart == excludesStart
+					|| !matches.get(includesStart, excludesStart).isEmpty();
 		} else {
 			return includeIfNoFilter;
 		}
@@ -231,6 +484,35 @@ public class PropertiesMojo extends AbstractMojo {
 		
 		@Parameter
 		private DecryptorConfig decryptor;
+		
+		/**
+		 * Flag to activate incremental builds.
+		 * <p>
+		 * If true, the resolved properties are cached in the build directory along with the inputs they were
+		 * resolved from, i.e. the configuration, the chain files and the resources they reference (in the resource
+		 * folders and on the classpath) and the system properties and environment variables read by the chain. As
+		 * long as the contents of these inputs are unchanged, the cached properties are used without resolving the
+		 * chain.
+		 * <p>
+		 * Properties containing sensitive values (like decrypted values or values interpolated from them) are never
+		 * cached.
+		 */
+		@Parameter(property="ju.prop.incremental", defaultValue="false")
+		private boolean incremental;
+		
+		/**
+		 * Flag to share resolved chains between the modules of a build.
+		 * <p>
+		 * If true, the resolved chain is cached in the Maven session, so modules with the same chain configuration
+		 * (chain elements, properties and decryptor) reuse it instead of resolving the chain again, as long as their
+		 * resource folders contain the same files for the resources looked up by the chain. This is safe for
+		 * parallel builds.
+		 * <p>
+		 * Values are resolved once for all modules, so system properties exported by other modules after the
+		 * chain has been resolved (or resources changed during the build) are not reflected.
+		 */
+		@Parameter(property="ju.prop.shareChain", defaultValue="false")
+		private boolean shareChain;
 	}
 	
 	public static class ChainElementConfig {
@@ -0,0 +1,301 @@
+package ch.inftec.ju.maven.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import ch.inftec.ju.util.JuRuntimeException;
+import ch.inftec.ju.util.JuStringUtils;
+
+/**
+ * Cache of the properties resolved by the PropertiesMojo, used for incremental builds.
+ * <p>
+ * The cache file contains the resolved and filtered properties along with the inputs they were resolved from
+ * (the names of the resources, system properties and environment variables the chain read) and a fingerprint
+ * of those inputs. As long as the fingerprint of the recorded inputs is unchanged, the properties can be
+ * replayed without building the PropertyChain.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class PropertiesMojoCache {
+	private static final String FINGERPRINT_KEY = "fingerprint";
+	private static final String SYSTEM_PROPERTIES_LISTED_KEY = "systemPropertiesListed";
+	
+	private final Path cacheFile;
+	
+	private final List<CachedProperty> properties = new ArrayList<>();
+	
+	/**
+	 * Creates a cache.
+	 * @param cacheFile File to store the properties in
+	 */
+	PropertiesMojoCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+	
+	/**
+	 * Reads the cache file.
+	 * @return Cached properties or null if there is no cache file
+	 */
+	CachedProperties read() {
+		if (!Files.isRegularFile(this.cacheFile)) {
+			return null;
+		}
+		
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(this.cacheFile)) {
+			props.load(in);
+		} catch (IOException ex) {
+			throw new JuRuntimeException("Couldn't read properties cache %s", ex, this.cacheFile);
+		}
+		
+		List<CachedProperty> cachedProperties = new ArrayList<>();
+		for (int i = 0; props.containsKey("key." + i); i++) {
+			cachedProperties.add(new CachedProperty(props.getProperty("key." + i)
+					, props.getProperty("value." + i)
+					, Boolean.parseBoolean(props.getProperty("export." + i))));
+		}
+		
+		Inputs inputs = new Inputs(PropertiesMojoCache.readList(props, "resource.")
+				, PropertiesMojoCache.readList(props, "systemProperty.")
+				, Boolean.parseBoolean(props.getProperty(SYSTEM_PROPERTIES_LISTED_KEY))
+				, PropertiesMojoCache.readList(props, "environmentVariable."));
+		
+		return new CachedProperties(inputs, props.getProperty(FINGERPRINT_KEY), cachedProperties);
+	}
+	
+	private static List<String> readList(Properties props, String prefix) {
+		List<String> values = new ArrayList<>();
+		for (int i = 0; props.containsKey(prefix + i); i++) {
+			values.add(props.getProperty(prefix + i));
+		}
+		return values;
+	}
+	
+	/**
+	 * Adds a property to be written to the cache.
+	 * @param key Key
+	 * @param value Resolved value
+	 * @param exportToSystemProperties Whether the property is exported to the system properties
+	 */
+	void add(String key, String value, boolean exportToSystemProperties) {
+		this.properties.add(new CachedProperty(key, value, exportToSystemProperties));
+	}
+	
+	/**
+	 * Writes the added properties to the cache file, replacing any existing cache.
+	 * @param inputs Inputs the properties were resolved from
+	 * @param fingerprint Fingerprint of the inputs
+	 */
+	void write(Inputs inputs, String fingerprint) {
+		Properties props = new Properties();
+		props.setProperty(FINGERPRINT_KEY, fingerprint);
+		props.setProperty(SYSTEM_PROPERTIES_LISTED_KEY, Boolean.toString(inputs.systemPropertiesListed));
+		for (int i = 0; i < inputs.resourceNames.size(); i++) {
+			props.setProperty("resource." + i, inputs.resourceNames.get(i));
+		}
+		for (int i = 0; i < inputs.systemPropertyKeys.size(); i++) {
+			props.setProperty("systemProperty." + i, inputs.systemPropertyKeys.get(i));
+		}
+		for (int i = 0; i < inputs.environmentVariableKeys.size(); i++) {
+			props.setProperty("environmentVariable." + i, inputs.environmentVariableKeys.get(i));
+		}
+		for (int i = 0; i < this.properties.size(); i++) {
+			CachedProperty property = this.properties.get(i);
+			props.setProperty("key." + i, property.key);
+			props.setProperty("value." + i, property.value);
+			props.setProperty("export." + i, Boolean.toString(property.exportToSystemProperties));
+		}
+		
+		try {
+			Files.createDirectories(this.cacheFile.getParent());
+			Path tempFile = Files.createTempFile(this.cacheFile.getParent(), "ju-properties", ".tmp");
+			try {
+				try (OutputStream out = Files.newOutputStream(tempFile)) {
+					props.store(out, "Properties resolved by the ju-maven-plugin. Don't edit, delete to rebuild");
+				}
+				Files.move(tempFile, this.cacheFile, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+		} catch (IOException ex) {
+			throw new JuRuntimeException("Couldn't write properties cache %s", ex, this.cacheFile);
+		}
+	}
+	
+	/**
+	 * Deletes the cache file (if any).
+	 */
+	void delete() {
+		try {
+			Files.deleteIfExists(this.cacheFile);
+		} catch (IOException ex) {
+			throw new JuRuntimeException("Couldn't delete properties cache %s", ex, this.cacheFile);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return JuStringUtils.toString(this, "cacheFile", this.cacheFile);
+	}
+	
+	/**
+	 * Inputs a chain has been resolved from.
+	 */
+	static final class Inputs {
+		/**
+		 * Names of the resources looked up by the chain, i.e. chain files and the resources they reference.
+		 */
+		final List<String> resourceNames;
+		
+		/**
+		 * Keys of the system properties read by the chain.
+		 */
+		final List<String> systemPropertyKeys;
+		
+		/**
+		 * Whether the chain listed the keys of the system properties, i.e. whether new system properties
+		 * might show up in the chain.
+		 */
+		final boolean systemPropertiesListed;
+		
+		/**
+		 * Expressions looked up as environment variables by the chain.
+		 */
+		final List<String> environmentVariableKeys;
+		
+		Inputs(Collection<String> resourceNames, Collection<String> systemPropertyKeys, boolean systemPropertiesListed
+				, Collection<String> environmentVariableKeys) {
+			this.resourceNames = Collections.unmodifiableList(new ArrayList<>(resourceNames));
+			this.systemPropertyKeys = Collections.unmodifiableList(new ArrayList<>(systemPropertyKeys));
+			this.systemPropertiesListed = systemPropertiesListed;
+			this.environmentVariableKeys = Collections.unmodifiableList(new ArrayList<>(environmentVariableKeys));
+		}
+	}
+	
+	/**
+	 * Contents of a cache file.
+	 */
+	static final class CachedProperties {
+		final Inputs inputs;
+		
+		/**
+		 * Fingerprint of the inputs when the properties were cached.
+		 */
+		final String fingerprint;
+		
+		/**
+		 * Cached properties in the order they have been added.
+		 */
+		final List<CachedProperty> properties;
+		
+		private CachedProperties(Inputs inputs, String fingerprint, List<CachedProperty> properties) {
+			this.inputs = inputs;
+			this.fingerprint = fingerprint;
+			this.properties = properties;
+		}
+	}
+	
+	/**
+	 * Property stored in the cache.
+	 */
+	static final class CachedProperty {
+		final String key;
+		final String value;
+		final boolean exportToSystemProperties;
+		
+		private CachedProperty(String key, String value, boolean exportToSystemProperties) {
+			this.key = key;
+			this.value = value;
+			this.exportToSystemProperties = exportToSystemProperties;
+		}
+	}
+	
+	/**
+	 * Builder to compute a fingerprint of named inputs.
+	 * <p>
+	 * Inputs are hashed in the order they are added, so they must be added in a stable order.
+	 */
+	static final class Fingerprint {
+		private static final Charset UTF_8 = Charset.forName("UTF-8");
+		
+		private final MessageDigest digest;
+		
+		Fingerprint() {
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256");
+			} catch (Exception ex) {
+				throw new JuRuntimeException("Couldn't create fingerprint digest", ex);
+			}
+		}
+		
+		/**
+		 * Adds a named value.
+		 * @param name Name
+		 * @param value Value. Null values are distinguished from empty values
+		 * @return This fingerprint
+		 */
+		Fingerprint add(String name, Object value) {
+			this.update(name);
+			this.update(value == null ? null : value.toString());
+			return this;
+		}
+		
+		/**
+		 * Adds the URL and the contents of a resource.
+		 * @param url Resource URL
+		 * @return This fingerprint
+		 */
+		Fingerprint addResource(URL url) {
+			this.update(url.toString());
+			try (InputStream in = url.openStream()) {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					this.digest.update(buffer, 0, read);
+				}
+			} catch (IOException ex) {
+				throw new JuRuntimeException("Couldn't read resource %s", ex, url);
+			}
+			return this;
+		}
+		
+		private void update(String s) {
+			if (s == null) {
+				this.digest.update((byte) 0);
+			} else {
+				byte[] bytes = s.getBytes(UTF_8);
+				this.digest.update((byte) 1);
+				this.digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+				this.digest.update(bytes);
+			}
+		}
+		
+		/**
+		 * Gets the fingerprint of the inputs added so far.
+		 * @return Fingerprint as a hex string
+		 */
+		String get() {
+			byte[] hash;
+			try {
+				hash = ((MessageDigest) this.digest.clone()).digest();
+			} catch (CloneNotSupportedException ex) {
+				throw new JuRuntimeException("Couldn't compute fingerprint", ex);
+			}
+			return String.format("%064x", new BigInteger(1, hash));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package ch.inftec.ju.maven.util;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.interpolation.AbstractValueSource;
+import org.codehaus.plexus.interpolation.ValueSource;
+
+import ch.inftec.ju.util.JuCollectionUtils;
+import ch.inftec.ju.util.JuStringUtils;
+import ch.inftec.ju.util.PropertyChainBuilder;
+import ch.inftec.ju.util.PropertyEvaluator;
+
+/**
+ * PropertyChainBuilder used by the PropertiesMojo that records the inputs of the chain.
+ * <p>
+ * Along with the resources looked up by name (see getResolvedResources), the builder records the system
+ * properties read by system property evaluators, including those added by chain files, and the environment
+ * variables looked up by interpolation. This allows to fingerprint only the inputs that actually affect the
+ * resolved properties.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class PropertiesMojoChainBuilder extends PropertyChainBuilder {
+	private final Set<String> systemPropertyKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private volatile boolean systemPropertiesListed = false;
+	private final Set<String> environmentVariableKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	@Override
+	public PropertyChainBuilder addSystemPropertyEvaluator() {
+		return this.addPropertyEvaluator(new SystemPropertyRecorder());
+	}
+	
+	@Override
+	protected ValueSource getEnvironmentValueSource() {
+		final ValueSource environment = super.getEnvironmentValueSource();
+		return new AbstractValueSource(false) {
+			@Override
+			public Object getValue(String expression) {
+				PropertiesMojoChainBuilder.this.environmentVariableKeys.add(expression);
+				return environment.getValue(expression);
+			}
+		};
+	}
+	
+	/**
+	 * Gets the keys of the system properties read so far, including reads of chains built by this builder.
+	 * @return Sorted keys
+	 */
+	Set<String> getSystemPropertyKeys() {
+		return new TreeSet<>(this.systemPropertyKeys);
+	}
+	
+	/**
+	 * Checks whether the keys of the system properties have been listed, i.e. whether new system properties
+	 * might show up in the chain.
+	 * @return True if the keys have been listed
+	 */
+	boolean isSystemPropertiesListed() {
+		return this.systemPropertiesListed;
+	}
+	
+	/**
+	 * Gets the expressions looked up as environment variables so far, including lookups of chains built by
+	 * this builder.
+	 * <p>
+	 * As environment variables are looked up before chain values, this includes all expressions interpolated.
+	 * @return Sorted expressions
+	 */
+	Set<String> getEnvironmentVariableKeys() {
+		return new TreeSet<>(this.environmentVariableKeys);
+	}
+	
+	/**
+	 * Gets the current value of an environment variable, using the same lookup as the chains.
+	 * @param expression Expression, e.g. <code>env.HOME</code>
+	 * @return Value or null if the variable isn't defined
+	 */
+	Object getEnvironmentVariable(String expression) {
+		return super.getEnvironmentValueSource().getValue(expression);
+	}
+	
+	/**
+	 * Evaluator for system properties that records the keys it is asked for.
+	 */
+	private final class SystemPropertyRecorder implements PropertyEvaluator {
+		@Override
+		public Object get(String key) {
+			PropertiesMojoChainBuilder.this.systemPropertyKeys.add(key);
+			return System.getProperty(key);
+		}
+		
+		@Override
+		public Set<String> listKeys() {
+			PropertiesMojoChainBuilder.this.systemPropertiesListed = true;
+			return JuCollectionUtils.getKeyStrings(System.getProperties());
+		}
+		
+		@Override
+		public String toString() {
+			return JuStringUtils.toString(this);
+		}
+	}
+}
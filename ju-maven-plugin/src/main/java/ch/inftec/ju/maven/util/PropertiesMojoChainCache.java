@@ -0,0 +1,156 @@
+package ch.inftec.ju.maven.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+import ch.inftec.ju.util.JuRuntimeException;
+import ch.inftec.ju.util.JuStringUtils;
+import ch.inftec.ju.util.PropertyChain;
+
+/**
+ * Cache of the PropertyChains resolved by the PropertiesMojo within a Maven session, so modules with the same
+ * chain configuration can share one chain.
+ * <p>
+ * The resource folders aren't part of the chain configuration as they default to the basedir of each module.
+ * Instead, a chain is shared with every module whose resource folders provide the same files for the resources
+ * looked up by the chain (typically none, if the chain files are found on the classpath). Modules providing
+ * different files get a chain of their own.
+ * <p>
+ * The cache is stored in the session data of the repository session and can be accessed by concurrent module
+ * builds (<code>-T</code>). Each chain is resolved only once, concurrent modules requesting the same chain wait
+ * for it to be resolved.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class PropertiesMojoChainCache {
+	private PropertiesMojoChainCache() {
+		throw new AssertionError("use only statically");
+	}
+	
+	/**
+	 * Gets the chain for the specified configuration and resource folders, resolving it if it isn't cached yet.
+	 * <p>
+	 * If resolving fails, the chain isn't cached, so subsequent modules will try again.
+	 * @param session Maven session
+	 * @param configKey Key of the chain configuration, not including the resource folders
+	 * @param resourceFolders Resource folders of the module
+	 * @param resolver Resolver to create the chain using the resource folders of the module
+	 * @return Resolved chain
+	 * @throws Exception If the chain cannot be resolved
+	 */
+	static ResolvedChain get(MavenSession session, String configKey, List<Path> resourceFolders, Callable<ResolvedChain> resolver) throws Exception {
+		ConcurrentMap<String, FutureTask<ResolvedChain>> chains = PropertiesMojoChainCache.getChains(session);
+		
+		// Chains of the same configuration resolved from different resources are kept in consecutive slots
+		for (int slot = 0; ; slot++) {
+			String chainKey = configKey + "#" + slot;
+		
+			FutureTask<ResolvedChain> newTask = new FutureTask<>(resolver);
+			FutureTask<ResolvedChain> task = chains.putIfAbsent(chainKey, newTask);
+			if (task == null) {
+				task = newTask;
+				task.run();
+			}
+			
+			ResolvedChain resolvedChain;
+			try {
+				resolvedChain = task.get();
+			} catch (ExecutionException ex) {
+				chains.remove(chainKey, task);
+				throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+			}
+			
+			if (task == newTask || resolvedChain.usesSameResources(resourceFolders)) {
+				return resolvedChain;
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static ConcurrentMap<String, FutureTask<ResolvedChain>> getChains(MavenSession session) {
+		if (session.getRepositorySession() == null) {
+			throw new JuRuntimeException("Maven session doesn't provide a repository session");
+		}
+		
+		// Use the class as key so different plugin versions (loaded by different class loaders) don't interfere
+		SessionData data = session.getRepositorySession().getData();
+		Object chains = data.get(PropertiesMojoChainCache.class);
+		while (chains == null) {
+			data.set(PropertiesMojoChainCache.class, null, new ConcurrentHashMap<String, FutureTask<ResolvedChain>>());
+			chains = data.get(PropertiesMojoChainCache.class);
+		}
+		return (ConcurrentMap<String, FutureTask<ResolvedChain>>) chains;
+	}
+	
+	/**
+	 * PropertyChain resolved by the PropertiesMojo along with the keys of the configured properties that
+	 * should be exported to the system properties and the inputs of the chain.
+	 */
+	static final class ResolvedChain {
+		final PropertyChain chain;
+		final Set<String> exportedProperties;
+		
+		/**
+		 * Builder of the chain, recording the resources and system properties the chain reads.
+		 */
+		final PropertiesMojoChainBuilder inputs;
+		
+		/**
+		 * Files found in the resource folders for the resources looked up by the chain.
+		 */
+		private final Map<String, List<Path>> folderResources;
+		
+		ResolvedChain(PropertyChain chain, Set<String> exportedProperties, PropertiesMojoChainBuilder inputs, List<Path> resourceFolders) {
+			this.chain = chain;
+			this.exportedProperties = Collections.unmodifiableSet(exportedProperties);
+			this.inputs = inputs;
+			this.folderResources = ResolvedChain.getFolderResources(inputs.getResolvedResources().keySet(), resourceFolders);
+		}
+		
+		/**
+		 * Checks whether the specified resource folders provide the same files for the resources looked up by
+		 * the chain as the folders the chain has been resolved from, i.e. whether resolving the chain with the
+		 * specified folders would yield the same chain.
+		 * @param resourceFolders Resource folders
+		 * @return True if the folders provide the same resources
+		 */
+		boolean usesSameResources(List<Path> resourceFolders) {
+			return this.folderResources.equals(ResolvedChain.getFolderResources(this.folderResources.keySet(), resourceFolders));
+		}
+		
+		private static Map<String, List<Path>> getFolderResources(Collection<String> resourceNames, List<Path> resourceFolders) {
+			Map<String, List<Path>> folderResources = new LinkedHashMap<>();
+			for (String resourceName : resourceNames) {
+				List<Path> resourcePaths = new ArrayList<>();
+				for (Path resourceFolder : resourceFolders) {
+					Path resourcePath = resourceFolder.resolve(resourceName).toAbsolutePath().normalize();
+					if (Files.isRegularFile(resourcePath)) {
+						resourcePaths.add(resourcePath);
+					}
+				}
+				folderResources.put(resourceName, resourcePaths);
+			}
+			return folderResources;
+		}
+		
+		@Override
+		public String toString() {
+			return JuStringUtils.toString(this, "chain", this.chain);
+		}
+	}
+}
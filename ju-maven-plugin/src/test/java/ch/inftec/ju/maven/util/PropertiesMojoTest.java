@@ -1,12 +1,26 @@
 package ch.inftec.ju.maven.util;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
 import org.apache.maven.plugin.testing.MojoRule;
+import org.apache.maven.plugin.testing.stubs.MavenProjectStub;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import ch.inftec.ju.util.SystemPropertyTempSetter;
 
@@ -15,6 +29,9 @@ public class PropertiesMojoTest {
 	@Rule
 	public MojoRule rule = new MojoRule();
 	
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+	
 	@Test
 	public void canConfigureMojo_fromPom() throws Exception {
 		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
@@ -38,6 +55,226 @@ public class PropertiesMojoTest {
 		Assert.assertEquals("val2", props.get("incProp2"));
 	}
 	
+	@Test
+	public void canReplay_cachedProperties_inIncrementalMode() throws Exception {
+		Path cacheFolder = this.tempFolder.getRoot().toPath().resolve("ju-properties");
+		
+		Properties props = this.executeIncrementalMojo();
+		Assert.assertEquals(2, props.size());
+		Assert.assertEquals("val1", props.get("incProp1"));
+		
+		// Modify the cached value to make sure the cache is used
+		this.replaceCachedValue(cacheFolder, "val1", "cachedVal1");
+		
+		props = this.executeIncrementalMojo();
+		Assert.assertEquals(2, props.size());
+		Assert.assertEquals("cachedVal1", props.get("incProp1"));
+		Assert.assertEquals("val2", props.get("incProp2"));
+		
+		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
+			// System properties the chain doesn't read don't invalidate the cache
+			ts.setProperty("ju.incrementalTest", "changed");
+			
+			props = this.executeIncrementalMojo();
+			Assert.assertEquals("cachedVal1", props.get("incProp1"));
+			
+			// New system properties passing the filter invalidate the cache as the chain lists system properties
+			ts.setProperty("ju.incrementalTestProp", "new");
+			
+			props = this.executeIncrementalMojo();
+			Assert.assertEquals("val1", props.get("incProp1"));
+			Assert.assertEquals("new", props.get("ju.incrementalTestProp"));
+			
+			// Changing a system property the chain reads invalidates the cache
+			this.replaceCachedValue(cacheFolder, "val1", "cachedVal1");
+			ts.setProperty("ju.incrementalTestProp", "changed");
+			
+			props = this.executeIncrementalMojo();
+			Assert.assertEquals("val1", props.get("incProp1"));
+			Assert.assertEquals("changed", props.get("ju.incrementalTestProp"));
+		}
+	}
+	
+	@Test
+	public void incrementalMode_ignoresFiles_notReadByChain_inMultiModuleLayout() throws Exception {
+		// Aggregator basedir (the default resource folder) containing a module with build output and a VCS folder
+		Path basedir = this.tempFolder.newFolder("aggregator").toPath();
+		Files.write(basedir.resolve("propertiesMojo.files"), "1,prop,propertiesMojo.properties".getBytes("UTF-8"));
+		Path propertiesFile = basedir.resolve("propertiesMojo.properties");
+		Files.write(propertiesFile, "aggProp=val1".getBytes("UTF-8"));
+		Path moduleOutput = Files.createDirectories(basedir.resolve("module-a/target/classes")).resolve("generated.properties");
+		Files.write(moduleOutput, "x=1".getBytes("UTF-8"));
+		Path vcsFile = Files.createDirectories(basedir.resolve(".git")).resolve("index");
+		Files.write(vcsFile, "1".getBytes("UTF-8"));
+		
+		Assert.assertEquals("val1", this.executeMultiModuleMojo(basedir).get("aggProp"));
+		this.replaceCachedValue(basedir.resolve("target/ju-properties"), "val1", "cachedVal1");
+		
+		// Files the chain doesn't read don't invalidate the cache
+		Files.write(moduleOutput, "x=2".getBytes("UTF-8"));
+		Files.write(vcsFile, "2".getBytes("UTF-8"));
+		Files.write(basedir.resolve("module-a/pom.xml"), "<project/>".getBytes("UTF-8"));
+		Assert.assertEquals("cachedVal1", this.executeMultiModuleMojo(basedir).get("aggProp"));
+		
+		// Changes of resources the chain reads invalidate the cache
+		Files.write(propertiesFile, "aggProp=newVal".getBytes("UTF-8"));
+		Assert.assertEquals("newVal", this.executeMultiModuleMojo(basedir).get("aggProp"));
+	}
+	
+	@Test
+	public void incrementalMode_detectsChanged_environmentVariables() throws Exception {
+		Path basedir = this.tempFolder.newFolder("env").toPath();
+		Files.write(basedir.resolve("propertiesMojo.files"), "1,prop,propertiesMojo.properties".getBytes("UTF-8"));
+		Files.write(basedir.resolve("propertiesMojo.properties"), "envProp=${env.JU_INCREMENTAL_TEST}".getBytes("UTF-8"));
+		
+		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
+			ts.setEnv("JU_INCREMENTAL_TEST", "val1");
+			Assert.assertEquals("val1", this.executeMultiModuleMojo(basedir).get("envProp"));
+			
+			this.replaceCachedValue(basedir.resolve("target/ju-properties"), "val1", "cachedVal1");
+			Assert.assertEquals("cachedVal1", this.executeMultiModuleMojo(basedir).get("envProp"));
+			
+			ts.setEnv("JU_INCREMENTAL_TEST", "val2");
+			Assert.assertEquals("val2", this.executeMultiModuleMojo(basedir).get("envProp"));
+		}
+	}
+	
+	@Test
+	public void incrementalMode_doesNotCache_valuesInterpolatedFromSecrets() throws Exception {
+		Path basedir = this.tempFolder.newFolder("sensitive").toPath();
+		Files.copy(Paths.get("src/test/resources/test-poms/propertiesMojoTest-decryptor/decryptor.key"), basedir.resolve("decryptor.key"));
+		Files.write(basedir.resolve("propertiesMojo.files"), "1,prop,propertiesMojo.properties".getBytes("UTF-8"));
+		Files.write(basedir.resolve("propertiesMojo.properties")
+				, "keyFilePath=decryptor.key\ndb.password=ENC(8vu+etsGrzZK30MCEBjTzg==)\ndb.url=jdbc:${db.password}".getBytes("UTF-8"));
+		
+		// The secret itself is excluded by the filter, but the URL contains it
+		Properties props = this.executeModuleMojo(new File("src/test/resources/test-poms/propertiesMojoTest-incrementalSensitive/pom.xml"), basedir, null);
+		Assert.assertEquals("jdbc:String", props.get("db.url"));
+		Assert.assertNull(props.get("db.password"));
+		
+		Path cacheFolder = basedir.resolve("target/ju-properties");
+		Assert.assertTrue(!Files.exists(cacheFolder) || cacheFolder.toFile().list().length == 0);
+	}
+	
+	private Properties executeMultiModuleMojo(Path basedir) throws Exception {
+		return this.executeModuleMojo(new File("src/test/resources/test-poms/propertiesMojoTest-multiModule/pom.xml"), basedir, null);
+	}
+	
+	/**
+	 * Executes the mojo for a module with the specified basedir (i.e. default resource folder).
+	 */
+	private Properties executeModuleMojo(File pom, final Path basedir, MavenSession session) throws Exception {
+		PropertiesMojo propertiesMojo = (PropertiesMojo) rule.configureMojo(new PropertiesMojo(), "ju-maven-plugin", pom);
+		if (session != null) {
+			rule.setVariableValueToObject(propertiesMojo, "session", session);
+		}
+		
+		MavenProjectStub project = new PropertiesMojo_MavenProject() {
+			@Override
+			public File getBasedir() {
+				return basedir.toFile();
+			}
+		};
+		Build build = new Build();
+		build.setDirectory(basedir.resolve("target").toString());
+		project.setBuild(build);
+		rule.setVariableValueToObject(propertiesMojo, "project", project);
+		
+		propertiesMojo.execute();
+		return propertiesMojo.getProject().getProperties();
+	}
+	
+	/**
+	 * Replaces a value in the (single) cache file of the cache folder, so we can tell whether the cache is used.
+	 */
+	private void replaceCachedValue(Path cacheFolder, String value, String cachedValue) throws Exception {
+		Assert.assertEquals(1, cacheFolder.toFile().list().length);
+		Path cacheFile = cacheFolder.toFile().listFiles()[0].toPath();
+		String cache = new String(Files.readAllBytes(cacheFile), "ISO-8859-1");
+		Files.write(cacheFile, cache.replace(value, cachedValue).getBytes("ISO-8859-1"));
+	}
+	
+	private Properties executeIncrementalMojo() throws Exception {
+		PropertiesMojo propertiesMojo = (PropertiesMojo) rule.configureMojo(new PropertiesMojo(), "ju-maven-plugin", new File("src/test/resources/test-poms/propertiesMojoTest-incremental/pom.xml"));
+		
+		Build build = new Build();
+		build.setDirectory(this.tempFolder.getRoot().getAbsolutePath());
+		((MavenProjectStub) propertiesMojo.getProject()).setBuild(build);
+		
+		propertiesMojo.execute();
+		return propertiesMojo.getProject().getProperties();
+	}
+	
+	@Test
+	public void canShare_chain_betweenModules() throws Exception {
+		final File pom = new File("src/test/resources/test-poms/propertiesMojoTest-shareChain/pom.xml");
+		final MavenSession session = rule.newMavenSession(new MavenProjectStub());
+		
+		// Execute the mojo concurrently like modules in a parallel build
+		List<Callable<Properties>> modules = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			modules.add(new Callable<Properties>() {
+				@Override
+				public Properties call() throws Exception {
+					PropertiesMojo propertiesMojo;
+					synchronized (rule) {
+						propertiesMojo = (PropertiesMojo) rule.configureMojo(new PropertiesMojo(), "ju-maven-plugin", pom);
+						rule.setVariableValueToObject(propertiesMojo, "session", session);
+					}
+					propertiesMojo.execute();
+					return propertiesMojo.getProject().getProperties();
+				}
+			});
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (Future<Properties> module : executor.invokeAll(modules)) {
+				Properties props = module.get();
+				Assert.assertEquals(2, props.size());
+				Assert.assertEquals("val1", props.get("incProp1"));
+				Assert.assertEquals("val2", props.get("incProp2"));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		// All modules used the same chain
+		Map<?, ?> chains = (Map<?, ?>) session.getRepositorySession().getData().get(PropertiesMojoChainCache.class);
+		Assert.assertEquals(1, chains.size());
+	}
+	
+	@Test
+	public void canShare_chain_betweenModules_withDefaultResourceFolders() throws Exception {
+		File pom = new File("src/test/resources/test-poms/propertiesMojoTest-shareChainDefault/pom.xml");
+		MavenSession session = rule.newMavenSession(new MavenProjectStub());
+		Map<?, ?> chains = null;
+		
+		// Modules without chain files in their basedir share one chain
+		for (String module : new String[] {"module-a", "module-b"}) {
+			Properties props = this.executeModuleMojo(pom, this.tempFolder.newFolder(module).toPath(), session);
+			Assert.assertEquals(1, props.size());
+			Assert.assertEquals("sharedVal", props.get("sharedProp"));
+			
+			chains = (Map<?, ?>) session.getRepositorySession().getData().get(PropertiesMojoChainCache.class);
+			Assert.assertEquals(1, chains.size());
+		}
+		
+		// A module providing its own chain files gets a chain of its own
+		Path moduleC = this.tempFolder.newFolder("module-c").toPath();
+		Files.write(moduleC.resolve("propertiesMojo.files"), "1,prop,propertiesMojo.properties".getBytes("UTF-8"));
+		Files.write(moduleC.resolve("propertiesMojo.properties"), "moduleProp=valC".getBytes("UTF-8"));
+		
+		Properties props = this.executeModuleMojo(pom, moduleC, session);
+		Assert.assertEquals("sharedVal", props.get("sharedProp"));
+		Assert.assertEquals("valC", props.get("moduleProp"));
+		Assert.assertEquals(2, chains.size());
+		
+		// Modules without chain files still use the first chain
+		Assert.assertEquals(1, this.executeModuleMojo(pom, this.tempFolder.newFolder("module-d").toPath(), session).size());
+		Assert.assertEquals(2, chains.size());
+	}
+	
 	@Test
 	public void supports_relativeResourceNames() throws Exception {
 		PropertiesMojo propertiesMojo = (PropertiesMojo) rule.configureMojo(new PropertiesMojo(), "ju-maven-plugin", new File("src/test/resources/test-poms/propertiesMojoTest-relative/pom.xml"));
@@ -270,8 +270,9 @@ public final class JuSecurityUtils {
 			
 			try (Reader urlReader = new IOUtil().createReader(csvFile);
 					CSVReader csvReader = new CSVReader(urlReader, DEFAULT_CSV_DELIMITER)) {
-				List<String[]> allEntries = csvReader.readAll();
-				for (String[] line : allEntries) {
+				// Process the file line by line so we don't keep all cells in memory
+				String[] line;
+				while ((line = csvReader.readNext()) != null) {
 					for (String cell : line) {
 						// The CSVReader will return the actual String, but within the source CSV,
 						// characters might have been escaped
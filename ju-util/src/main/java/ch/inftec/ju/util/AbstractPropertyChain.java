@@ -0,0 +1,852 @@
+package ch.inftec.ju.util;
+
+import java.util.ArrayList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.plexus.interpolation.ValueSource;
+
+import ch.inftec.ju.util.event.EventNotifier;
+import ch.inftec.ju.util.event.JuEventUtils;
+import ch.inftec.ju.util.event.JuEventUtils.UpdateEventNotifier;
+import ch.inftec.ju.util.event.UpdateListener;
+import ch.inftec.ju.util.function.Function;
+
+/**
+ * Base class for PropertyChain implementations.
+ * <p>
+ * Implements the convenience getters and type conversion based on the getInfo method. Subclasses only need to
+ * implement getInfo, listKeys, clearCache and interpolate. Custom PropertyChain implementations should extend
+ * this class rather than implementing the PropertyChain interface directly, so they aren't affected when methods
+ * are added to the interface.
+ * <p>
+ * Converted values are cached along with PropertyInfos extending ConvertedValueHolder, so repeated
+ * typed lookups of cached PropertyInfos don't need to parse the value again. Conversions are only reused
+ * if getInfo returns the same PropertyInfo instance for repeated lookups, i.e. for chains built by the
+ * PropertyChainBuilder only if resolved values are cached (and for frozen chains).
+ * <p>
+ * Prefix queries use a sorted index of the keys returned by listIndexedKeys. The index is built once and
+ * dropped by clearKeyIndex. Keys returned by listVolatileKeys are scanned on each query, i.e. in linear time.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+public abstract class AbstractPropertyChain implements InterpolatingPropertyChain {
+	private static final Pattern DURATION_PATTERN = Pattern.compile("\\s*(\\d+)\\s*(ms|s|min|m|h|d)?\\s*", Pattern.CASE_INSENSITIVE);
+	
+	private static final Function<String, Object> OBJECT_CONVERTER = new Function<String, Object>() {
+		@Override
+		public Object apply(String val) {
+			return val;
+		}
+	};
+	
+	private static final Function<String, Integer> INTEGER_CONVERTER = new Function<String, Integer>() {
+		@Override
+		public Integer apply(String val) {
+			return Integer.valueOf(val.trim());
+		}
+	};
+	
+	private static final Function<String, Long> LONG_CONVERTER = new Function<String, Long>() {
+		@Override
+		public Long apply(String val) {
+			return Long.valueOf(val.trim());
+		}
+	};
+	
+	private static final Function<String, Boolean> BOOLEAN_CONVERTER = new Function<String, Boolean>() {
+		@Override
+		public Boolean apply(String val) {
+			return Boolean.valueOf(val.trim());
+		}
+	};
+	
+	private static final Function<String, List<String>> LIST_CONVERTER = new Function<String, List<String>>() {
+		@Override
+		public List<String> apply(String val) {
+			List<String> values = new ArrayList<>();
+			for (String v : val.split(",")) {
+				if (!StringUtils.isBlank(v)) {
+					values.add(v.trim());
+				}
+			}
+			return Collections.unmodifiableList(values);
+		}
+	};
+	
+	private static final Map<TimeUnit, Function<String, Long>> DURATION_CONVERTERS = new EnumMap<>(TimeUnit.class);
+	static {
+		for (final TimeUnit unit : TimeUnit.values()) {
+			DURATION_CONVERTERS.put(unit, new Function<String, Long>() {
+				@Override
+				public Long apply(String val) {
+					return AbstractPropertyChain.parseDuration(val, unit);
+				}
+			});
+		}
+	}
+	
+	private final boolean defaultThrowExceptionIfUndefined;
+	private final Map<Class<?>, Function<String, ?>> customConverters;
+	
+	private volatile SortedKeyIndex keyIndex;
+	
+	/**
+	 * Converters by target type. Enum converters are added lazily.
+	 */
+	private final ConcurrentMap<Class<?>, Function<String, ?>> converters;
+	
+	private final UpdateEventNotifier<PropertyChain> updateNotifier;
+	
+	/**
+	 * Subscriptions to key changes. Created on the first subscription.
+	 */
+	private PropertySubscriptions subscriptions;
+	
+	/**
+	 * Interpolator used by JuUtils.interpolate. Created on first use.
+	 */
+	private volatile PropertyInterpolator expressionInterpolator;
+	
+	/**
+	 * Creates a new chain.
+	 * @param defaultThrowExceptionIfUndefined Whether to throw an exception by default for undefined properties
+	 * @param customConverters Custom converters by target type. Override the built in converters
+	 */
+	protected AbstractPropertyChain(boolean defaultThrowExceptionIfUndefined, Map<Class<?>, Function<String, ?>> customConverters) {
+		this.defaultThrowExceptionIfUndefined = defaultThrowExceptionIfUndefined;
+		this.customConverters = customConverters;
+		this.converters = new ConcurrentHashMap<>();
+		this.updateNotifier = JuEventUtils.newUpdateEventNotifier();
+		
+		this.converters.put(Object.class, OBJECT_CONVERTER);
+		this.converters.put(String.class, OBJECT_CONVERTER);
+		this.converters.put(Integer.class, INTEGER_CONVERTER);
+		this.converters.put(Long.class, LONG_CONVERTER);
+		this.converters.put(Boolean.class, BOOLEAN_CONVERTER);
+		this.converters.putAll(customConverters);
+	}
+	
+	/**
+	 * Creates a chain that is based on another chain, sharing its settings, converters and update notifier.
+	 * <p>
+	 * Used for views like sub chains and overlays, so creating them is cheap.
+	 * @param parent Parent chain
+	 */
+	protected AbstractPropertyChain(AbstractPropertyChain parent) {
+		this.defaultThrowExceptionIfUndefined = parent.defaultThrowExceptionIfUndefined;
+		this.customConverters = parent.customConverters;
+		this.converters = parent.converters;
+		this.updateNotifier = parent.updateNotifier;
+	}
+	
+	@Override
+	public String get(String key) {
+		return this.get(key, this.defaultThrowExceptionIfUndefined);
+	}
+	
+	@Override
+	public String get(String key, boolean throwExceptionIfNotDefined) {
+		PropertyInfo pi = this.getDefinedInfo(key, throwExceptionIfNotDefined);
+		return pi != null ? pi.getValue() : null;
+	}
+	
+	@Override
+	public String get(String key, String defaultValue) {
+		String val = this.get(key, false);
+		return val != null ? val : defaultValue;
+	}
+	
+	@Override
+	public <T> T get(String key, Class<T> clazz) {
+		return this.get(key, clazz, this.defaultThrowExceptionIfUndefined);
+	}
+	
+	@Override
+	public <T> T get(String key, Class<T> clazz, boolean throwExceptionIfNotDefined) {
+		PropertyInfo pi = this.getDefinedInfo(key, throwExceptionIfNotDefined);
+		if (pi == null || StringUtils.isEmpty(pi.getValue())) return null;
+		
+		return this.convert(pi, this.getConverter(clazz));
+	}
+	
+	@Override
+	public <T> T get(String key, Class<T> clazz, String defaultValue) {
+		PropertyInfo pi = this.getDefinedInfo(key, false);
+		if (pi == null) {
+			return StringUtils.isEmpty(defaultValue)
+					? null
+					: this.convert(key, defaultValue, this.getConverter(clazz));
+		} else {
+			return StringUtils.isEmpty(pi.getValue())
+					? null
+					: this.convert(pi, this.getConverter(clazz));
+		}
+	}
+	
+	@Override
+	public int getInt(String key) {
+		return this.getRequired(key, INTEGER_CONVERTER);
+	}
+	
+	@Override
+	public int getInt(String key, int defaultValue) {
+		Integer val = this.getOptional(key, INTEGER_CONVERTER);
+		return val != null ? val : defaultValue;
+	}
+	
+	@Override
+	public long getLong(String key) {
+		return this.getRequired(key, LONG_CONVERTER);
+	}
+	
+	@Override
+	public long getLong(String key, long defaultValue) {
+		Long val = this.getOptional(key, LONG_CONVERTER);
+		return val != null ? val : defaultValue;
+	}
+	
+	@Override
+	public boolean getBoolean(String key) {
+		return this.getRequired(key, BOOLEAN_CONVERTER);
+	}
+	
+	@Override
+	public boolean getBoolean(String key, boolean defaultValue) {
+		Boolean val = this.getOptional(key, BOOLEAN_CONVERTER);
+		return val != null ? val : defaultValue;
+	}
+	
+	@Override
+	public long getDuration(String key, TimeUnit unit) {
+		return this.getRequired(key, DURATION_CONVERTERS.get(unit));
+	}
+	
+	@Override
+	public long getDuration(String key, TimeUnit unit, long defaultValue) {
+		Long val = this.getOptional(key, DURATION_CONVERTERS.get(unit));
+		return val != null ? val : defaultValue;
+	}
+	
+	@Override
+	public <E extends Enum<E>> E getEnum(String key, Class<E> enumClass) {
+		return this.get(key, enumClass);
+	}
+	
+	@Override
+	public <E extends Enum<E>> E getEnum(String key, Class<E> enumClass, E defaultValue) {
+		E val = this.getOptional(key, this.getConverter(enumClass));
+		return val != null ? val : defaultValue;
+	}
+	
+	@Override
+	public List<String> getList(String key) {
+		PropertyInfo pi = this.getDefinedInfo(key, this.defaultThrowExceptionIfUndefined);
+		List<String> val = pi != null ? this.convert(pi, LIST_CONVERTER) : null;
+		return val != null ? val : Collections.<String>emptyList();
+	}
+	
+	@Override
+	public Map<String, String> getByPrefix(String prefix) {
+		Map<String, String> values = new LinkedHashMap<>();
+		for (String key : this.listKeysByPrefix(prefix)) {
+			String val = this.get(key, false);
+			if (val != null) {
+				values.put(key, val);
+			}
+		}
+		return Collections.unmodifiableMap(values);
+	}
+	
+	@Override
+	public PropertyChain subChain(String prefix) {
+		return new SubPropertyChain(this, prefix);
+	}
+	
+	@Override
+	public PropertyChain withOverrides(Map<String, String> overrides) {
+		return new OverlayPropertyChain(this, new OverlayPropertyChain.MapPropertyEvaluator(overrides));
+	}
+	
+	@Override
+	public PropertyChain overlay(PropertyEvaluator evaluator) {
+		return new OverlayPropertyChain(this, evaluator);
+	}
+	
+	@Override
+	public Map<String, String> getAll(Collection<String> keys) {
+		Map<String, PropertyInfo> infos = this.getInfos(keys);
+		
+		List<String> definedKeys = new ArrayList<>(infos.size());
+		List<String> values = new ArrayList<>(infos.size());
+		for (String key : keys) {
+			PropertyInfo pi = infos.remove(key);
+			if (pi != null && pi.getValue() != null) {
+				definedKeys.add(key);
+				values.add(pi.getValue());
+			}
+		}
+		
+		return new CompactStringMap(definedKeys, values);
+	}
+	
+	/**
+	 * Gets the property infos for the specified keys.
+	 * <p>
+	 * Default implementation calls getInfo for each key. Implementations can override this method to
+	 * resolve the keys in bulk.
+	 * @param keys Keys
+	 * @return Modifiable map of keys to PropertyInfos. Undefined keys may be omitted
+	 */
+	protected Map<String, PropertyInfo> getInfos(Collection<String> keys) {
+		Map<String, PropertyInfo> infos = new HashMap<>();
+		for (String key : keys) {
+			PropertyInfo pi = this.getInfo(key);
+			if (pi != null) {
+				infos.put(key, pi);
+			}
+		}
+		return infos;
+	}
+	
+	/**
+	 * Lists all keys starting with the specified prefix.
+	 * @param prefix Key prefix
+	 * @return Sorted list of keys
+	 */
+	protected List<String> listKeysByPrefix(String prefix) {
+		SortedKeyIndex index = this.keyIndex;
+		if (index == null) {
+			index = new SortedKeyIndex(this.listIndexedKeys());
+			this.keyIndex = index;
+		}
+		List<String> indexedKeys = index.getKeysByPrefix(prefix);
+		
+		Collection<String> volatileKeys = this.listVolatileKeys();
+		if (volatileKeys.isEmpty()) {
+			return indexedKeys;
+		}
+		
+		// Volatile keys aren't indexed, so we need to scan them
+		Set<String> keys = new TreeSet<>(indexedKeys);
+		for (String key : volatileKeys) {
+			if (key.startsWith(prefix)) {
+				keys.add(key);
+			}
+		}
+		return Collections.unmodifiableList(new ArrayList<>(keys));
+	}
+	
+	/**
+	 * Gets whether get(key, Object.class) returns the plain value of defined keys with a non empty value
+	 * and null for all other keys, i.e. whether it won't throw exceptions or use a custom conversion.
+	 * @return True if the chain returns plain values
+	 */
+	protected final boolean returnsPlainValues() {
+		return !this.defaultThrowExceptionIfUndefined && !this.customConverters.containsKey(Object.class);
+	}
+	
+	/**
+	 * Lists the keys the sorted key index is built of. The index is built once and kept until clearKeyIndex
+	 * is called, so implementations must call clearKeyIndex whenever these keys might have changed
+	 * (e.g. when a resource was reloaded).
+	 * <p>
+	 * Default implementation returns listKeys().
+	 * @return Keys to index
+	 */
+	protected Collection<String> listIndexedKeys() {
+		return this.listKeys();
+	}
+	
+	/**
+	 * Lists the keys that might change at any time without the chain noticing, like system properties.
+	 * These keys aren't part of the key index, but are listed and scanned on every prefix query, so the
+	 * cost of prefix queries grows linearly with the number of volatile keys.
+	 * <p>
+	 * Default implementation returns an empty collection.
+	 * @return Keys that aren't indexed
+	 */
+	protected Collection<String> listVolatileKeys() {
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Clears the cached key index, if any.
+	 */
+	protected final void clearKeyIndex() {
+		this.keyIndex = null;
+	}
+	
+	@Override
+	public EventNotifier<UpdateListener<PropertyChain>> getUpdateNotifier() {
+		return this.updateNotifier;
+	}
+	
+	@Override
+	public void subscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener) {
+		this.getSubscriptions().subscribe(keyOrPrefix, listener);
+	}
+	
+	@Override
+	public void unsubscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener) {
+		this.getSubscriptions().unsubscribe(keyOrPrefix, listener);
+	}
+	
+	private synchronized PropertySubscriptions getSubscriptions() {
+		if (this.subscriptions == null) {
+			this.subscriptions = new PropertySubscriptions(this);
+		}
+		return this.subscriptions;
+	}
+	
+	/**
+	 * Gets the value of the specified key before interpolation, i.e. a value that may still contain
+	 * placeholders like ${otherKey}.
+	 * <p>
+	 * Used to track the keys referenced by subscribed keys. Default implementation returns the value of
+	 * getInfo, so no references are tracked.
+	 * @param key Key
+	 * @return Uninterpolated value or null if the key is undefined
+	 */
+	protected String getUninterpolatedValue(String key) {
+		PropertyInfo pi = this.getInfo(key);
+		return pi != null ? pi.getValue() : null;
+	}
+	
+	/**
+	 * Gets the uninterpolated value of a key referenced by a placeholder.
+	 * <p>
+	 * Placeholders always reference keys of the root chain, so views like sub chains must not map them
+	 * to their own key space. Default implementation returns getUninterpolatedValue.
+	 * @param referencedKey Key referenced by a placeholder
+	 * @return Uninterpolated value or null if the key is undefined
+	 */
+	protected String getReferencedValue(String referencedKey) {
+		return this.getUninterpolatedValue(referencedKey);
+	}
+	
+	/**
+	 * Maps a key referenced by a placeholder to the key space of this chain.
+	 * <p>
+	 * Default implementation returns the key as is.
+	 * @param referencedKey Key referenced by a placeholder
+	 * @return Key in this chain or null if the referenced key isn't visible in this chain
+	 */
+	protected String toLocalKey(String referencedKey) {
+		return referencedKey;
+	}
+	
+	/**
+	 * Creates an interpolator that resolves expressions the same way as this chain, but looks up
+	 * properties using the specified value source.
+	 * <p>
+	 * Used by overlays to interpolate values that reference overridden properties. Default implementation
+	 * returns null.
+	 * @param chainValueSource ValueSource to look up properties
+	 * @return Interpolator or null if this chain doesn't interpolate values
+	 */
+	PropertyInterpolator createInterpolator(ValueSource chainValueSource) {
+		return null;
+	}
+	
+	/**
+	 * Gets the interpolator JuUtils.interpolate uses for this chain, creating it on first use.
+	 * <p>
+	 * Concurrent first calls might create more than one interpolator, which is harmless.
+	 * @return Interpolator looking up environment variables and values of this chain
+	 */
+	final PropertyInterpolator getExpressionInterpolator() {
+		PropertyInterpolator interpolator = this.expressionInterpolator;
+		if (interpolator == null) {
+			interpolator = JuUtils.createInterpolator(this);
+			this.expressionInterpolator = interpolator;
+		}
+		return interpolator;
+	}
+	
+	/**
+	 * Notifies all listeners that properties of the chain might have changed.
+	 */
+	protected final void fireUpdateEvent() {
+		this.updateNotifier.fireUpdateEvent(this);
+	}
+	
+	private PropertyInfo getDefinedInfo(String key, boolean throwExceptionIfNotDefined) {
+		PropertyInfo pi = this.getInfo(key);
+		if (pi == null || pi.getValue() == null) {
+			if (throwExceptionIfNotDefined) {
+				throw new JuRuntimeException("Property undefined: " + key);
+			} else {
+				return null;
+			}
+		}
+		return pi;
+	}
+	
+	private <T> T getRequired(String key, Function<String, T> converter) {
+		T val = this.getOptional(key, converter);
+		if (val == null) {
+			throw new JuRuntimeException("Property undefined: " + key);
+		}
+		return val;
+	}
+	
+	private <T> T getOptional(String key, Function<String, T> converter) {
+		PropertyInfo pi = this.getDefinedInfo(key, false);
+		return pi != null ? this.convert(pi, converter) : null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> Function<String, T> getConverter(final Class<T> clazz) {
+		Function<String, ?> converter = this.converters.get(clazz);
+		if (converter == null) {
+			if (clazz.isEnum()) {
+				converter = new Function<String, T>() {
+					@Override
+					public T apply(String val) {
+						return (T) Enum.valueOf(clazz.asSubclass(Enum.class), val.trim());
+					}
+				};
+				Function<String, ?> existingConverter = this.converters.putIfAbsent(clazz, converter);
+				if (existingConverter != null) {
+					converter = existingConverter;
+				}
+			} else {
+				throw new JuRuntimeException("Conversion not supported: " + clazz);
+			}
+		}
+		return (Function<String, T>) converter;
+	}
+	
+	/**
+	 * Converts the value of the PropertyInfo, using its cached converted value if available.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T convert(PropertyInfo pi, Function<String, T> converter) {
+		if (pi instanceof ConvertedValueHolder) {
+			ConvertedValueHolder holder = (ConvertedValueHolder) pi;
+			ConvertedValue cachedValue = holder.convertedValue;
+			if (cachedValue != null && cachedValue.converter == converter) {
+				return (T) cachedValue.value;
+			}
+			
+			T val = this.convert(pi.getKey(), pi.getValue(), converter);
+			holder.convertedValue = new ConvertedValue(converter, val);
+			return val;
+		} else {
+			return this.convert(pi.getKey(), pi.getValue(), converter);
+		}
+	}
+	
+	private <T> T convert(String key, String val, Function<String, T> converter) {
+		if (StringUtils.isEmpty(val)) return null;
+		
+		try {
+			return converter.apply(val);
+		} catch (Exception ex) {
+			throw new JuRuntimeException("Couldn't convert value of property %s: %s", ex, key, val);
+		}
+	}
+	
+	private static long parseDuration(String val, TimeUnit unit) {
+		Matcher m = DURATION_PATTERN.matcher(val);
+		if (!m.matches()) {
+			throw new JuRuntimeException("Not a valid duration: " + val);
+		}
+		
+		long amount = Long.parseLong(m.group(1));
+		String suffix = m.group(2);
+		if (suffix == null) {
+			return amount;
+		}
+		
+		switch (suffix.toLowerCase()) {
+		case "ms":
+			return unit.convert(amount, TimeUnit.MILLISECONDS);
+		case "s":
+			return unit.convert(amount, TimeUnit.SECONDS);
+		case "m":
+		case "min":
+			return unit.convert(amount, TimeUnit.MINUTES);
+		case "h":
+			return unit.convert(amount, TimeUnit.HOURS);
+		default:
+			return unit.convert(amount, TimeUnit.DAYS);
+		}
+	}
+	
+	/**
+	 * Sorted array of keys allowing prefix lookups in O(log n + k).
+	 */
+	private static final class SortedKeyIndex {
+		private final List<String> keys;
+		
+		private SortedKeyIndex(Collection<String> keys) {
+			String[] sortedKeys = keys.toArray(new String[keys.size()]);
+			Arrays.sort(sortedKeys);
+			this.keys = Arrays.asList(sortedKeys);
+		}
+		
+		private List<String> getKeysByPrefix(String prefix) {
+			int start = Collections.binarySearch(this.keys, prefix);
+			if (start < 0) {
+				start = -start - 1;
+			}
+			
+			int end = start;
+			while (end < this.keys.size() && this.keys.get(end).startsWith(prefix)) {
+				end++;
+			}
+			
+			return Collections.unmodifiableList(this.keys.subList(start, end));
+		}
+	}
+	
+	/**
+	 * Immutable map backed by arrays that keeps the order of its entries.
+	 * <p>
+	 * Keys are looked up using an open addressing hash table of indexes into the arrays.
+	 */
+	private static final class CompactStringMap extends AbstractMap<String, String> {
+		private final String[] keys;
+		private final String[] values;
+		private final int[] table;
+		private final int mask;
+		
+		private CompactStringMap(List<String> keys, List<String> values) {
+			this.keys = keys.toArray(new String[keys.size()]);
+			this.values = values.toArray(new String[values.size()]);
+			
+			// Use a load factor of at most 0.5 to keep probe sequences short
+			int capacity = 2;
+			while (capacity < this.keys.length * 2) {
+				capacity <<= 1;
+			}
+			this.table = new int[capacity];
+			Arrays.fill(this.table, -1);
+			this.mask = capacity - 1;
+			
+			for (int i = 0; i < this.keys.length; i++) {
+				int index = this.keys[i].hashCode() & this.mask;
+				while (this.table[index] >= 0) {
+					index = (index + 1) & this.mask;
+				}
+				this.table[index] = i;
+			}
+		}
+		
+		private int indexOf(Object key) {
+			if (key == null) return -1;
+			
+			int index = key.hashCode() & this.mask;
+			while (this.table[index] >= 0) {
+				if (this.keys[this.table[index]].equals(key)) {
+					return this.table[index];
+				}
+				index = (index + 1) & this.mask;
+			}
+			return -1;
+		}
+		
+		@Override
+		public int size() {
+			return this.keys.length;
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return this.indexOf(key) >= 0;
+		}
+		
+		@Override
+		public String get(Object key) {
+			int index = this.indexOf(key);
+			return index >= 0 ? this.values[index] : null;
+		}
+		
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+			return new AbstractSet<Map.Entry<String, String>>() {
+				@Override
+				public int size() {
+					return keys.length;
+				}
+				
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+					return new Iterator<Map.Entry<String, String>>() {
+						private int index = 0;
+						
+						@Override
+						public boolean hasNext() {
+							return this.index < keys.length;
+						}
+						
+						@Override
+						public Map.Entry<String, String> next() {
+							if (!this.hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Map.Entry<String, String> entry = new SimpleImmutableEntry<>(keys[this.index], values[this.index]);
+							this.index++;
+							return entry;
+						}
+						
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			};
+		}
+	}
+	
+	/**
+	 * View of the properties of a chain starting with a prefix.
+	 */
+	private static final class SubPropertyChain extends AbstractPropertyChain {
+		private final AbstractPropertyChain parent;
+		private final String prefix;
+		
+		private SubPropertyChain(AbstractPropertyChain parent, String prefix) {
+			super(parent);
+			
+			this.parent = parent;
+			this.prefix = prefix;
+		}
+		
+		@Override
+		public PropertyInfo getInfo(String key) {
+			return this.parent.getInfo(this.prefix + key);
+		}
+		
+		@Override
+		protected Map<String, PropertyInfo> getInfos(Collection<String> keys) {
+			List<String> parentKeys = new ArrayList<>(keys.size());
+			for (String key : keys) {
+				parentKeys.add(this.prefix + key);
+			}
+			
+			Map<String, PropertyInfo> parentInfos = this.parent.getInfos(parentKeys);
+			Map<String, PropertyInfo> infos = new HashMap<>();
+			for (Map.Entry<String, PropertyInfo> entry : parentInfos.entrySet()) {
+				infos.put(entry.getKey().substring(this.prefix.length()), entry.getValue());
+			}
+			return infos;
+		}
+		
+		@Override
+		public Set<String> listKeys() {
+			return new LinkedHashSet<>(this.listKeysByPrefix(""));
+		}
+		
+		@Override
+		protected List<String> listKeysByPrefix(String prefix) {
+			List<String> keys = new ArrayList<>();
+			for (String key : this.parent.listKeysByPrefix(this.prefix + prefix)) {
+				keys.add(key.substring(this.prefix.length()));
+			}
+			return keys;
+		}
+		
+		@Override
+		public PropertyChain subChain(String prefix) {
+			return new SubPropertyChain(this.parent, this.prefix + prefix);
+		}
+		
+		@Override
+		public void clearCache() {
+			this.parent.clearCache();
+		}
+		
+		@Override
+		public EventNotifier<UpdateListener<PropertyChain>> getUpdateNotifier() {
+			return this.parent.getUpdateNotifier();
+		}
+		
+		@Override
+		public void subscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener) {
+			this.parent.subscribe(this.prefix + keyOrPrefix, listener);
+		}
+		
+		@Override
+		public void unsubscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener) {
+			this.parent.unsubscribe(this.prefix + keyOrPrefix, listener);
+		}
+		
+		@Override
+		public String interpolate(String expression) {
+			return this.parent.interpolate(expression);
+		}
+		
+		@Override
+		protected String getUninterpolatedValue(String key) {
+			return this.parent.getUninterpolatedValue(this.prefix + key);
+		}
+		
+		@Override
+		protected String getReferencedValue(String referencedKey) {
+			return this.parent.getReferencedValue(referencedKey);
+		}
+		
+		@Override
+		protected String toLocalKey(String referencedKey) {
+			String parentKey = this.parent.toLocalKey(referencedKey);
+			return parentKey != null && parentKey.startsWith(this.prefix)
+					? parentKey.substring(this.prefix.length())
+					: null;
+		}
+		
+		@Override
+		PropertyInterpolator createInterpolator(ValueSource chainValueSource) {
+			return this.parent.createInterpolator(chainValueSource);
+		}
+		
+		@Override
+		public String toString() {
+			return JuStringUtils.toString(this
+					, "prefix", this.prefix
+					, "parent", this.parent);
+		}
+	}
+	
+	/**
+	 * Base class for PropertyInfos that can hold the converted representation of their value.
+	 * <p>
+	 * Only the last conversion is kept, so alternating lookups of the same property using
+	 * different types will need to convert the value on each lookup.
+	 */
+	abstract static class ConvertedValueHolder implements PropertyInfo {
+		private volatile ConvertedValue convertedValue;
+	}
+	
+	private static final class ConvertedValue {
+		private final Function<String, ?> converter;
+		private final Object value;
+		
+		private ConvertedValue(Function<String, ?> converter, Object value) {
+			this.converter = converter;
+			this.value = value;
+		}
+	}
+}
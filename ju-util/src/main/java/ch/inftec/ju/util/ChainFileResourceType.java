@@ -0,0 +1,34 @@
+package ch.inftec.ju.util;
+
+import java.net.URL;
+import java.util.Properties;
+
+/**
+ * Type of resource that can be referenced in chain files in addition to the built in types
+ * <code>sys</code>, <code>prop</code> and <code>csv</code>.
+ * <p>
+ * Resources of custom types are referenced the same way as properties files, i.e.
+ * <code>{priority},{type},{resourcePath}[,optional]</code>.
+ * <p>
+ * Types are either registered explicitly using PropertyChainBuilder.ChainFilesResolver.resourceType or
+ * discovered using java.util.ServiceLoader, i.e. by listing the implementation class in
+ * <code>META-INF/services/ch.inftec.ju.util.ChainFileResourceType</code>. Implementations need a public
+ * no-argument constructor and must be thread safe.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+public interface ChainFileResourceType {
+	/**
+	 * Gets the name of the type as used in chain files, e.g. <code>json</code>.
+	 * @return Type name
+	 */
+	String getName();
+	
+	/**
+	 * Loads the properties contained in the specified resource.
+	 * @param resourceUrl Resource URL
+	 * @return Properties with String keys and values
+	 * @throws JuException If the resource cannot be loaded
+	 */
+	Properties load(URL resourceUrl) throws JuException;
+}
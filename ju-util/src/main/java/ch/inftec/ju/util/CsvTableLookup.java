@@ -2,6 +2,7 @@ package ch.inftec.ju.util;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -82,8 +83,7 @@ public class CsvTableLookup {
 	private final String defaultColumn;
 	
 	/**
-	 * Contains the name of the headers with the index corresponding to
-	 * the value in the rows value array.
+	 * Contains the name of the headers with the index of their column in the values arrays.
 	 */
 	private Map<String, Integer> headerIndexes = new HashMap<>();
 	/**
@@ -92,68 +92,210 @@ public class CsvTableLookup {
 	private List<String> headers;
 	
 	/**
-	 * Contains the rows with the values. Note that the values array contains
-	 * the name at position 0.
+	 * Contains the keys with their row id, i.e. the index of their values in the column arrays.
 	 */
-	private Map<String, String[]> rowValues = new HashMap<>();
+	private Map<String, Integer> keyIndexes = new HashMap<>();
 	/**
 	 * Unmodifiable list containing all keys for reference.
 	 */
 	private List<String> keys;
 	
+	/**
+	 * Values of the cells as specified in the file, by column and row id. Cells missing at the end of
+	 * a row are null, so the rows can be reconstructed by getRows.
+	 */
+	private String[][] values;
+	
+	/**
+	 * Values as returned by get, by column and row id, i.e. with the default column value merged
+	 * into empty cells.
+	 */
+	private Column[] columns;
+	/**
+	 * Column used for headers that don't exist in the table, i.e. containing the non-empty values of the default column.
+	 */
+	private Column undefinedColumn;
+	
 	private CsvTableLookup(URL url, String defaultColumn) {
 		this.defaultColumn = defaultColumn;
 		this.read(url);
 	}
 	
+	private CsvTableLookup(List<String[]> rows, String defaultColumn) {
+		this.defaultColumn = defaultColumn;
+		try {
+			TableReader tableReader = new TableReader();
+			for (String[] row : rows) {
+				tableReader.addRow(row);
+			}
+			tableReader.done();
+		} catch (Exception ex) {
+			throw new JuRuntimeException("Couldn't read CSV rows", ex);
+		}
+	}
+	
+	/**
+	 * Creates a CsvTableLookup from rows that have been read before, e.g. using getRows().
+	 * @param rows Rows, including the header row
+	 * @param defaultColumn Default column name
+	 * @return CsvTableLookup
+	 */
+	static CsvTableLookup fromRows(List<String[]> rows, String defaultColumn) {
+		return new CsvTableLookup(rows, defaultColumn);
+	}
+	
 	private void read(URL url) {
 		try (CSVReader reader = new CSVReader(
 				new IOUtil().createReader(url), 
 				CsvTableLookup.SEPARATOR_CHAR)) {
-			List<String[]> rows = reader.readAll();
+			// Process the file row by row so we never hold all rows in memory
+			TableReader tableReader = new TableReader();
+			String[] row;
+			while ((row = reader.readNext()) != null) {
+				tableReader.addRow(row);
+			}
+			tableReader.done();
+		} catch (Exception ex) {
+			throw new JuRuntimeException("Couldn't read CSV file", ex);
+		}
+	}
+	
+	/**
+	 * Reads the rows of a table one by one, storing the values by column right away.
+	 * <p>
+	 * Equal values are stored as a single String instance. Tables usually contain lots of repeated values,
+	 * like the same value for multiple profiles.
+	 */
+	private final class TableReader {
+		/**
+		 * Values that have been read so far, to share equal instances.
+		 */
+		private final Map<String, String> strings = new HashMap<>();
+		
+		private final List<String> keys = new ArrayList<>();
+		
+		/**
+		 * Number of rows read, including the header row and ignored rows.
+		 */
+		private int rowCount = 0;
+		
+		/**
+		 * Values by column and row id. The column arrays grow as rows are added.
+		 */
+		private String[][] values;
+		
+		private void addRow(String[] row) {
+			if (this.rowCount++ == 0) {
+				this.readHeaders(row);
+				return;
+			}
+		
+			if (row.length < 1) {
+				throw new IllegalArgumentException("Unspecified row name at position " + (this.rowCount - 1));
+			}
+			String key = row[0];
+			AssertUtil.assertNotNull("Key must not be null");
+			// Ignore empty and comment keys
+			if (key == null 
+					|| StringUtils.isEmpty(key.trim()) 
+					|| key.trim().startsWith(CsvTableLookup.COMMENT_CHAR)) {
+				return;
+			}
+			if (keyIndexes.containsKey(key)) {
+				throw new IllegalArgumentException("Duplicate key: " + key);
+			}
+			
+			int rowId = this.keys.size();
+			keyIndexes.put(key, rowId);
+			this.keys.add(key);
 			
-			if (rows.size() < 2 || rows.get(0).length < 2) {
+			if (rowId == this.values[0].length) {
+				for (int column = 0; column < this.values.length; column++) {
+					this.values[column] = Arrays.copyOf(this.values[column], rowId * 2);
+				}
+			}
+			for (int column = 0; column < this.values.length && column + 1 < row.length; column++) {
+				this.values[column][rowId] = this.share(row[column + 1] == null ? "" : row[column + 1]);
+			}
+		}
+		
+		private void readHeaders(String[] row) {
+			if (row.length < 2) {
 				throw new IllegalArgumentException("File needs at least a header and one row");
 			}
 			
-			// Read headers
 			List<String> headers = new ArrayList<>();
-			for (int i = 1; i < rows.get(0).length; i++) {
-				String header = rows.get(0)[i];
-				if (this.headerIndexes.containsKey(header)) {
+			for (int i = 1; i < row.length; i++) {
+				String header = row[i];
+				if (headerIndexes.containsKey(header)) {
 					throw new IllegalArgumentException("Duplicate header: " + header);
 				}
-				this.headerIndexes.put(header, i);
+				headerIndexes.put(header, i - 1);
 				headers.add(header);
 			}
-			this.headers = Collections.unmodifiableList(headers);
+			CsvTableLookup.this.headers = Collections.unmodifiableList(headers);
 			
-			// Read columns
-			List<String> keys = new ArrayList<>();
-			for (int i = 1; i < rows.size(); i++) {
-				if (rows.get(i).length < 1) {
-					throw new IllegalArgumentException("Unspecified row name at position " + i);
-				}
-				String key = rows.get(i)[0];
-				AssertUtil.assertNotNull("Key must not be null");
-				// Ignore empty and comment keys
-				if (key == null 
-						|| StringUtils.isEmpty(key.trim()) 
-						|| key.trim().startsWith(CsvTableLookup.COMMENT_CHAR)) {
-					continue;
-				} else {
-					if (this.rowValues.containsKey(key)) {
-						throw new IllegalArgumentException("Duplicate key: " + key);
+			this.values = new String[headers.size()][16];
+		}
+		
+		private String share(String value) {
+			String sharedValue = this.strings.get(value);
+			if (sharedValue == null) {
+				this.strings.put(value, value);
+				sharedValue = value;
+			}
+			return sharedValue;
+		}
+		
+		/**
+		 * Completes the table once all rows have been added.
+		 */
+		private void done() {
+			if (this.rowCount < 2) {
+				throw new IllegalArgumentException("File needs at least a header and one row");
+			}
+			
+			for (int column = 0; column < this.values.length; column++) {
+				this.values[column] = Arrays.copyOf(this.values[column], this.keys.size());
+			}
+			CsvTableLookup.this.keys = Collections.unmodifiableList(this.keys);
+			CsvTableLookup.this.values = this.values;
+			
+			CsvTableLookup.this.initColumns();
+		}
+	}
+	
+	/**
+	 * Initializes the columns returned by getColumn from the values.
+	 */
+	private void initColumns() {
+		// Merge the default column into the other columns
+		Integer defaultIndex = this.defaultColumn != null ? this.headerIndexes.get(this.defaultColumn) : null;
+		String[] defaultValues = new String[this.keys.size()];
+		if (defaultIndex != null) {
+			for (int row = 0; row < this.keys.size(); row++) {
+				String defaultValue = this.values[defaultIndex][row];
+				defaultValues[row] = StringUtils.isEmpty(defaultValue) ? null : defaultValue;
+			}
+		}
+		
+		this.columns = new Column[this.headers.size()];
+		for (int column = 0; column < this.headers.size(); column++) {
+			// Columns without values to merge share the array with the values
+			String[] columnValues = this.values[column];
+			if (defaultIndex != null && column != defaultIndex) {
+				for (int row = 0; row < this.keys.size(); row++) {
+					if (StringUtils.isEmpty(columnValues[row]) && defaultValues[row] != null) {
+						if (columnValues == this.values[column]) {
+							columnValues = columnValues.clone();
+						}
+						columnValues[row] = defaultValues[row];
 					}
-					
-					this.rowValues.put(key, rows.get(i));
-					keys.add(key);
 				}
 			}
-			this.keys = Collections.unmodifiableList(keys);
-		} catch (Exception ex) {
-			throw new JuRuntimeException("Couldn't read CSV file", ex);
+			this.columns[column] = new Column(this.headers.get(column), columnValues);
 		}
+		this.undefinedColumn = new Column(null, defaultValues);
 	}
 
 	/**
@@ -168,23 +310,65 @@ public class CsvTableLookup {
 	public String get(String key, String header) {
 		if (header == null) return null;
 		
-		String[] row = this.rowValues.get(key);
-		if (row == null) {
-			return null;
+		return this.getColumn(header).get(key);
+	}
+	
+	/**
+	 * Gets a view of the column with the specified header that can be used to look up values by key
+	 * without resolving the header for every lookup.
+	 * <p>
+	 * Values are the same as returned by get(key, header). The column doesn't need to exist in the table.
+	 * @param header Header name. If null, all values of the column are null
+	 * @return Column
+	 */
+	public Column getColumn(String header) {
+		Integer index = this.headerIndexes.get(header);
+		if (index != null) {
+			return this.columns[index];
+		} else if (header == null || header.equals(this.defaultColumn)) {
+			// No values, not even default values
+			return new Column(header, new String[this.keys.size()]);
 		} else {
-			// Determine the index, taking the defaultColumn into account if necessary
-			Integer index = this.headerIndexes.get(header);
-			String headerVal = (index != null && index < row.length)
-					? (row[index] == null ? "" : row[index])
-					: null;
+			return this.undefinedColumn;
+		}
+	}
 			
-			if (StringUtils.isEmpty(headerVal) && !header.equals(this.defaultColumn)) {
-				// Try to get the default column value
-				String defaultColumnVal = this.get(key, this.defaultColumn);
-				if (!StringUtils.isEmpty(defaultColumnVal)) return defaultColumnVal;
-			}
+	/**
+	 * Column of a CsvTableLookup, containing the values of all keys with the default column value merged
+	 * into empty cells.
+	 * @author martin.meyer@inftec.ch
+	 *
+	 */
+	public final class Column {
+		private final String header;
+		private final String[] values;
 			
-			return headerVal;
+		private Column(String header, String[] values) {
+			this.header = header;
+			this.values = values;
+		}
+		
+		/**
+		 * Gets the value for the specified key. Same rules apply as to CsvTableLookup.get().
+		 * @param key Row name
+		 * @return Value or null if the cell or key does not exist
+		 */
+		public String get(String key) {
+			Integer row = keyIndexes.get(key);
+			return row == null ? null : this.values[row];
+		}
+		
+		/**
+		 * Gets the table this column belongs to.
+		 * @return CsvTableLookup
+		 */
+		public CsvTableLookup getTable() {
+			return CsvTableLookup.this;
+		}
+		
+		@Override
+		public String toString() {
+			return JuStringUtils.toString(this, "header", this.header);
 		}
 	}
 	
@@ -235,4 +419,37 @@ public class CsvTableLookup {
 	public List<String> getKeys() {
 		return this.keys;
 	}
+	
+	/**
+	 * Gets the rows of the table, including the header row. The rows can be used to recreate
+	 * the table using fromRows. Ignored rows and cells without a header are not included.
+	 * @return List of rows
+	 */
+	List<String[]> getRows() {
+		List<String[]> rows = new ArrayList<>();
+		
+		String[] headerRow = new String[this.headers.size() + 1];
+		headerRow[0] = "";
+		for (int i = 0; i < this.headers.size(); i++) {
+			headerRow[i + 1] = this.headers.get(i);
+		}
+		rows.add(headerRow);
+		
+		for (int row = 0; row < this.keys.size(); row++) {
+			// Cells missing at the end of the row are omitted
+			int length = this.headers.size();
+			while (length > 0 && this.values[length - 1][row] == null) {
+				length--;
+			}
+			
+			String[] rowValues = new String[length + 1];
+			rowValues[0] = this.keys.get(row);
+			for (int column = 0; column < length; column++) {
+				rowValues[column + 1] = this.values[column][row];
+			}
+			rows.add(rowValues);
+		}
+		
+		return rows;
+	}
 }
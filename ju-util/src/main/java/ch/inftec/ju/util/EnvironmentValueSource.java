@@ -0,0 +1,67 @@
+package ch.inftec.ju.util;
+
+import org.codehaus.plexus.interpolation.AbstractValueSource;
+import org.codehaus.plexus.interpolation.EnvarBasedValueSource;
+
+/**
+ * ValueSource to look up environment variables, e.g. ${env.HOME}.
+ * <p>
+ * The environment is snapshotted once and shared process wide by all instances. Call refresh()
+ * to take a new snapshot if the environment might have changed.
+ * <p>
+ * Uses the same semantics as the plexus EnvarBasedValueSource, i.e. an optional <code>env.</code>
+ * prefix is stripped and names are case insensitive on Windows.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class EnvironmentValueSource extends AbstractValueSource {
+	private static final EnvironmentValueSource INSTANCE = new EnvironmentValueSource();
+	
+	private static volatile EnvarBasedValueSource snapshot;
+	
+	private EnvironmentValueSource() {
+		super(false);
+	}
+	
+	/**
+	 * Gets the shared EnvironmentValueSource instance.
+	 * @return EnvironmentValueSource
+	 */
+	static EnvironmentValueSource getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Discards the current environment snapshot. The next lookup will take a new one.
+	 */
+	static synchronized void refresh() {
+		// EnvarBasedValueSource caches the environment in static fields, so we need to clear them as well
+		ReflectUtils.setStaticField(EnvarBasedValueSource.class, "envarsCaseSensitive", null, true);
+		ReflectUtils.setStaticField(EnvarBasedValueSource.class, "envarsCaseInsensitive", null, true);
+		
+		snapshot = null;
+	}
+	
+	private static EnvarBasedValueSource getSnapshot() {
+		EnvarBasedValueSource s = snapshot;
+		if (s != null) {
+			return s;
+		}
+		
+		synchronized (EnvironmentValueSource.class) {
+			if (snapshot == null) {
+				try {
+					snapshot = new EnvarBasedValueSource();
+				} catch (Exception ex) {
+					throw new JuRuntimeException("Couldn't create EnvarBasedValueSource", ex);
+				}
+			}
+			return snapshot;
+		}
+	}
+	
+	@Override
+	public Object getValue(String expression) {
+		return EnvironmentValueSource.getSnapshot().getValue(expression);
+	}
+}
@@ -0,0 +1,161 @@
+package ch.inftec.ju.util;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.plexus.interpolation.AbstractValueSource;
+import org.codehaus.plexus.interpolation.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.inftec.ju.security.JuSecurityUtils;
+import ch.inftec.ju.util.function.Function;
+
+/**
+ * Immutable PropertyChain containing a snapshot of resolved properties.
+ * <p>
+ * The properties are stored in an open addressing hash table (using linear probing), so
+ * lookups don't need any evaluator iteration or allocation.
+ * <p>
+ * Use PropertyChainBuilder.getFrozenPropertyChain() to create instances.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class FrozenPropertyChain extends AbstractPropertyChain {
+	private Logger logger = LoggerFactory.getLogger(FrozenPropertyChain.class);
+	
+	private final String[] keys;
+	private final PropertyInfo[] infos;
+	private final int mask;
+	
+	private final Set<String> keySet;
+	private final PropertyInterpolator interpolator;
+	private final boolean envVariableInterpolation;
+	
+	/**
+	 * Creates a new frozen chain.
+	 * @param infos Resolved properties by key, in the order they should be listed
+	 * @param defaultThrowExceptionIfUndefined Whether to throw an exception by default for undefined properties
+	 * @param converters Custom converters by type
+	 * @param interpolation Whether the interpolate method should interpolate expressions
+	 * @param envVariableInterpolation Whether interpolation should support environment variables
+	 */
+	FrozenPropertyChain(Map<String, PropertyInfo> infos, boolean defaultThrowExceptionIfUndefined
+			, Map<Class<?>, Function<String, ?>> converters, boolean interpolation, boolean envVariableInterpolation) {
+		super(defaultThrowExceptionIfUndefined, converters);
+		
+		// Use a load factor of at most 0.5 to keep probe sequences short
+		int capacity = 2;
+		while (capacity < infos.size() * 2) {
+			capacity <<= 1;
+		}
+		
+		this.keys = new String[capacity];
+		this.infos = new PropertyInfo[capacity];
+		this.mask = capacity - 1;
+		
+		for (Map.Entry<String, PropertyInfo> entry : infos.entrySet()) {
+			int index = FrozenPropertyChain.hash(entry.getKey()) & this.mask;
+			while (this.keys[index] != null) {
+				index = (index + 1) & this.mask;
+			}
+			this.keys[index] = entry.getKey();
+			this.infos[index] = entry.getValue();
+		}
+		
+		this.keySet = Collections.unmodifiableSet(new LinkedHashSet<>(infos.keySet()));
+		this.envVariableInterpolation = envVariableInterpolation;
+		
+		if (interpolation) {
+			ValueSource chainValueSource = new AbstractValueSource(false) {
+				@Override
+				public Object getValue(String expression) {
+					PropertyInfo pi = FrozenPropertyChain.this.getInfo(expression);
+					return pi != null ? pi.getValue() : null;
+				}
+			};
+			
+			if (envVariableInterpolation) {
+				this.interpolator = new PropertyInterpolator(EnvironmentValueSource.getInstance(), chainValueSource);
+			} else {
+				this.interpolator = new PropertyInterpolator(chainValueSource);
+			}
+		} else {
+			this.interpolator = null;
+		}
+	}
+	
+	private static int hash(String key) {
+		// Spread higher bits to lower ones as we mask the hash
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+	
+	@Override
+	public PropertyInfo getInfo(String key) {
+		int index = FrozenPropertyChain.hash(key) & this.mask;
+		
+		String k;
+		while ((k = this.keys[index]) != null) {
+			if (k.equals(key)) {
+				return this.infos[index];
+			}
+			index = (index + 1) & this.mask;
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public Set<String> listKeys() {
+		return this.keySet;
+	}
+	
+	@Override
+	public void clearCache() {
+		// Nothing to clear, the chain is immutable
+	}
+	
+	@Override
+	protected String getUninterpolatedValue(String key) {
+		PropertyInfo pi = this.getInfo(key);
+		if (pi == null) {
+			return null;
+		}
+		
+		// Encrypted values have been decrypted before interpolation, so we cannot use their raw value
+		return JuSecurityUtils.isEncryptedByTag(pi.getRawValue())
+				? pi.getValue()
+				: pi.getRawValue();
+	}
+	
+	@Override
+	PropertyInterpolator createInterpolator(ValueSource chainValueSource) {
+		if (this.interpolator == null) {
+			return null;
+		} else if (this.envVariableInterpolation) {
+			return new PropertyInterpolator(EnvironmentValueSource.getInstance(), chainValueSource);
+		} else {
+			return new PropertyInterpolator(chainValueSource);
+		}
+	}
+	
+	@Override
+	public String interpolate(String expression) {
+		if (this.interpolator != null) {
+			try {
+				return this.interpolator.interpolate(expression);
+			} catch (Exception ex) {
+				logger.warn("Couldn't interpolate expression: " + expression, ex);
+			}
+		}
+		return expression;
+	}
+	
+	@Override
+	public String toString() {
+		return JuStringUtils.toString(this, "size", this.keySet.size());
+	}
+}
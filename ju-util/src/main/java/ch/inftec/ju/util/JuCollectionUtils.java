@@ -400,8 +400,17 @@ public final class JuCollectionUtils {
 	 * @return Set of key Strings
 	 */
 	public static Set<String> getKeyStrings(Properties props) {
+		return JuCollectionUtils.getKeyStrings((Map<?, ?>) props);
+	}
+	
+	/**
+	 * Gets a set of all keys in the specified map, converted to Strings and sorted alphabetically.
+	 * @param map Map, e.g. an unmodifiable view of Properties
+	 * @return Set of key Strings
+	 */
+	public static Set<String> getKeyStrings(Map<?, ?> map) {
 		Set<String> set = new TreeSet<>();
-		for (Object key : props.keySet()) {
+		for (Object key : map.keySet()) {
 			if (key != null) set.add(key.toString());
 		}
 		return set;
@@ -1,13 +1,19 @@
 package ch.inftec.ju.util;
 
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.StringUtils;
+import org.codehaus.plexus.interpolation.AbstractValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.inftec.ju.security.JuSecurityUtils;
 import ch.inftec.ju.security.JuTextEncryptor;
+import ch.inftec.ju.util.PropertyChainBuilder.ChainFilesResolver;
 
 /**
  * Utility class containing functions related to the JU library itself.
@@ -17,9 +23,18 @@ import ch.inftec.ju.security.JuTextEncryptor;
 public class JuUtils {
 	private static Logger logger = LoggerFactory.getLogger(JuUtils.class);
 	
-	private static PropertyChain juPropertyChain;
+	/**
+	 * Holds the initialized JU PropertyChain along with the default encryptor. Null if not initialized.
+	 * <p>
+	 * Readers access the reference without locking. Only the initialization is synchronized.
+	 */
+	private static final AtomicReference<JuProperties> juProperties = new AtomicReference<>();
 	
-	private static JuTextEncryptor defaultEncryptor;
+	/**
+	 * Incremented by clearPropertyChain, so an initialization running concurrently to a clear won't publish
+	 * a chain built from the state before the clear.
+	 */
+	private static final AtomicLong juPropertiesGeneration = new AtomicLong();
 	
 	/**
 	 * Name of the files that contains the property files references.
@@ -50,6 +65,36 @@ public class JuUtils {
 	 */
 	private static final String INTERPOLATION_PROPERTY = "ju-util.propertyChain.interpolation";
 	
+	/**
+	 * Name of the property containing the flag to cache resolved values.
+	 */
+	private static final String CACHE_RESOLVED_VALUES_PROPERTY = "ju-util.propertyChain.cacheResolvedValues";
+	
+	/**
+	 * Name of the property containing the flag to cache decrypted values.
+	 */
+	private static final String CACHE_DECRYPTED_VALUES_PROPERTY = "ju-util.propertyChain.cacheDecryptedValues";
+	
+	/**
+	 * Name of the property containing the reload interval (in milliseconds) of property files.
+	 */
+	private static final String RELOAD_INTERVAL_PROPERTY = "ju-util.propertyChain.reloadInterval";
+	
+	/**
+	 * Name of the system property containing the path of the snapshot file of the property chain.
+	 */
+	private static final String SNAPSHOT_FILE_PROPERTY = "ju-util.propertyChain.snapshotFile";
+	
+	/**
+	 * Name of the system property containing the flag to load property files on first access.
+	 */
+	private static final String LAZY_LOADING_PROPERTY = "ju-util.propertyChain.lazyLoading";
+	
+	/**
+	 * Name of the system property containing the flag to look up and load chain file resources in parallel.
+	 */
+	private static final String PARALLEL_RESOLUTION_PROPERTY = "ju-util.propertyChain.parallelResolution";
+	
 	/**
 	 * Gets a PropertyChain to evaluate ju properties.
 	 * <p>
@@ -74,53 +119,124 @@ public class JuUtils {
 	 * The PropertyChain is configured <i>not</i> to throw exceptions by default if a property
 	 * is undefined.
 	 * <p>
+	 * Resolved values can be cached by setting the property <i>ju-util.propertyChain.cacheResolvedValues</i> to true.
+	 * In this case, changes of system properties will only be picked up after calling clearPropertyChain().
+	 * <p>
+	 * Property files on the file system can be reloaded in the background when they are modified by setting
+	 * the property <i>ju-util.propertyChain.reloadInterval</i> to the poll interval in milliseconds.
+	 * <p>
 	 * Encrypted properties can be decrypted automatically by setting a file containing the decryption password using
 	 * the property <i>ju-util.propertyChain.encryption.passwordFile</i>. This property will be evaluated using the Chain
-	 * right before finalizing it.
+	 * right before finalizing it. Decrypted values can be cached by setting the property
+	 * <i>ju-util.propertyChain.cacheDecryptedValues</i> to true, keeping the plaintexts in memory until the
+	 * chain is cleared.
 	 * <p>
 	 * The property chain can be configured by using <code>ju.properties.files</code> chain files on the classpath. See
 	 * <code>ju-util/src/main/resources/ju.properties.files</code> for a reference on chain files.
+	 * <p>
+	 * To speed up initialization, the resolved chain files can be stored in a snapshot file by setting the
+	 * <i>system property</i> <i>ju-util.propertyChain.snapshotFile</i> to the path of the file. As long as the
+	 * configuration is unchanged, the chain will be restored from the snapshot. The snapshot should be deleted
+	 * when the classpath changes. See PropertyChainBuilder.ChainFilesResolver.snapshot(Path) for details.
+	 * <p>
+	 * Property files can be loaded on first access instead of when the chain is created by setting the
+	 * <i>system property</i> <i>ju-util.propertyChain.lazyLoading</i> to true. See
+	 * PropertyChainBuilder.ChainFilesResolver.lazy(boolean) for details.
+	 * <p>
+	 * Chain files and the resources they reference can be looked up and loaded in parallel by setting the
+	 * <i>system property</i> <i>ju-util.propertyChain.parallelResolution</i> to true. See
+	 * PropertyChainBuilder.ChainFilesResolver.parallel(boolean) for details.
 	 * 
 	 * @return PropertyChain implemenation to evaluate JU properties
 	 */
-	public static synchronized PropertyChain getJuPropertyChain() {
-		if (juPropertyChain == null) {
-			logger.debug("Initializing JU PropertyChain");
-			
-			PropertyChainBuilder chainBuilder = new PropertyChainBuilder();
-			
-			// Add hidden value keys
-			chainBuilder.hideValueForKey(ENCRYPTION_PASSWORD_PROPERTY);
-			
-			// Add evaluators by chain file resources found on the classpath
-			chainBuilder.addEvaluatorsByChainFiles()
-				.name(JuUtils.PROPERTIES_FILES_NAME)
-				.resolve();
-			
-			// Enable interpolation (unless deactivated)
-			boolean interpolate = chainBuilder.peekChain().get(INTERPOLATION_PROPERTY, Boolean.class, "true");
-			chainBuilder.interpolation().enable(interpolate);
-			
-			evaluateDefaultEncryptor(chainBuilder.peekChain());
-			chainBuilder.setDecryptor(defaultEncryptor);
-			
-			juPropertyChain = chainBuilder.getPropertyChain();
+	public static PropertyChain getJuPropertyChain() {
+		return JuUtils.getJuProperties().chain;
+	}
+	
+	private static JuProperties getJuProperties() {
+		JuProperties properties = juProperties.get();
+		if (properties != null) {
+			return properties;
 		}
-
-		return juPropertyChain;
+		
+		synchronized (JuUtils.class) {
+			properties = juProperties.get();
+			if (properties == null) {
+				long generation = juPropertiesGeneration.get();
+				properties = JuUtils.createJuProperties();
+				juProperties.set(properties);
+				
+				// If the chain was cleared in the meantime, the clear wins. The next call will build a new chain
+				if (juPropertiesGeneration.get() != generation) {
+					juProperties.compareAndSet(properties, null);
+				}
+			}
+			return properties;
+		}
+	}
+	
+	private static JuProperties createJuProperties() {
+		logger.debug("Initializing JU PropertyChain");
+		
+		PropertyChainBuilder chainBuilder = new PropertyChainBuilder();
+		
+		// Add hidden value keys
+		chainBuilder.hideValueForKey(ENCRYPTION_PASSWORD_PROPERTY);
+		
+		// Add evaluators by chain file resources found on the classpath
+		ChainFilesResolver chainFilesResolver = chainBuilder.addEvaluatorsByChainFiles()
+			.name(JuUtils.PROPERTIES_FILES_NAME);
+		
+		// The snapshot file, lazy loading and parallel resolution can only be configured using system properties as the chain doesn't exist yet
+		String snapshotFile = System.getProperty(SNAPSHOT_FILE_PROPERTY);
+		if (!StringUtils.isEmpty(snapshotFile)) {
+			chainFilesResolver.snapshot(Paths.get(snapshotFile));
+		}
+		
+		chainFilesResolver.lazy(Boolean.parseBoolean(System.getProperty(LAZY_LOADING_PROPERTY)));
+		chainFilesResolver.parallel(Boolean.parseBoolean(System.getProperty(PARALLEL_RESOLUTION_PROPERTY)));
+		chainFilesResolver.resolve();
+		
+		// Enable interpolation (unless deactivated)
+		boolean interpolate = chainBuilder.peekChain().get(INTERPOLATION_PROPERTY, Boolean.class, "true");
+		chainBuilder.interpolation().enable(interpolate);
+		
+		// Cache resolved values (if activated)
+		boolean cacheResolvedValues = chainBuilder.peekChain().get(CACHE_RESOLVED_VALUES_PROPERTY, Boolean.class, "false");
+		chainBuilder.setCacheResolvedValues(cacheResolvedValues);
+		
+		boolean cacheDecryptedValues = chainBuilder.peekChain().get(CACHE_DECRYPTED_VALUES_PROPERTY, Boolean.class, "false");
+		chainBuilder.decryptionCache().enable(cacheDecryptedValues);
+		
+		// Reload modified property files (if activated)
+		int reloadInterval = chainBuilder.peekChain().get(RELOAD_INTERVAL_PROPERTY, Integer.class, "0");
+		chainBuilder.setReloadInterval(reloadInterval, TimeUnit.MILLISECONDS);
+		
+		JuTextEncryptor defaultEncryptor = JuUtils.createDefaultEncryptor(chainBuilder.peekChain());
+		chainBuilder.setDecryptor(defaultEncryptor);
+		
+		return new JuProperties(chainBuilder.getPropertyChain(), defaultEncryptor);
 	}
 	
 	/**
 	 * Clears the cached property chain, forcing a reload.
+	 * <p>
+	 * Values cached by the property chain (e.g. decrypted values) are cleared as well. The default
+	 * encryptor is reset along with the chain as it depends on its values. Interpolation templates cached
+	 * process wide are cleared too.
+	 * <p>
+	 * Threads that are still using the previous chain can safely continue to do so.
 	 */
 	public static void clearPropertyChain() {
-		juPropertyChain = null;
-		
-		// We'll also reset the default encryptor as it depends on values of the property chain
-		defaultEncryptor = null;
+		juPropertiesGeneration.incrementAndGet();
+		JuProperties properties = juProperties.getAndSet(null);
+		if (properties != null) {
+			properties.chain.clearCache();
+		}
+		PropertyInterpolator.clearTemplates();
 	}
 	
-	private static synchronized void evaluateDefaultEncryptor(PropertyChain chainPeek) {
+	private static JuTextEncryptor createDefaultEncryptor(PropertyChain chainPeek) {
 		// Check if an encryption password was set
 		String encryptionPassword = chainPeek.get(ENCRYPTION_PASSWORD_PROPERTY);
 		boolean strongEncryption = chainPeek.get(STRONG_ENCRYPTION_PROPERTY, Boolean.class, "false");
@@ -128,7 +244,7 @@ public class JuUtils {
 			logger.debug("Password set, setting decryptor (strong encryption={})"
 					, strongEncryption);
 			
-			defaultEncryptor = JuSecurityUtils.buildEncryptor()
+			return JuSecurityUtils.buildEncryptor()
 					.strong(strongEncryption)
 					.password(encryptionPassword)
 					.createTextEncryptor();
@@ -142,12 +258,14 @@ public class JuUtils {
 				
 				Path p = JuUrl.existingFile(encryptionPasswordFile);
 				
-				defaultEncryptor = JuSecurityUtils.buildEncryptor()
+				return JuSecurityUtils.buildEncryptor()
 						.strong(strongEncryption)
 						.passwordByUrl(JuUrl.toUrl(p))
 						.createTextEncryptor();
 			}
 		}
+		
+		return null;
 	}
 	
 	/**
@@ -157,11 +275,9 @@ public class JuUtils {
 	 * If none was specified, null is returned.
 	 * @return JuTextEncryptor
 	 */
-	public static synchronized JuTextEncryptor getDefaultEncryptor() {
+	public static JuTextEncryptor getDefaultEncryptor() {
 		// Get Property Chain. This will evaluate the TextEncryptor if necessary
-		getJuPropertyChain();
-		
-		return defaultEncryptor;
+		return JuUtils.getJuProperties().encryptor;
 	}
 	
 	/**
@@ -176,18 +292,76 @@ public class JuUtils {
 	
 	/**
 	 * Helper method to interpolate String using the specified PropertyChain as value source.
+	 * <p>
+	 * Environment variables can be referenced as well, e.g. ${env.HOME}.
+	 * <p>
+	 * For chains extending AbstractPropertyChain, the interpolator is kept by the chain, so this method
+	 * can efficiently be called repeatedly (and concurrently) for the same chain.
 	 * @param expression Expression to interpolate
 	 * @param chain PropertyChain value source
-	 * @return
+	 * @return Interpolated value
 	 */
 	public static String interpolate(String expression, PropertyChain chain) {
-		InterpolatingPropertyChain propertyChain = new PropertyChainBuilder()
-				.interpolation()
-					.enable(true)
-					.done()
-				.addPropertyChainPropertyEvaluator(chain)
-				.getPropertyChain();
-		
-		return propertyChain.interpolate(expression);
+		PropertyInterpolator interpolator = chain instanceof AbstractPropertyChain
+				? ((AbstractPropertyChain) chain).getExpressionInterpolator()
+				: JuUtils.createInterpolator(chain);
+		
+		try {
+			return interpolator.interpolate(expression);
+		} catch (Exception ex) {
+			logger.warn("Couldn't interpolate expression: " + expression, ex);
+			return expression;
+		}
+	}
+	
+	/**
+	 * Creates the interpolator used by interpolate(String, PropertyChain) for the specified chain.
+	 * @param chain PropertyChain value source
+	 * @return Interpolator looking up environment variables and values of the chain
+	 */
+	static PropertyInterpolator createInterpolator(PropertyChain chain) {
+		return new PropertyInterpolator(EnvironmentValueSource.getInstance(), new NestedChainValueSource(chain));
+	}
+	
+	/**
+	 * Refreshes the snapshot of the environment variables used for interpolation.
+	 * <p>
+	 * The environment is only read once and shared by all PropertyChains. Call this method if the
+	 * environment might have changed. Note that PropertyChains caching resolved values will
+	 * need to be cleared as well to reflect the changes.
+	 */
+	public static void refreshEnvironment() {
+		EnvironmentValueSource.refresh();
+	}
+	
+	/**
+	 * ValueSource looking up values in a PropertyChain.
+	 */
+	private static final class NestedChainValueSource extends AbstractValueSource {
+		private final PropertyChain chain;
+		
+		private NestedChainValueSource(PropertyChain chain) {
+			super(false);
+			this.chain = chain;
+		}
+		
+		@Override
+		public Object getValue(String expression) {
+			return this.chain.get(expression, Object.class);
+		}
+	}
+	
+	/**
+	 * Immutable holder of the JU PropertyChain and the default encryptor that was evaluated
+	 * using it, so both can be published and cleared atomically.
+	 */
+	private static final class JuProperties {
+		private final PropertyChain chain;
+		private final JuTextEncryptor encryptor;
+		
+		private JuProperties(PropertyChain chain, JuTextEncryptor encryptor) {
+			this.chain = chain;
+			this.encryptor = encryptor;
+		}
 	}
 }
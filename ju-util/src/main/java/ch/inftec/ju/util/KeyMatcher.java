@@ -0,0 +1,733 @@
+package ch.inftec.ju.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Matcher that tests keys against a set of patterns in a single pass, e.g. to filter property keys.
+ * <p>
+ * Patterns are either regular expressions (java.util.regex syntax, matching the whole key like
+ * RegexUtil.matches) or globs where <code>*</code> matches any number of characters and <code>?</code>
+ * matches a single character.
+ * <p>
+ * All patterns are merged into one automaton that is evaluated with one pass over the key, telling which
+ * patterns match. The states of the automaton are created lazily and cached, so the cost of a lookup
+ * doesn't depend on the number of patterns once the matcher is warmed up. Like java.util.regex, the
+ * automaton consumes code points, so supplementary characters count as one character.
+ * <p>
+ * Regular expressions using features that cannot be expressed by an automaton (like back references,
+ * look arounds, anchors, bounded repetitions or flags) are matched using java.util.regex separately.
+ * <p>
+ * Use the build() method to get a builder to create new KeyMatcher instances. KeyMatchers are thread safe.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+public final class KeyMatcher {
+	/**
+	 * Maximum number of automaton states to cache. Lookups needing further states compute them on the fly.
+	 */
+	private static final int MAX_CACHED_STATES = 10000;
+	
+	public static final class KeyMatcherBuilder {
+		private final List<String> patterns = new ArrayList<>();
+		private final List<Boolean> globs = new ArrayList<>();
+		
+		private KeyMatcherBuilder() {
+		}
+		
+		/**
+		 * Adds a regular expression.
+		 * @param regex Regular expression that must match the whole key
+		 * @return This builder to allow for chaining
+		 */
+		public KeyMatcherBuilder regex(String regex) {
+			AssertUtil.assertNotNull("Regex must not be null", regex);
+			this.patterns.add(regex);
+			this.globs.add(false);
+			return this;
+		}
+		
+		/**
+		 * Adds regular expressions, in the order of the collection.
+		 * @param regexes Regular expressions
+		 * @return This builder to allow for chaining
+		 */
+		public KeyMatcherBuilder regexes(Collection<String> regexes) {
+			for (String regex : regexes) {
+				this.regex(regex);
+			}
+			return this;
+		}
+		
+		/**
+		 * Adds a glob, e.g. <code>ju.*.password</code>.
+		 * @param glob Glob that must match the whole key
+		 * @return This builder to allow for chaining
+		 */
+		public KeyMatcherBuilder glob(String glob) {
+			AssertUtil.assertNotNull("Glob must not be null", glob);
+			this.patterns.add(glob);
+			this.globs.add(true);
+			return this;
+		}
+		
+		/**
+		 * Adds globs, in the order of the collection.
+		 * @param globs Globs
+		 * @return This builder to allow for chaining
+		 */
+		public KeyMatcherBuilder globs(Collection<String> globs) {
+			for (String glob : globs) {
+				this.glob(glob);
+			}
+			return this;
+		}
+		
+		public KeyMatcher create() {
+			return new KeyMatcher(this.patterns, this.globs);
+		}
+	}
+	
+	/**
+	 * Builds a new KeyMatcher instance.
+	 * @return Builder
+	 */
+	public static KeyMatcherBuilder build() {
+		return new KeyMatcherBuilder();
+	}
+	
+	private final List<String> patterns;
+	
+	/**
+	 * Patterns that aren't part of the automaton, by pattern index.
+	 */
+	private final Map<Integer, Pattern> regexPatterns = new HashMap<>();
+	
+	// Automaton states by state id
+	private final CharClass[] stateChars;
+	private final int[] stateNext;
+	private final int[][] stateEpsilons;
+	private final int[] statePatterns;
+	
+	/**
+	 * Cached sets of automaton states by their state ids.
+	 */
+	private final ConcurrentMap<String, StateSet> stateSets = new ConcurrentHashMap<>();
+	private final StateSet startStateSet;
+	
+	private KeyMatcher(List<String> patterns, List<Boolean> globs) {
+		this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+		
+		// Create the automaton containing all supported patterns
+		State start = new State();
+		for (int i = 0; i < patterns.size(); i++) {
+			Fragment fragment = globs.get(i)
+					? KeyMatcher.parseGlob(patterns.get(i))
+					: new RegexParser(patterns.get(i)).parse();
+			
+			if (fragment == null) {
+				this.regexPatterns.put(i, Pattern.compile(patterns.get(i)));
+			} else {
+				State match = new State();
+				match.pattern = i;
+				fragment.end.epsilons.add(match);
+				start.epsilons.add(fragment.start);
+			}
+		}
+		
+		// Number the states
+		Map<State, Integer> ids = new IdentityHashMap<>();
+		List<State> states = new ArrayList<>();
+		Deque<State> pending = new ArrayDeque<>();
+		pending.add(start);
+		ids.put(start, 0);
+		while (!pending.isEmpty()) {
+			State state = pending.poll();
+			states.add(state);
+			
+			List<State> successors = new ArrayList<>(state.epsilons);
+			if (state.next != null) {
+				successors.add(state.next);
+			}
+			for (State successor : successors) {
+				if (!ids.containsKey(successor)) {
+					ids.put(successor, ids.size());
+					pending.add(successor);
+				}
+			}
+		}
+		
+		this.stateChars = new CharClass[states.size()];
+		this.stateNext = new int[states.size()];
+		this.stateEpsilons = new int[states.size()][];
+		this.statePatterns = new int[states.size()];
+		for (int i = 0; i < states.size(); i++) {
+			State state = states.get(i);
+			this.stateChars[i] = state.chars;
+			this.stateNext[i] = state.next != null ? ids.get(state.next) : -1;
+			this.stateEpsilons[i] = new int[state.epsilons.size()];
+			for (int j = 0; j < state.epsilons.size(); j++) {
+				this.stateEpsilons[i][j] = ids.get(state.epsilons.get(j));
+			}
+			this.statePatterns[i] = state.pattern;
+		}
+		
+		this.startStateSet = this.getStateSet(this.closure(new int[] {0}));
+	}
+	
+	/**
+	 * Gets the patterns of this matcher.
+	 * @return Patterns in the order they have been added
+	 */
+	public List<String> getPatterns() {
+		return this.patterns;
+	}
+	
+	/**
+	 * Gets the patterns matching the specified key.
+	 * @param key Key
+	 * @return BitSet containing the indexes of the matching patterns, in the order they have been added.
+	 * Empty if the key is null
+	 */
+	public BitSet getMatches(String key) {
+		BitSet matches = new BitSet(this.patterns.size());
+		if (key == null) {
+			return matches;
+		}
+		
+		StateSet stateSet = this.startStateSet;
+		for (int i = 0; i < key.length() && !stateSet.isEmpty(); ) {
+			int c = key.codePointAt(i);
+			stateSet = this.next(stateSet, c);
+			i += Character.charCount(c);
+		}
+		matches.or(stateSet.matches);
+		
+		for (Map.Entry<Integer, Pattern> regexPattern : this.regexPatterns.entrySet()) {
+			if (regexPattern.getValue().matcher(key).matches()) {
+				matches.set(regexPattern.getKey());
+			}
+		}
+		
+		return matches;
+	}
+	
+	/**
+	 * Checks whether any pattern matches the specified key.
+	 * @param key Key
+	 * @return True if at least one pattern matches the key
+	 */
+	public boolean matchesAny(String key) {
+		return !this.getMatches(key).isEmpty();
+	}
+	
+	private StateSet next(StateSet stateSet, int c) {
+		StateSet next = c < StateSet.ASCII_LENGTH ? stateSet.asciiNext[c] : stateSet.next.get(c);
+		if (next != null) {
+			return next;
+		}
+		
+		// Compute the next state set
+		int[] nextStates = new int[stateSet.states.length];
+		int count = 0;
+		for (int state : stateSet.states) {
+			if (this.stateChars[state] != null && this.stateChars[state].contains(c)) {
+				nextStates[count++] = this.stateNext[state];
+			}
+		}
+		next = this.getStateSet(this.closure(Arrays.copyOf(nextStates, count)));
+		
+		// Racy caching is fine as StateSets are immutable (apart from the caches) and equal sets are interchangeable
+		if (stateSet.cached && next.cached) {
+			if (c < StateSet.ASCII_LENGTH) {
+				stateSet.asciiNext[c] = next;
+			} else {
+				stateSet.next.put(c, next);
+			}
+		}
+		return next;
+	}
+	
+	/**
+	 * Gets the cached state set containing the specified states.
+	 * @param states Sorted state ids
+	 */
+	private StateSet getStateSet(int[] states) {
+		String key = Arrays.toString(states);
+		StateSet stateSet = this.stateSets.get(key);
+		if (stateSet == null) {
+			BitSet matches = new BitSet();
+			for (int state : states) {
+				if (this.statePatterns[state] >= 0) {
+					matches.set(this.statePatterns[state]);
+				}
+			}
+			boolean cached = this.stateSets.size() < MAX_CACHED_STATES;
+			stateSet = new StateSet(states, matches, cached);
+			
+			if (cached) {
+				StateSet existingStateSet = this.stateSets.putIfAbsent(key, stateSet);
+				if (existingStateSet != null) {
+					stateSet = existingStateSet;
+				}
+			}
+		}
+		return stateSet;
+	}
+	
+	/**
+	 * Gets the sorted ids of all states reachable from the specified states without consuming a character.
+	 */
+	private int[] closure(int[] states) {
+		BitSet closure = new BitSet(this.stateChars.length);
+		Deque<Integer> pending = new ArrayDeque<>();
+		for (int state : states) {
+			if (!closure.get(state)) {
+				closure.set(state);
+				pending.push(state);
+			}
+		}
+		while (!pending.isEmpty()) {
+			for (int epsilon : this.stateEpsilons[pending.pop()]) {
+				if (!closure.get(epsilon)) {
+					closure.set(epsilon);
+					pending.push(epsilon);
+				}
+			}
+		}
+		
+		// Only states consuming characters or matching patterns are relevant
+		int[] closureStates = new int[closure.cardinality()];
+		int count = 0;
+		for (int state = closure.nextSetBit(0); state >= 0; state = closure.nextSetBit(state + 1)) {
+			if (this.stateChars[state] != null || this.statePatterns[state] >= 0) {
+				closureStates[count++] = state;
+			}
+		}
+		return Arrays.copyOf(closureStates, count);
+	}
+	
+	@Override
+	public String toString() {
+		return JuStringUtils.toString(this
+				, "patterns", this.patterns
+				, "regexPatterns", this.regexPatterns.size());
+	}
+	
+	/**
+	 * Converts a glob to an automaton fragment.
+	 */
+	private static Fragment parseGlob(String glob) {
+		Fragment fragment = Fragment.empty();
+		for (int i = 0; i < glob.length(); ) {
+			int c = glob.codePointAt(i);
+			i += Character.charCount(c);
+			if (c == '*') {
+				fragment = fragment.concat(Fragment.chars(CharClass.ANY).star());
+			} else if (c == '?') {
+				fragment = fragment.concat(Fragment.chars(CharClass.ANY));
+			} else {
+				fragment = fragment.concat(Fragment.chars(CharClass.of(c)));
+			}
+		}
+		return fragment;
+	}
+	
+	/**
+	 * Set of automaton states reached after consuming a prefix of a key, i.e. a state of the deterministic automaton.
+	 */
+	private static final class StateSet {
+		private static final int ASCII_LENGTH = 128;
+		
+		private final int[] states;
+		private final BitSet matches;
+		/**
+		 * Whether the set is cached. Transitions are only cached between cached sets to limit memory usage.
+		 */
+		private final boolean cached;
+		
+		private final StateSet[] asciiNext = new StateSet[ASCII_LENGTH];
+		private final ConcurrentMap<Integer, StateSet> next = new ConcurrentHashMap<>();
+		
+		private StateSet(int[] states, BitSet matches, boolean cached) {
+			this.states = states;
+			this.matches = matches;
+			this.cached = cached;
+		}
+		
+		private boolean isEmpty() {
+			return this.states.length == 0;
+		}
+	}
+	
+	/**
+	 * State of the nondeterministic automaton used while building the matcher.
+	 */
+	private static final class State {
+		/**
+		 * Characters leading to the next state. Null if the state doesn't consume characters.
+		 */
+		private CharClass chars;
+		private State next;
+		
+		private final List<State> epsilons = new ArrayList<>();
+		
+		/**
+		 * Index of the pattern matched when reaching this state or -1.
+		 */
+		private int pattern = -1;
+	}
+	
+	/**
+	 * Fragment of an automaton with one start and one end state.
+	 */
+	private static final class Fragment {
+		private final State start;
+		private final State end;
+		
+		private Fragment(State start, State end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		private static Fragment empty() {
+			State state = new State();
+			return new Fragment(state, state);
+		}
+		
+		private static Fragment chars(CharClass chars) {
+			State start = new State();
+			State end = new State();
+			start.chars = chars;
+			start.next = end;
+			return new Fragment(start, end);
+		}
+		
+		private Fragment concat(Fragment fragment) {
+			this.end.epsilons.add(fragment.start);
+			return new Fragment(this.start, fragment.end);
+		}
+		
+		private Fragment or(Fragment fragment) {
+			State start = new State();
+			State end = new State();
+			start.epsilons.add(this.start);
+			start.epsilons.add(fragment.start);
+			this.end.epsilons.add(end);
+			fragment.end.epsilons.add(end);
+			return new Fragment(start, end);
+		}
+		
+		private Fragment star() {
+			State start = new State();
+			State end = new State();
+			start.epsilons.add(this.start);
+			start.epsilons.add(end);
+			this.end.epsilons.add(this.start);
+			this.end.epsilons.add(end);
+			return new Fragment(start, end);
+		}
+		
+		private Fragment plus() {
+			State end = new State();
+			this.end.epsilons.add(this.start);
+			this.end.epsilons.add(end);
+			return new Fragment(this.start, end);
+		}
+		
+		private Fragment optional() {
+			State start = new State();
+			State end = new State();
+			start.epsilons.add(this.start);
+			start.epsilons.add(end);
+			this.end.epsilons.add(end);
+			return new Fragment(start, end);
+		}
+	}
+	
+	/**
+	 * Set of code points, consisting of ranges.
+	 */
+	private static final class CharClass {
+		/**
+		 * Any character except for line terminators, like the '.' of a regular expression.
+		 */
+		private static final CharClass DOT = new CharClass(new int[] {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'}, true);
+		private static final CharClass ANY = new CharClass(new int[] {Character.MIN_CODE_POINT, Character.MAX_CODE_POINT}, false);
+		
+		private static final CharClass DIGIT = new CharClass(new int[] {'0', '9'}, false);
+		private static final CharClass WORD = new CharClass(new int[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'}, false);
+		private static final CharClass WHITESPACE = new CharClass(new int[] {'\t', '\r', ' ', ' '}, false);
+		
+		/**
+		 * Pairs of inclusive range bounds.
+		 */
+		private final int[] ranges;
+		private final boolean negated;
+		
+		private CharClass(int[] ranges, boolean negated) {
+			this.ranges = ranges;
+			this.negated = negated;
+		}
+		
+		private static CharClass of(int c) {
+			return new CharClass(new int[] {c, c}, false);
+		}
+		
+		private boolean contains(int c) {
+			for (int i = 0; i < this.ranges.length; i += 2) {
+				if (c >= this.ranges[i] && c <= this.ranges[i + 1]) {
+					return !this.negated;
+				}
+			}
+			return this.negated;
+		}
+		
+		private CharClass negate() {
+			return new CharClass(this.ranges, !this.negated);
+		}
+	}
+	
+	/**
+	 * Parser converting regular expressions to automaton fragments.
+	 * <p>
+	 * Supports literals, escaped characters, '.', character classes (including ranges, negation and the predefined
+	 * classes \d, \w and \s), groups, alternations and the quantifiers '*', '+' and '?' (greedy or reluctant).
+	 */
+	private static final class RegexParser {
+		private final String regex;
+		private int pos = 0;
+		
+		private RegexParser(String regex) {
+			this.regex = regex;
+		}
+		
+		/**
+		 * Parses the regular expression.
+		 * @return Fragment or null if the expression uses unsupported features
+		 * @throws java.util.regex.PatternSyntaxException If the expression is invalid
+		 */
+		private Fragment parse() {
+			// Make sure the expression is valid, so we don't accept anything java.util.regex wouldn't
+			Pattern.compile(this.regex);
+			
+			try {
+				Fragment fragment = this.parseAlternation();
+				return this.pos == this.regex.length() ? fragment : null;
+			} catch (UnsupportedRegexException ex) {
+				return null;
+			}
+		}
+		
+		private Fragment parseAlternation() {
+			Fragment fragment = this.parseConcatenation();
+			while (this.peek('|')) {
+				this.pos++;
+				fragment = fragment.or(this.parseConcatenation());
+			}
+			return fragment;
+		}
+		
+		private Fragment parseConcatenation() {
+			Fragment fragment = Fragment.empty();
+			while (this.pos < this.regex.length() && !this.peek('|') && !this.peek(')')) {
+				fragment = fragment.concat(this.parseRepetition());
+			}
+			return fragment;
+		}
+		
+		private Fragment parseRepetition() {
+			Fragment fragment = this.parseAtom();
+			while (this.pos < this.regex.length()) {
+				int c = this.regex.codePointAt(this.pos);
+				if (c == '*') {
+					fragment = fragment.star();
+				} else if (c == '+') {
+					fragment = fragment.plus();
+				} else if (c == '?') {
+					fragment = fragment.optional();
+				} else if (c == '{') {
+					throw new UnsupportedRegexException();
+				} else {
+					break;
+				}
+				this.pos += Character.charCount(c);
+				
+				if (this.peek('?')) {
+					// Reluctant quantifiers match the same keys as greedy ones
+					this.pos++;
+				} else if (this.peek('+')) {
+					// Possessive quantifiers might prevent matches
+					throw new UnsupportedRegexException();
+				}
+			}
+			return fragment;
+		}
+		
+		private Fragment parseAtom() {
+			int c = this.next();
+			switch (c) {
+			case '.':
+				return Fragment.chars(CharClass.DOT);
+			case '(':
+				if (this.peek('?')) {
+					if (this.regex.startsWith("?:", this.pos)) {
+						this.pos += 2;
+					} else {
+						// Look arounds, flags, named groups
+						throw new UnsupportedRegexException();
+					}
+				}
+				Fragment fragment = this.parseAlternation();
+				this.expect(')');
+				return fragment;
+			case '[':
+				return Fragment.chars(this.parseCharClass());
+			case '\\':
+				return Fragment.chars(this.parseEscape());
+			case '^':
+			case '$':
+			case '{':
+				throw new UnsupportedRegexException();
+			default:
+				return Fragment.chars(CharClass.of(c));
+			}
+		}
+		
+		private CharClass parseCharClass() {
+			boolean negated = false;
+			if (this.peek('^')) {
+				negated = true;
+				this.pos++;
+			}
+			
+			if (this.peek(']')) {
+				// Leading ']' isn't treated consistently, leave it to java.util.regex
+				throw new UnsupportedRegexException();
+			}
+			
+			List<Integer> ranges = new ArrayList<>();
+			while (!this.peek(']')) {
+				if (this.pos >= this.regex.length()) {
+					throw new UnsupportedRegexException();
+				}
+				
+				int c = this.next();
+				int from;
+				if (c == '[' || (c == '&' && this.peek('&'))) {
+					// Unions and intersections
+					throw new UnsupportedRegexException();
+				} else if (c == '\\') {
+					CharClass escaped = this.parseEscape();
+					if (escaped.negated || escaped.ranges[0] != escaped.ranges[1] || escaped.ranges.length > 2) {
+						// Predefined class, can't be part of a range
+						if (escaped.negated) {
+							throw new UnsupportedRegexException();
+						}
+						for (int range : escaped.ranges) {
+							ranges.add(range);
+						}
+						continue;
+					}
+					from = escaped.ranges[0];
+				} else {
+					from = c;
+				}
+				
+				int to = from;
+				if (this.peek('-') && this.pos + 1 < this.regex.length() && this.regex.charAt(this.pos + 1) != ']') {
+					this.pos++;
+					int toChar = this.next();
+					if (toChar == '[') {
+						throw new UnsupportedRegexException();
+					} else if (toChar == '\\') {
+						CharClass escaped = this.parseEscape();
+						if (escaped.negated || escaped.ranges.length > 2 || escaped.ranges[0] != escaped.ranges[1]) {
+							throw new UnsupportedRegexException();
+						}
+						to = escaped.ranges[0];
+					} else {
+						to = toChar;
+					}
+				}
+				ranges.add(from);
+				ranges.add(to);
+			}
+			this.pos++;
+			
+			int[] rangeArray = new int[ranges.size()];
+			for (int i = 0; i < rangeArray.length; i++) {
+				rangeArray[i] = ranges.get(i);
+			}
+			return new CharClass(rangeArray, negated);
+		}
+		
+		/**
+		 * Parses an escape sequence. The backslash must have been consumed.
+		 */
+		private CharClass parseEscape() {
+			if (this.pos >= this.regex.length()) {
+				throw new UnsupportedRegexException();
+			}
+			
+			int c = this.next();
+			switch (c) {
+			case 'd': return CharClass.DIGIT;
+			case 'D': return CharClass.DIGIT.negate();
+			case 'w': return CharClass.WORD;
+			case 'W': return CharClass.WORD.negate();
+			case 's': return CharClass.WHITESPACE;
+			case 'S': return CharClass.WHITESPACE.negate();
+			case 't': return CharClass.of('\t');
+			case 'n': return CharClass.of('\n');
+			case 'r': return CharClass.of('\r');
+			case 'f': return CharClass.of('\f');
+			default:
+				if (Character.isLetterOrDigit(c)) {
+					// Boundaries, back references, quotes, unicode classes etc.
+					throw new UnsupportedRegexException();
+				}
+				return CharClass.of(c);
+			}
+		}
+		
+		/**
+		 * Consumes the next code point.
+		 */
+		private int next() {
+			int c = this.regex.codePointAt(this.pos);
+			this.pos += Character.charCount(c);
+			return c;
+		}
+		
+		private boolean peek(char c) {
+			return this.pos < this.regex.length() && this.regex.charAt(this.pos) == c;
+		}
+		
+		private void expect(char c) {
+			if (!this.peek(c)) {
+				throw new UnsupportedRegexException();
+			}
+			this.pos++;
+		}
+	}
+	
+	/**
+	 * Thrown by the RegexParser if an expression uses features that aren't supported by the automaton.
+	 */
+	private static final class UnsupportedRegexException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+}
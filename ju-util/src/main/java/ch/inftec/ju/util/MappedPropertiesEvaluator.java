@@ -0,0 +1,426 @@
+package ch.inftec.ju.util;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * PropertyEvaluator for large properties files.
+ * <p>
+ * Rather than loading the file into a Properties object, the file is memory mapped and indexed once by
+ * the hash codes of the keys. The index only contains the offsets of the entries, so keys and values are
+ * only decoded when they are accessed. The syntax of the file is the same as for Properties.load(Reader),
+ * including comments, line continuations and escape sequences. If a key is defined more than once, the
+ * last definition wins.
+ * <p>
+ * The charset of the file must be ASCII compatible (e.g. UTF-8 or ISO-8859-1).
+ * <p>
+ * The file must not be modified as long as the evaluator is in use. Modifications might or might not be
+ * visible through the mapping and are not supported.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class MappedPropertiesEvaluator implements PropertyEvaluator {
+	/**
+	 * Number of ints used per entry in the entries array.
+	 */
+	private static final int ENTRY_SIZE = 5;
+	private static final int LINE_START = 0;
+	private static final int LINE_END = 1;
+	/**
+	 * End of the key for simple lines (i.e. lines without escape sequences, continuations and non ASCII keys),
+	 * -1 for all other lines that have to be parsed completely.
+	 */
+	private static final int KEY_END = 2;
+	private static final int VALUE_START = 3;
+	private static final int HASH = 4;
+	
+	private final Path file;
+	private final Charset charset;
+	private final MappedByteBuffer buffer;
+	
+	/**
+	 * Entries, ENTRY_SIZE ints each.
+	 */
+	private final int[] entries;
+	
+	/**
+	 * Open addressing hash table containing the entry index + 1 of each key. 0 marks empty slots.
+	 */
+	private final int[] table;
+	private final int size;
+	
+	/**
+	 * Maps and indexes the specified properties file.
+	 * @param file Properties file
+	 * @param charset Charset of the file
+	 * @throws JuException If the file cannot be mapped
+	 */
+	MappedPropertiesEvaluator(Path file, Charset charset) throws JuException {
+		this.file = file;
+		this.charset = charset;
+		
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new JuException("File too large to be mapped: %s", file);
+			}
+			// The mapping stays valid after the channel has been closed
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (JuException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new JuException("Couldn't map properties file %s", ex, file);
+		}
+		
+		int[] indexedEntries = this.indexEntries();
+		
+		// Build the hash table. Later definitions of a key replace earlier ones
+		int entryCount = indexedEntries.length / ENTRY_SIZE;
+		int capacity = Integer.highestOneBit(Math.max(entryCount, 1) * 2 - 1) << 1;
+		int[] slots = new int[capacity];
+		int keyCount = 0;
+		for (int entry = 0; entry < entryCount; entry++) {
+			int hash = indexedEntries[entry * ENTRY_SIZE + HASH];
+			int slot = MappedPropertiesEvaluator.spread(hash) & (capacity - 1);
+			while (true) {
+				if (slots[slot] == 0) {
+					slots[slot] = entry + 1;
+					keyCount++;
+					break;
+				}
+				
+				int existingEntry = slots[slot] - 1;
+				if (indexedEntries[existingEntry * ENTRY_SIZE + HASH] == hash
+						&& this.getKey(indexedEntries, existingEntry).equals(this.getKey(indexedEntries, entry))) {
+					slots[slot] = entry + 1;
+					break;
+				}
+				slot = (slot + 1) & (capacity - 1);
+			}
+		}
+		
+		this.entries = indexedEntries;
+		this.table = slots;
+		this.size = keyCount;
+	}
+	
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+	
+	private static boolean isWhitespace(int b) {
+		return b == ' ' || b == '\t' || b == '\f';
+	}
+	
+	private static boolean isLineEnd(int b) {
+		return b == '\n' || b == '\r';
+	}
+	
+	/**
+	 * Scans the file for logical lines, i.e. entries.
+	 * @return Entries
+	 */
+	private int[] indexEntries() {
+		int[] indexedEntries = new int[ENTRY_SIZE * 1024];
+		int count = 0;
+		
+		int limit = this.buffer.limit();
+		int pos = 0;
+		while (pos < limit) {
+			int b = this.buffer.get(pos);
+			
+			// Skip whitespace and blank lines
+			if (isWhitespace(b) || isLineEnd(b)) {
+				pos++;
+				continue;
+			}
+			
+			// Skip comments. Comments cannot be continued
+			if (b == '#' || b == '!') {
+				while (pos < limit && !isLineEnd(this.buffer.get(pos))) {
+					pos++;
+				}
+				continue;
+			}
+			
+			// Find the end of the logical line
+			int lineStart = pos;
+			boolean simple = true;
+			boolean precedingBackslash = false;
+			while (pos < limit) {
+				b = this.buffer.get(pos);
+				if (isLineEnd(b)) {
+					if (!precedingBackslash) {
+						break;
+					}
+					
+					// Line continues on the next line, ignoring leading whitespace
+					pos++;
+					if (b == '\r' && pos < limit && this.buffer.get(pos) == '\n') {
+						pos++;
+					}
+					while (pos < limit && isWhitespace(this.buffer.get(pos))) {
+						pos++;
+					}
+					precedingBackslash = false;
+					continue;
+				}
+				
+				if (b == '\\') {
+					precedingBackslash = !precedingBackslash;
+					simple = false;
+				} else {
+					precedingBackslash = false;
+				}
+				pos++;
+			}
+			int lineEnd = pos;
+			
+			if (count + ENTRY_SIZE > indexedEntries.length) {
+				indexedEntries = Arrays.copyOf(indexedEntries, indexedEntries.length * 2);
+			}
+			this.indexEntry(indexedEntries, count, lineStart, lineEnd, simple);
+			count += ENTRY_SIZE;
+		}
+		
+		return Arrays.copyOf(indexedEntries, count);
+	}
+	
+	private void indexEntry(int[] indexedEntries, int offset, int lineStart, int lineEnd, boolean simple) {
+		indexedEntries[offset + LINE_START] = lineStart;
+		indexedEntries[offset + LINE_END] = lineEnd;
+		indexedEntries[offset + KEY_END] = -1;
+		indexedEntries[offset + VALUE_START] = -1;
+		
+		if (simple) {
+			// Compute the hash code of ASCII keys directly from the bytes, avoiding to decode them
+			int keyEnd = lineStart;
+			int hash = 0;
+			while (keyEnd < lineEnd) {
+				int b = this.buffer.get(keyEnd);
+				if (b == '=' || b == ':' || isWhitespace(b)) {
+					break;
+				} else if (b < 0) {
+					// Non ASCII character
+					simple = false;
+					break;
+				}
+				hash = 31 * hash + b;
+				keyEnd++;
+			}
+			
+			if (simple) {
+				int valueStart = keyEnd;
+				boolean hasSeparator = false;
+				while (valueStart < lineEnd) {
+					int b = this.buffer.get(valueStart);
+					if (!hasSeparator && (b == '=' || b == ':')) {
+						hasSeparator = true;
+					} else if (!isWhitespace(b)) {
+						break;
+					}
+					valueStart++;
+				}
+				
+				indexedEntries[offset + KEY_END] = keyEnd;
+				indexedEntries[offset + VALUE_START] = valueStart;
+				indexedEntries[offset + HASH] = hash;
+				return;
+			}
+		}
+		
+		indexedEntries[offset + HASH] = this.parseLine(lineStart, lineEnd)[0].hashCode();
+	}
+	
+	@Override
+	public Object get(String key) {
+		int hash = key.hashCode();
+		int slot = MappedPropertiesEvaluator.spread(hash) & (this.table.length - 1);
+		while (this.table[slot] != 0) {
+			int entry = this.table[slot] - 1;
+			if (this.entries[entry * ENTRY_SIZE + HASH] == hash && this.keyEquals(entry, key)) {
+				return this.getValue(entry);
+			}
+			slot = (slot + 1) & (this.table.length - 1);
+		}
+		return null;
+	}
+	
+	@Override
+	public Set<String> listKeys() {
+		Set<String> keys = new TreeSet<>();
+		for (int slot : this.table) {
+			if (slot != 0) {
+				keys.add(this.getKey(this.entries, slot - 1));
+			}
+		}
+		return Collections.unmodifiableSet(keys);
+	}
+	
+	/**
+	 * Gets the number of keys.
+	 * @return Number of keys
+	 */
+	int size() {
+		return this.size;
+	}
+	
+	private boolean keyEquals(int entry, String key) {
+		int offset = entry * ENTRY_SIZE;
+		int keyEnd = this.entries[offset + KEY_END];
+		if (keyEnd < 0) {
+			return this.getKey(this.entries, entry).equals(key);
+		}
+		
+		int lineStart = this.entries[offset + LINE_START];
+		if (keyEnd - lineStart != key.length()) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (this.buffer.get(lineStart + i) != key.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private String getKey(int[] entryArray, int entry) {
+		int offset = entry * ENTRY_SIZE;
+		int keyEnd = entryArray[offset + KEY_END];
+		return keyEnd < 0
+				? this.parseLine(entryArray[offset + LINE_START], entryArray[offset + LINE_END])[0]
+				: this.decode(entryArray[offset + LINE_START], keyEnd);
+	}
+	
+	private String getValue(int entry) {
+		int offset = entry * ENTRY_SIZE;
+		return this.entries[offset + KEY_END] < 0
+				? this.parseLine(this.entries[offset + LINE_START], this.entries[offset + LINE_END])[1]
+				: this.decode(this.entries[offset + VALUE_START], this.entries[offset + LINE_END]);
+	}
+	
+	private String decode(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.buffer.get(start + i);
+		}
+		return new String(bytes, this.charset);
+	}
+	
+	/**
+	 * Parses a logical line the same way Properties.load does.
+	 * @return Array containing the key and the value
+	 */
+	private String[] parseLine(int lineStart, int lineEnd) {
+		String rawLine = this.decode(lineStart, lineEnd);
+		
+		// Join continued lines
+		StringBuilder line = new StringBuilder(rawLine.length());
+		boolean precedingBackslash = false;
+		for (int i = 0; i < rawLine.length(); i++) {
+			char c = rawLine.charAt(i);
+			if (isLineEnd(c) && precedingBackslash) {
+				line.setLength(line.length() - 1);
+				if (c == '\r' && i + 1 < rawLine.length() && rawLine.charAt(i + 1) == '\n') {
+					i++;
+				}
+				while (i + 1 < rawLine.length() && isWhitespace(rawLine.charAt(i + 1))) {
+					i++;
+				}
+				precedingBackslash = false;
+				continue;
+			}
+			
+			precedingBackslash = c == '\\' ? !precedingBackslash : false;
+			line.append(c);
+		}
+		if (precedingBackslash) {
+			// Backslash at the end of the file is ignored
+			line.setLength(line.length() - 1);
+		}
+		
+		// Split the key and the value
+		int keyLength = 0;
+		int valueStart = line.length();
+		boolean hasSeparator = false;
+		precedingBackslash = false;
+		while (keyLength < line.length()) {
+			char c = line.charAt(keyLength);
+			if ((c == '=' || c == ':') && !precedingBackslash) {
+				valueStart = keyLength + 1;
+				hasSeparator = true;
+				break;
+			} else if (isWhitespace(c) && !precedingBackslash) {
+				valueStart = keyLength + 1;
+				break;
+			}
+			precedingBackslash = c == '\\' ? !precedingBackslash : false;
+			keyLength++;
+		}
+		while (valueStart < line.length()) {
+			char c = line.charAt(valueStart);
+			if (!hasSeparator && (c == '=' || c == ':')) {
+				hasSeparator = true;
+			} else if (!isWhitespace(c)) {
+				break;
+			}
+			valueStart++;
+		}
+		
+		return new String[] {
+			MappedPropertiesEvaluator.unescape(line, 0, keyLength),
+			MappedPropertiesEvaluator.unescape(line, valueStart, line.length())
+		};
+	}
+	
+	private static String unescape(CharSequence s, int start, int end) {
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c != '\\' || i + 1 >= end) {
+				sb.append(c);
+				continue;
+			}
+			
+			c = s.charAt(++i);
+			if (c == 'u') {
+				if (i + 4 >= end) {
+					throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+				}
+				int value = 0;
+				for (int j = 0; j < 4; j++) {
+					int digit = Character.digit(s.charAt(++i), 16);
+					if (digit < 0) {
+						throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+					}
+					value = (value << 4) + digit;
+				}
+				sb.append((char) value);
+			} else if (c == 't') {
+				sb.append('\t');
+			} else if (c == 'r') {
+				sb.append('\r');
+			} else if (c == 'n') {
+				sb.append('\n');
+			} else if (c == 'f') {
+				sb.append('\f');
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return JuStringUtils.toString(this
+				, "file", this.file
+				, "keys", this.size);
+	}
+}
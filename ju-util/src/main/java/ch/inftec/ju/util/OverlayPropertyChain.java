@@ -0,0 +1,314 @@
+package ch.inftec.ju.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.plexus.interpolation.AbstractValueSource;
+import org.codehaus.plexus.interpolation.InterpolationException;
+import org.codehaus.plexus.interpolation.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.inftec.ju.util.event.EventNotifier;
+import ch.inftec.ju.util.event.JuEventObject;
+import ch.inftec.ju.util.event.UpdateListener;
+
+/**
+ * PropertyChain that overrides properties of a parent chain.
+ * <p>
+ * Only the overrides are stored by the overlay. Properties that are not overridden are returned as
+ * resolved (and possibly cached) by the parent chain, unless they reference overridden properties
+ * through placeholders. In this case, they are interpolated again using the overridden values.
+ * <p>
+ * Overridden keys are in the key space of the parent chain, whereas placeholders reference keys of the
+ * root chain. Whether a key depends on overrides is cached until the parent is reloaded or clearCache
+ * is called on the overlay.
+ * <p>
+ * Use PropertyChain.withOverrides(Map) or PropertyChain.overlay(PropertyEvaluator) to create instances.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class OverlayPropertyChain extends AbstractPropertyChain {
+	private static final Logger logger = LoggerFactory.getLogger(OverlayPropertyChain.class);
+	
+	private final AbstractPropertyChain parent;
+	private final PropertyEvaluator overrides;
+	
+	/**
+	 * Interpolator looking up overridden values first. Null if the parent doesn't interpolate values.
+	 */
+	private final PropertyInterpolator interpolator;
+	
+	/**
+	 * Whether the values of the parent depend on overrides, by key.
+	 */
+	private final ConcurrentMap<String, Boolean> overrideDependencies = new ConcurrentHashMap<>();
+	
+	/**
+	 * Listener for reloads of the parent. The notifier only holds a weak reference to it, so we
+	 * need to keep a strong one as long as the overlay is alive.
+	 */
+	private final UpdateListener<PropertyChain> reloadListener = new UpdateListener<PropertyChain>() {
+		@Override
+		public void updated(JuEventObject<PropertyChain> event) {
+			OverlayPropertyChain.this.clearCache();
+		}
+	};
+	
+	OverlayPropertyChain(AbstractPropertyChain parent, PropertyEvaluator overrides) {
+		super(parent);
+		
+		this.parent = parent;
+		this.overrides = overrides;
+		this.interpolator = parent.createInterpolator(new AbstractValueSource(false) {
+			@Override
+			public Object getValue(String expression) {
+				return OverlayPropertyChain.this.getReferencedValue(expression);
+			}
+		});
+		
+		this.getUpdateNotifier().addWeakListener(this.reloadListener);
+	}
+	
+	@Override
+	public PropertyInfo getInfo(String key) {
+		Object overriddenValue = this.overrides.get(key);
+		if (overriddenValue != null) {
+			String rawValue = overriddenValue.toString();
+			String value = this.interpolateValue(rawValue);
+			return new OverlayPropertyInfo(key, value, value, rawValue, false, this.overrides.toString());
+		}
+		
+		PropertyInfo pi = this.parent.getInfo(key);
+		if (pi == null || this.interpolator == null) {
+			return pi;
+		}
+		
+		// Values without placeholders cannot be affected by the overrides
+		if (!pi.isSensitive() && PropertyInterpolator.getExpressions(pi.getRawValue()).isEmpty()) {
+			return pi;
+		}
+		
+		if (!this.dependsOnOverrides(key)) {
+			return pi;
+		}
+		
+		String value = this.interpolateValue(this.parent.getUninterpolatedValue(key));
+		return new OverlayPropertyInfo(key, value, pi.isSensitive() ? pi.getDisplayValue() : value
+				, pi.getRawValue(), pi.isSensitive(), pi.getEvaluatorInfo());
+	}
+	
+	/**
+	 * Checks whether the value of the parent for the specified key depends on overrides.
+	 */
+	private boolean dependsOnOverrides(String key) {
+		Boolean dependsOnOverrides = this.overrideDependencies.get(key);
+		if (dependsOnOverrides == null) {
+			dependsOnOverrides = this.dependsOnOverrides(this.parent.getUninterpolatedValue(key), new HashSet<String>());
+			this.overrideDependencies.put(key, dependsOnOverrides);
+		}
+		return dependsOnOverrides;
+	}
+	
+	/**
+	 * Checks whether any key referenced by the value (directly or indirectly) is overridden.
+	 */
+	private boolean dependsOnOverrides(String value, Set<String> visitedKeys) {
+		for (String referencedKey : PropertyInterpolator.getExpressions(value)) {
+			if (visitedKeys.add(referencedKey)) {
+				if (this.getReferencedOverride(referencedKey) != null
+						|| this.dependsOnOverrides(this.parent.getReferencedValue(referencedKey), visitedKeys)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	private String interpolateValue(String value) {
+		if (this.interpolator != null) {
+			try {
+				return this.interpolator.interpolate(value);
+			} catch (InterpolationException ex) {
+				logger.warn("Couldn't interpolate " + value, ex);
+			}
+		}
+		return value;
+	}
+	
+	@Override
+	public Set<String> listKeys() {
+		Set<String> keys = new LinkedHashSet<>(this.overrides.listKeys());
+		keys.addAll(this.parent.listKeys());
+		return keys;
+	}
+	
+	@Override
+	protected List<String> listKeysByPrefix(String prefix) {
+		// Use the key index of the parent, so it's invalidated along with the parent's
+		List<String> parentKeys = this.parent.listKeysByPrefix(prefix);
+		
+		Set<String> keys = null;
+		for (String key : this.overrides.listKeys()) {
+			if (key.startsWith(prefix)) {
+				if (keys == null) {
+					keys = new TreeSet<>(parentKeys);
+				}
+				keys.add(key);
+			}
+		}
+		return keys == null
+				? parentKeys
+				: Collections.unmodifiableList(new ArrayList<>(keys));
+	}
+	
+	@Override
+	protected String getUninterpolatedValue(String key) {
+		Object overriddenValue = this.overrides.get(key);
+		return overriddenValue != null
+				? overriddenValue.toString()
+				: this.parent.getUninterpolatedValue(key);
+	}
+	
+	@Override
+	protected String getReferencedValue(String referencedKey) {
+		Object overriddenValue = this.getReferencedOverride(referencedKey);
+		return overriddenValue != null
+				? overriddenValue.toString()
+				: this.parent.getReferencedValue(referencedKey);
+	}
+	
+	@Override
+	protected String toLocalKey(String referencedKey) {
+		return this.parent.toLocalKey(referencedKey);
+	}
+	
+	/**
+	 * Gets the overridden value of a key referenced by a placeholder.
+	 * @return Overridden value or null if the key isn't overridden
+	 */
+	private Object getReferencedOverride(String referencedKey) {
+		String key = this.parent.toLocalKey(referencedKey);
+		return key != null ? this.overrides.get(key) : null;
+	}
+	
+	@Override
+	PropertyInterpolator createInterpolator(ValueSource chainValueSource) {
+		return this.parent.createInterpolator(chainValueSource);
+	}
+	
+	@Override
+	public void clearCache() {
+		// The cache of the parent is shared with other views, so we leave it alone
+		this.overrideDependencies.clear();
+	}
+	
+	@Override
+	public EventNotifier<UpdateListener<PropertyChain>> getUpdateNotifier() {
+		return this.parent.getUpdateNotifier();
+	}
+	
+	@Override
+	public String interpolate(String expression) {
+		return this.interpolateValue(expression);
+	}
+	
+	@Override
+	public String toString() {
+		return JuStringUtils.toString(this
+				, "overrides", this.overrides
+				, "parent", this.parent);
+	}
+	
+	/**
+	 * Evaluator for overrides specified by a map.
+	 */
+	static final class MapPropertyEvaluator implements PropertyEvaluator {
+		private final Map<String, String> values;
+		
+		MapPropertyEvaluator(Map<String, String> values) {
+			this.values = new HashMap<>(values);
+		}
+		
+		@Override
+		public Object get(String key) {
+			return this.values.get(key);
+		}
+		
+		@Override
+		public Set<String> listKeys() {
+			return this.values.keySet();
+		}
+		
+		@Override
+		public String toString() {
+			return JuStringUtils.toString(this, "keys", this.values.keySet());
+		}
+	}
+	
+	private static final class OverlayPropertyInfo implements PropertyInfo {
+		private final String key;
+		private final String value;
+		private final String displayValue;
+		private final String rawValue;
+		private final boolean sensitive;
+		private final String evaluatorInfo;
+		
+		private OverlayPropertyInfo(String key, String value, String displayValue, String rawValue
+				, boolean sensitive, String evaluatorInfo) {
+			this.key = key;
+			this.value = value;
+			this.displayValue = displayValue;
+			this.rawValue = rawValue;
+			this.sensitive = sensitive;
+			this.evaluatorInfo = evaluatorInfo;
+		}
+		
+		@Override
+		public String getKey() {
+			return this.key;
+		}
+		
+		@Override
+		public String getValue() {
+			return this.value;
+		}
+		
+		@Override
+		public String getDisplayValue() {
+			return this.displayValue;
+		}
+		
+		@Override
+		public String getRawValue() {
+			return this.rawValue;
+		}
+		
+		@Override
+		public boolean isSensitive() {
+			return this.sensitive;
+		}
+		
+		@Override
+		public String getEvaluatorInfo() {
+			return this.evaluatorInfo;
+		}
+		
+		@Override
+		public String toString() {
+			return JuStringUtils.toString(this
+					, "key", this.key
+					, "displayValue", this.displayValue
+					, "evaluatorInfo", this.evaluatorInfo);
+		}
+	}
+}
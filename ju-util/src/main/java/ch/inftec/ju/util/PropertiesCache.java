@@ -0,0 +1,94 @@
+package ch.inftec.ju.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide cache of properties loaded from resources.
+ * <p>
+ * Properties are cached by URL (and charset) along with the modification time and size of the file
+ * containing the resource, so PropertyChainBuilders loading the same resources share the parsed
+ * properties. Modified resources are parsed again. Resources that aren't located on the file system
+ * (or within JARs on the file system) are not cached.
+ * <p>
+ * The cache only holds weak references to the properties, so they are released as soon as no evaluator
+ * uses them anymore. Cached properties are shared and thus handed out as unmodifiable maps.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class PropertiesCache {
+	private static final Logger logger = LoggerFactory.getLogger(PropertiesCache.class);
+	
+	private static final ConcurrentMap<String, CachedProperties> cache = new ConcurrentHashMap<>();
+	private static final ReferenceQueue<Map<Object, Object>> releasedProperties = new ReferenceQueue<>();
+	
+	private PropertiesCache() {
+		throw new AssertionError("use only statically");
+	}
+	
+	/**
+	 * Loads the properties from the specified URL, returning cached properties if the resource wasn't modified
+	 * since they have been loaded.
+	 * <p>
+	 * Concurrent calls for the same resource might load it more than once, but will never return outdated properties.
+	 * @param url Resource URL
+	 * @return Unmodifiable properties
+	 * @throws JuException If the properties cannot be loaded
+	 */
+	static Map<Object, Object> load(URL url) throws JuException {
+		PropertiesCache.removeReleasedProperties();
+		
+		IOUtil ioUtil = new IOUtil();
+		
+		// Get the stamp before loading so we won't miss changes during the load
+		String stamp = PropertyChainSnapshot.getModificationStamp(url);
+		if (stamp == null) {
+			return Collections.unmodifiableMap(ioUtil.loadPropertiesFromUrl(url));
+		}
+		
+		String key = ioUtil.getCharset() + ":" + url.toExternalForm();
+		CachedProperties cachedProperties = cache.get(key);
+		if (cachedProperties != null && cachedProperties.stamp.equals(stamp)) {
+			Map<Object, Object> props = cachedProperties.get();
+			if (props != null) {
+				logger.trace("Using cached properties of {}", url);
+				return props;
+			}
+		}
+		
+		Map<Object, Object> props = Collections.unmodifiableMap(ioUtil.loadPropertiesFromUrl(url));
+		cache.put(key, new CachedProperties(key, stamp, props));
+		
+		return props;
+	}
+	
+	/**
+	 * Removes the entries of properties that have been garbage collected.
+	 */
+	private static void removeReleasedProperties() {
+		CachedProperties releasedEntry;
+		while ((releasedEntry = (CachedProperties) releasedProperties.poll()) != null) {
+			// Only remove the entry if it hasn't been replaced in the meantime
+			cache.remove(releasedEntry.key, releasedEntry);
+		}
+	}
+	
+	private static final class CachedProperties extends WeakReference<Map<Object, Object>> {
+		private final String key;
+		private final String stamp;
+		
+		private CachedProperties(String key, String stamp, Map<Object, Object> props) {
+			super(props, releasedProperties);
+			this.key = key;
+			this.stamp = stamp;
+		}
+	}
+}
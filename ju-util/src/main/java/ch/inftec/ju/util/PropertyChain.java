@@ -1,6 +1,13 @@
 package ch.inftec.ju.util;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import ch.inftec.ju.util.event.EventNotifier;
+import ch.inftec.ju.util.event.UpdateListener;
 
 /**
  * Interface to access properties that can be arranged and priorized in a chain using the
@@ -10,6 +17,14 @@ import java.util.Set;
  * <p>
  * The PropertyChain interface provides getter methods for String and for generic types. Support for 
  * generic type conversion support may very depending on the implementation of the property chain.
+ * <p>
+ * The typed getters (like getInt) treat empty values as undefined. Chains that cache resolved values (see
+ * PropertyChainBuilder.setCacheResolvedValues) and frozen chains reuse converted values, so repeated typed
+ * lookups are cheap. Other chains resolve and convert the value on every typed lookup.
+ * <p>
+ * Since version 7.0, the interface also contains typed getters, prefix and bulk queries, overrides, cache
+ * clearing and change notifications. Implementations should extend AbstractPropertyChain, which implements
+ * these methods. Implementations of the interface that don't extend it need to be adapted.
  * 
  * @author Martin
  *
@@ -67,6 +82,117 @@ public interface PropertyChain {
 	 */
 	<T> T get(String key, Class<T> clazz, String defaultValue);
 	
+	/**
+	 * Gets the property with the specified key as an int.
+	 * @param key Key name
+	 * @return Property value
+	 * @throws JuRuntimeException If the property doesn't exist or is not a valid int
+	 */
+	int getInt(String key);
+	
+	/**
+	 * Gets the property with the specified key as an int. If it doesn't exist,
+	 * the default value is returned.
+	 * @param key Key name
+	 * @param defaultValue Value to return if the property doesn't exist
+	 * @return Property value or default value if it doesn't exist
+	 * @throws JuRuntimeException If the property is not a valid int
+	 */
+	int getInt(String key, int defaultValue);
+	
+	/**
+	 * Gets the property with the specified key as a long.
+	 * @param key Key name
+	 * @return Property value
+	 * @throws JuRuntimeException If the property doesn't exist or is not a valid long
+	 */
+	long getLong(String key);
+	
+	/**
+	 * Gets the property with the specified key as a long. If it doesn't exist,
+	 * the default value is returned.
+	 * @param key Key name
+	 * @param defaultValue Value to return if the property doesn't exist
+	 * @return Property value or default value if it doesn't exist
+	 * @throws JuRuntimeException If the property is not a valid long
+	 */
+	long getLong(String key, long defaultValue);
+	
+	/**
+	 * Gets the property with the specified key as a boolean.
+	 * <p>
+	 * The value <code>true</code> (ignoring case) is evaluated to true, all other values to false.
+	 * @param key Key name
+	 * @return Property value
+	 * @throws JuRuntimeException If the property doesn't exist
+	 */
+	boolean getBoolean(String key);
+	
+	/**
+	 * Gets the property with the specified key as a boolean. If it doesn't exist,
+	 * the default value is returned.
+	 * @param key Key name
+	 * @param defaultValue Value to return if the property doesn't exist
+	 * @return Property value or default value if it doesn't exist
+	 */
+	boolean getBoolean(String key, boolean defaultValue);
+	
+	/**
+	 * Gets the property with the specified key as a duration in the specified unit.
+	 * <p>
+	 * Durations are numbers with an optional unit suffix, e.g. <code>500ms</code>, <code>30s</code>,
+	 * <code>5min</code>, <code>2h</code> or <code>1d</code>. Numbers without a suffix are interpreted
+	 * using the specified unit. Conversion to a coarser unit truncates.
+	 * @param key Key name
+	 * @param unit Unit to return the duration in
+	 * @return Duration in the specified unit
+	 * @throws JuRuntimeException If the property doesn't exist or is not a valid duration
+	 */
+	long getDuration(String key, TimeUnit unit);
+	
+	/**
+	 * Gets the property with the specified key as a duration in the specified unit. If it doesn't exist,
+	 * the default value is returned.
+	 * @param key Key name
+	 * @param unit Unit to return the duration in
+	 * @param defaultValue Value to return if the property doesn't exist
+	 * @return Duration in the specified unit or default value if it doesn't exist
+	 * @throws JuRuntimeException If the property is not a valid duration
+	 */
+	long getDuration(String key, TimeUnit unit, long defaultValue);
+	
+	/**
+	 * Gets the property with the specified key as an enum constant.
+	 * @param key Key name
+	 * @param enumClass Enum type
+	 * @return Enum constant or null if the property is not defined
+	 * @throws JuRuntimeException If the value is not a constant of the enum or if the property doesn't exist
+	 * and the chain throws exceptions for undefined properties by default
+	 */
+	<E extends Enum<E>> E getEnum(String key, Class<E> enumClass);
+	
+	/**
+	 * Gets the property with the specified key as an enum constant. If it doesn't exist,
+	 * the default value is returned.
+	 * @param key Key name
+	 * @param enumClass Enum type
+	 * @param defaultValue Value to return if the property doesn't exist
+	 * @return Enum constant or default value if it doesn't exist
+	 * @throws JuRuntimeException If the value is not a constant of the enum
+	 */
+	<E extends Enum<E>> E getEnum(String key, Class<E> enumClass, E defaultValue);
+	
+	/**
+	 * Gets the property with the specified key as a list of comma separated values.
+	 * <p>
+	 * The values are trimmed, empty values are omitted.
+	 * @param key Key name
+	 * @return Unmodifiable list of values. Empty if the property is not defined
+	 * @throws JuRuntimeException If the property doesn't exist and the chain throws exceptions for
+	 * undefined properties by default
+	 */
+	List<String> getList(String key);
+	
 	/**
 	 * Returns a list of all keys defined by this chain.
 	 * <p>
@@ -76,6 +202,74 @@ public interface PropertyChain {
 	 */
 	Set<String> listKeys();
 	
+	/**
+	 * Gets all properties whose keys start with the specified prefix, e.g. <code>db.primary.</code>.
+	 * <p>
+	 * Keys are looked up in a sorted index of the keys returned by listKeys(), so this method only returns
+	 * properties that are listed by the chain. The index is built once and rebuilt after clearCache() or
+	 * a reload. Keys that might change at any time (like system properties) are not indexed, but listed
+	 * and matched on each call, so each call takes time linear in the number of these keys. Chains that cache
+	 * resolved values index all keys until clearCache() is called.
+	 * @param prefix Key prefix
+	 * @return Unmodifiable map of the (full) keys and the values of the properties, sorted by key
+	 */
+	Map<String, String> getByPrefix(String prefix);
+	
+	/**
+	 * Gets a view of all properties whose keys start with the specified prefix, with the prefix stripped
+	 * from the keys.
+	 * <p>
+	 * E.g. for a prefix <code>db.primary.</code>, <code>subChain.get("url")</code> will return the value
+	 * of the property <code>db.primary.url</code>. Values are not copied, the sub chain evaluates them
+	 * using this chain. PropertyInfos returned by the sub chain contain the full key.
+	 * <p>
+	 * Keys of the sub chain are listed like getByPrefix does.
+	 * @param prefix Key prefix
+	 * @return Sub chain view
+	 */
+	PropertyChain subChain(String prefix);
+	
+	/**
+	 * Gets the properties with the specified keys.
+	 * <p>
+	 * Implementations may resolve the keys in bulk, e.g. querying each evaluator once for all keys and
+	 * sharing interpolation work between keys that reference each other. Prefer this method over
+	 * multiple get calls if many keys are needed at once.
+	 * <p>
+	 * Undefined properties are not contained in the map, regardless of the throwExceptionIfUndefined
+	 * setting of the chain.
+	 * @param keys Keys
+	 * @return Unmodifiable map of the keys and the values of the defined properties, in the order of the keys
+	 */
+	Map<String, String> getAll(Collection<String> keys);
+	
+	/**
+	 * Creates an overlay of this chain with the specified overrides.
+	 * <p>
+	 * The overlay returns the overridden values for the overridden keys and the values of this chain for
+	 * all other keys. Values of this chain referencing overridden keys through placeholders are interpolated
+	 * using the overridden values. Override values are neither decrypted nor hidden.
+	 * <p>
+	 * The overlay only stores the overrides and shares everything else (like cached values) with this chain,
+	 * so overlays are cheap to create. Changes of this chain are reflected by the overlay. Calling clearCache()
+	 * on the overlay doesn't clear the cache of this chain.
+	 * <p>
+	 * Overridden keys are relative to this chain (e.g. without the prefix of a sub chain), whereas placeholders
+	 * always reference keys of the root chain.
+	 * @param overrides Overridden values by key. The map is copied
+	 * @return Overlay chain
+	 */
+	PropertyChain withOverrides(Map<String, String> overrides);
+	
+	/**
+	 * Creates an overlay of this chain with an evaluator that takes precedence over this chain.
+	 * <p>
+	 * See withOverrides(Map) for details.
+	 * @param evaluator Evaluator providing overridden values
+	 * @return Overlay chain
+	 */
+	PropertyChain overlay(PropertyEvaluator evaluator);
+	
 	/**
 	 * Gets the property info for the specified key.
 	 * @param key Key
@@ -83,6 +277,51 @@ public interface PropertyChain {
 	 */
 	PropertyInfo getInfo(String key);
 	
+	/**
+	 * Clears all values the chain may have cached (like resolved or decrypted values), forcing them
+	 * to be evaluated again on the next access.
+	 * <p>
+	 * Use this for chains that cache resolved values if the underlying evaluators might have changed.
+	 * If the chain doesn't cache any values, this method has no effect.
+	 */
+	void clearCache();
+	
+	/**
+	 * Gets the notifier that fires an update event whenever properties of the chain might have
+	 * changed, e.g. because a property file was reloaded.
+	 * <p>
+	 * Events may be fired from a background thread.
+	 * @return Update notifier
+	 */
+	EventNotifier<UpdateListener<PropertyChain>> getUpdateNotifier();
+	
+	/**
+	 * Subscribes to changes of a key or of all keys starting with a prefix.
+	 * <p>
+	 * If keyOrPrefix ends with a dot (e.g. <code>db.</code>) or is empty, it is considered a prefix,
+	 * otherwise a key.
+	 * <p>
+	 * The listener is notified whenever the effective (i.e. decrypted and interpolated) value of a
+	 * subscribed key changes, including changes caused by keys it references using placeholders like
+	 * <code>${otherKey}</code>. The source of the event is the new PropertyInfo of the key. If the key
+	 * became undefined, the PropertyInfo has a null value.
+	 * <p>
+	 * Changes are only detected when the update notifier of the chain fires, i.e. when property files
+	 * are reloaded (see PropertyChainBuilder.setReloadInterval) or, for overlays, when the underlying
+	 * chain fires. Other changes of the sources, like a modified system property or a modified file of a chain
+	 * without reloading, are not detected. Events may be fired from a background thread.
+	 * @param keyOrPrefix Key or key prefix
+	 * @param listener Listener. Will be referenced strongly until it is unsubscribed
+	 */
+	void subscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener);
+	
+	/**
+	 * Removes a listener that was subscribed using subscribe(keyOrPrefix, listener).
+	 * @param keyOrPrefix Key or key prefix the listener was subscribed to
+	 * @param listener Listener
+	 */
+	void unsubscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener);
+	
 	/**
 	 * Detialed property information
 	 * @author martin.meyer@inftec.ch
@@ -118,7 +357,8 @@ public interface PropertyChain {
 		/**
 		 * Gets whether the property contains sensitive data.
 		 * <p>
-		 * For sensitive data, the DisplayValue should be used for logging.
+		 * For sensitive data, the DisplayValue should be used for logging. Values interpolated from sensitive
+		 * values are sensitive as well.
 		 * @return Whether the property contains sensitive data like encrypted data
 		 */
 		boolean isSensitive();
@@ -1,31 +1,62 @@
 package ch.inftec.ju.util;
 
 import java.io.BufferedReader;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.plexus.interpolation.AbstractValueSource;
-import org.codehaus.plexus.interpolation.EnvarBasedValueSource;
 import org.codehaus.plexus.interpolation.InterpolationException;
-import org.codehaus.plexus.interpolation.Interpolator;
-import org.codehaus.plexus.interpolation.RegexBasedInterpolator;
+import org.codehaus.plexus.interpolation.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.inftec.ju.security.JuSecurityUtils;
 import ch.inftec.ju.security.JuTextEncryptor;
 import ch.inftec.ju.util.PropertyChain.PropertyInfo;
+import ch.inftec.ju.util.collection.Caches;
+import ch.inftec.ju.util.collection.ClearableCache;
+import ch.inftec.ju.util.event.EventNotifier;
+import ch.inftec.ju.util.event.JuEventObject;
+import ch.inftec.ju.util.event.JuEventUtils;
+import ch.inftec.ju.util.event.JuEventUtils.UpdateEventNotifier;
+import ch.inftec.ju.util.event.UpdateListener;
+import ch.inftec.ju.util.function.Function;
+import ch.inftec.ju.util.jmx.MBeanUtils;
+import ch.inftec.ju.util.jmx.PropertyChainMetrics;
 
 /**
  * Builder to create PropertyChain instances.
@@ -49,8 +80,22 @@ public class PropertyChainBuilder {
 	
 	private final List<PropertyEvaluator> evaluators = new ArrayList<>();
 	
+	/**
+	 * URLs of the resources looked up by name, by resource name. Resources may be looked up in parallel.
+	 */
+	private final Map<String, List<URL>> resolvedResources = Collections.synchronizedMap(new LinkedHashMap<String, List<URL>>());
+	
+	/**
+	 * Custom converters used by PropertyChain.get(key, Class) by type.
+	 */
+	private final Map<Class<?>, Function<String, ?>> converters = new HashMap<>();
+	
 	private InterpolationBuilder interpolationBuilder = new InterpolationBuilder();
 	
+	private DecryptionCacheBuilder decryptionCacheBuilder = new DecryptionCacheBuilder();
+	
+	private MetricsBuilder metricsBuilder = new MetricsBuilder();
+	
 	/**
 	 * Set of values we shouldn't display values of in log (e.g. sensitive data like
 	 * passwords).
@@ -62,6 +107,16 @@ public class PropertyChainBuilder {
 	 */
 	private static final String ENCRYPTED_VALUE_LOGGING_STRING = "***";
 	
+	/**
+	 * Resource types of chain file entries that are handled by the ChainFilesResolver itself.
+	 */
+	private static final Set<String> BUILT_IN_RESOURCE_TYPES = new HashSet<>(Arrays.asList("sys", "prop", "csv"));
+	
+	/**
+	 * Pool to resolve chain files in parallel. Created on first use, see getResolverPool().
+	 */
+	private static ForkJoinPool resolverPool;
+	
 	/**
 	 * TextEncryptor instance to decrypt encrypted texts.
 	 */
@@ -69,6 +124,8 @@ public class PropertyChainBuilder {
 	
 	// Attributes of the PropertyChain
 	private boolean defaultThrowExceptionIfUndefined = false;
+	private boolean cacheResolvedValues = false;
+	private long reloadIntervalMillis = 0;
 	
 	/**
 	 * Specifies that the value for this key should not be displayed plainly. Can be used
@@ -89,6 +146,17 @@ public class PropertyChainBuilder {
 		return this.addPropertyEvaluator(new SystemPropertyEvaluator());
 	}
 	
+	/**
+	 * Gets the ValueSource the chains use to look up environment variables if environment variable
+	 * interpolation is enabled.
+	 * <p>
+	 * Subclasses can override this method, e.g. to record the environment variables the chains read.
+	 * @return ValueSource for environment variables
+	 */
+	protected ValueSource getEnvironmentValueSource() {
+		return EnvironmentValueSource.getInstance();
+	}
+	
 	/**
 	 * Adds a resource folder we will use for resource lookup.
 	 * <p>
@@ -124,6 +192,25 @@ public class PropertyChainBuilder {
 		}
 	}
 	
+	/**
+	 * Adds an evaluator that reads properties from a large property file.
+	 * <p>
+	 * Rather than loading all properties into memory, the file is memory mapped and indexed by key. Values are
+	 * only decoded when they are accessed, reducing heap usage and startup time for files with many entries.
+	 * <p>
+	 * The file is read using the default charset of IOUtil, which must be ASCII compatible. The file must not
+	 * be modified as long as the chain is in use and is never reloaded.
+	 * @param propertiesFile Path to the property file
+	 * @return This builder to allow for chaining
+	 */
+	public PropertyChainBuilder addMappedPropertyEvaluator(Path propertiesFile) {
+		try {
+			return this.addPropertyEvaluator(new MappedPropertiesEvaluator(propertiesFile, Charset.forName(IOUtil.getDefaultCharset())));
+		} catch (JuException ex) {
+			throw new JuRuntimeException("Couldn't map properties from file %s", ex, propertiesFile);
+		}
+	}
+	
 	/**
 	 * Adds an evaluator that reads properties from a property file.
 	 * @param resourceName Name of the resource
@@ -202,6 +289,21 @@ public class PropertyChainBuilder {
 		this.evaluators.add(evaluator);
 		return this;
 	}
+	
+	/**
+	 * Adds a converter to convert property values to the specified type when using
+	 * PropertyChain.get(key, Class).
+	 * <p>
+	 * Converted values are cached along with resolved values, so the converter should return immutable
+	 * objects. Converters override the built in conversions for the same type.
+	 * @param clazz Type the converter converts to
+	 * @param converter Converter. Will never be called with null or empty values
+	 * @return This builder to allow for chaining
+	 */
+	public <T> PropertyChainBuilder addConverter(Class<T> clazz, Function<String, ? extends T> converter) {
+		this.converters.put(clazz, converter);
+		return this;
+	}
 
 	/**
 	 * Sets the default exception throwing behaviour if a property is undefined.
@@ -216,6 +318,46 @@ public class PropertyChainBuilder {
 		return this;
 	}
 	
+	/**
+	 * Sets whether the PropertyChain should cache resolved values.
+	 * <p>
+	 * If true, the final (decrypted and interpolated) value of a key is cached the first time it is
+	 * evaluated, including the information that a key is undefined. Subsequent lookups of the same
+	 * key won't query the evaluators anymore.
+	 * <p>
+	 * Cached values also keep the results of the typed getters (like getInt), so repeated typed lookups
+	 * won't convert the value again. Without caching, every typed lookup resolves and converts the value.
+	 * <p>
+	 * Initial value is false. Only enable caching if the evaluators won't change their values or
+	 * call PropertyChain.clearCache() when they do.
+	 * <p>
+	 * Chains returned by peekChain() will never cache values.
+	 * @param cacheResolvedValues True if resolved values should be cached
+	 * @return This builder to allow for chaining
+	 */
+	public PropertyChainBuilder setCacheResolvedValues(boolean cacheResolvedValues) {
+		this.cacheResolvedValues = cacheResolvedValues;
+		return this;
+	}
+	
+	/**
+	 * Sets the interval the PropertyChain should use to check property and CSV files for modifications.
+	 * <p>
+	 * If enabled, modified files are reloaded in the background. Lookups will never block during a reload
+	 * and see either the old or the new values. After a reload, the cache of the PropertyChain is cleared
+	 * and an update event is fired by its update notifier.
+	 * <p>
+	 * Only resources on the file system are reloaded, resources in JARs are not. Initial value is 0, i.e.
+	 * no reloading. Chains returned by peekChain() or getFrozenPropertyChain() never enable reloading.
+	 * @param reloadInterval Interval to check for modifications. If 0 or less, files are not reloaded
+	 * @param unit Unit of the interval
+	 * @return This builder to allow for chaining
+	 */
+	public PropertyChainBuilder setReloadInterval(long reloadInterval, TimeUnit unit) {
+		this.reloadIntervalMillis = unit.toMillis(reloadInterval);
+		return this;
+	}
+	
 	/**
 	 * Sets a TextEncryptor to decrypt encrypted text like ENC(xxxx).
 	 * <p>
@@ -255,6 +397,26 @@ public class PropertyChainBuilder {
 		return this.interpolationBuilder;
 	}
 	
+	/**
+	 * Returns a DecryptionCacheBuilder to configure caching of decrypted values.
+	 * <p>
+	 * By default, decrypted values are not cached.
+	 * @return DecryptionCacheBuilder
+	 */
+	public DecryptionCacheBuilder decryptionCache() {
+		return this.decryptionCacheBuilder;
+	}
+	
+	/**
+	 * Returns a MetricsBuilder to configure lookup metrics.
+	 * <p>
+	 * By default, no metrics are collected.
+	 * @return MetricsBuilder
+	 */
+	public MetricsBuilder metrics() {
+		return this.metricsBuilder;
+	}
+	
 	/**
 	 * Gets a PropertyChain to peek at properties, i.e. evaluate them using the chain as configured so far.
 	 * <p>
@@ -263,7 +425,22 @@ public class PropertyChainBuilder {
 	 * @return PropertyChain to peek at properties
 	 */
 	public InterpolatingPropertyChain peekChain() {
-		return new PropertyChainImpl(this, false);
+		return new PropertyChainImpl(this, false, false);
+	}
+	
+	/**
+	 * Gets the resources this builder has looked up by name, i.e. chain files, the resources referenced by them
+	 * and the password resource of the decryptor.
+	 * <p>
+	 * Can be used to check whether the inputs of a chain have changed. Resources of chains restored from
+	 * a snapshot are not included.
+	 * @return URLs of the found resources by resource name, in the order the names have been looked up. The list
+	 * is empty if no resource was found for an optional resource name
+	 */
+	public Map<String, List<URL>> getResolvedResources() {
+		synchronized (this.resolvedResources) {
+			return new LinkedHashMap<>(this.resolvedResources);
+		}
 	}
 	
 	/**
@@ -285,16 +462,76 @@ public class PropertyChainBuilder {
 	 * @return PropertyChain instance
 	 */
 	public InterpolatingPropertyChain getPropertyChain() {
-		return new PropertyChainImpl(this, this.defaultThrowExceptionIfUndefined);
+		PropertyChainImpl chain = new PropertyChainImpl(this, this.defaultThrowExceptionIfUndefined, this.cacheResolvedValues);
+		
+		if (this.metricsBuilder.enabled) {
+			chain.enableMetrics(this.metricsBuilder.objectName);
+		}
+		
+		if (this.reloadIntervalMillis > 0) {
+			chain.enableReloading(this.reloadIntervalMillis);
+		}
+		
+		return chain;
+	}
+	
+	/**
+	 * Gets a frozen PropertyChain, i.e. an immutable snapshot of the PropertyChain built using this builder.
+	 * <p>
+	 * All keys listed by the evaluators are resolved (decrypted and interpolated) eagerly and stored in a compact
+	 * lookup table, so lookups won't query the evaluators anymore. Changes of the underlying properties won't
+	 * be reflected by the frozen chain.
+	 * <p>
+	 * Keys that are not listed by any evaluator are undefined in the frozen chain.
+	 * <p>
+	 * The frozen chain can safely be shared between threads.
+	 * @return Frozen PropertyChain instance
+	 */
+	public InterpolatingPropertyChain getFrozenPropertyChain() {
+		PropertyChainImpl chain = new PropertyChainImpl(this, false, false);
+		
+		Map<String, PropertyInfo> infos = new LinkedHashMap<>();
+		for (String key : chain.listKeys()) {
+			PropertyInfo pi = chain.getInfo(key);
+			if (pi != null && pi.getValue() != null) {
+				infos.put(key, pi);
+			}
+		}
+		
+		return new FrozenPropertyChain(infos
+				, this.defaultThrowExceptionIfUndefined
+				, this.converters
+				, this.interpolationBuilder.enabled
+				, this.interpolationBuilder.envVariableInterpolation);
 	}
 	
 	/**
 	 * Helper class to evaluate chains by chain files.
+	 * <p>
+	 * Optionally, the resolved chain can be stored in a snapshot file that is used to restore the chain
+	 * on subsequent resolutions as long as the configuration is unchanged. See snapshot(Path).
 	 * @author martin.meyer@inftec.ch
 	 *
 	 */
 	public final class ChainFilesResolver {
-		private List<URL> propFiles = new ArrayList<>();
+		private final List<String> names = new ArrayList<>();
+		
+		/**
+		 * Chain files found in the resource folders, by name.
+		 */
+		private final Map<String, List<URL>> folderChainFiles = new LinkedHashMap<>();
+		
+		private Path snapshotFile;
+		
+		private boolean lazy = false;
+		
+		private boolean parallel = false;
+		
+		/**
+		 * Custom resource types by name. Contains registered types and types discovered using the ServiceLoader.
+		 */
+		private final Map<String, ChainFileResourceType> resourceTypes = new HashMap<>();
+		private boolean resourceTypesDiscovered = false;
 		
 		/**
 		 * Evaluates chain files by name
@@ -308,7 +545,7 @@ public class PropertyChainBuilder {
 		public ChainFilesResolver name(String resourceName) {
 			List<URL> files = new ArrayList<>();
 			
-			// Search resource folders
+			// Search resource folders. The classpath is searched when resolving (unless we can use a snapshot)
 			for (Path resourceFolder : resourceFolders) {
 				Path fsResource = resourceFolder.resolve(resourceName);
 				if (JuUrl.path().isExistingFile(fsResource)) {
@@ -316,13 +553,115 @@ public class PropertyChainBuilder {
 				}
 			}
 			
-			// Search classpath
-			files.addAll(JuUrl.resource().getAll(resourceName, false));
-			this.propFiles.addAll(files);
+			this.names.add(resourceName);
+			this.folderChainFiles.put(resourceName, files);
 			
 			return this;
 		}
 		
+		/**
+		 * Sets a snapshot file to store the resolved chain in.
+		 * <p>
+		 * If the snapshot file exists and is still valid, the chain is restored from the snapshot without
+		 * looking up and parsing the chain files and the resources they reference. Otherwise, the chain files
+		 * are resolved as usual and the snapshot file is (re)written.
+		 * <p>
+		 * A snapshot is valid if the chain file names and resource folders are the same, all resources
+		 * (including the chain files) are unchanged and all placeholders of the chain files resolve to the
+		 * same values. Resources are considered unchanged if their modification time and size (or checksum for
+		 * resources not on the file system) are the same.
+		 * <p>
+		 * Note that new resources on the classpath (like a new chain file in a new JAR) are not detected. The
+		 * snapshot file should be deleted if the classpath changes.
+		 * @param snapshotFile Snapshot file
+		 * @return This resolver
+		 */
+		public ChainFilesResolver snapshot(Path snapshotFile) {
+			this.snapshotFile = snapshotFile;
+			return this;
+		}
+		
+		/**
+		 * Sets whether property and CSV resources should be loaded lazily.
+		 * <p>
+		 * If true, resource URLs are still resolved when resolving the chain files (so missing mandatory
+		 * resources are detected right away), but the resources are only loaded and parsed when they are
+		 * accessed for the first time, i.e. when a lookup isn't answered by an evaluator with a higher priority.
+		 * Errors parsing a resource will be thrown by that lookup then.
+		 * <p>
+		 * Note that resources needed to resolve placeholders of the chain files are loaded when resolving.
+		 * Lazy loading has no effect if a snapshot is written as the snapshot needs the contents of all resources.
+		 * <p>
+		 * Default is false.
+		 * @param lazy True to load resources on first access
+		 * @return This resolver
+		 */
+		public ChainFilesResolver lazy(boolean lazy) {
+			this.lazy = lazy;
+			return this;
+		}
+		
+		/**
+		 * Sets whether chain files and the resources they reference should be looked up and loaded in parallel.
+		 * <p>
+		 * If true, the chain files are looked up and read concurrently. Resources of entries that don't contain
+		 * placeholders are looked up (and loaded, unless lazy loading is enabled) concurrently as well before the
+		 * chain is built. Entries containing placeholders are resolved one after another as their placeholders
+		 * might depend on entries with a higher priority.
+		 * <p>
+		 * The evaluators are always added in the order of their priorization, so the resulting chain is the same
+		 * as with sequential resolution. Lookups run on a shared ForkJoinPool using the context ClassLoader
+		 * of the resolving thread. Custom resource types must be thread safe.
+		 * <p>
+		 * This mostly pays off if there are many chain entries on slow (e.g. network) file systems.
+		 * <p>
+		 * Default is false.
+		 * @param parallel True to look up and load resources in parallel
+		 * @return This resolver
+		 */
+		public ChainFilesResolver parallel(boolean parallel) {
+			this.parallel = parallel;
+			return this;
+		}
+		
+		/**
+		 * Registers a custom resource type that can be referenced in chain files.
+		 * <p>
+		 * Types available through the ServiceLoader don't need to be registered. Registered types take precedence
+		 * over discovered types of the same name. The names of built-in types (sys, prop and csv) cannot be used.
+		 * @param resourceType Resource type
+		 * @return This resolver
+		 */
+		public ChainFilesResolver resourceType(ChainFileResourceType resourceType) {
+			this.resourceTypes.put(resourceType.getName(), resourceType);
+			return this;
+		}
+		
+		/**
+		 * Gets the custom resource type with the specified name, discovering available types on first use.
+		 * <p>
+		 * Built-in types (sys, prop and csv) cannot be replaced by custom types, so types are not discovered
+		 * for them.
+		 * @param name Type name
+		 * @return Resource type or null if there is no such type or it is a built-in type
+		 */
+		private ChainFileResourceType getResourceType(String name) {
+			if (BUILT_IN_RESOURCE_TYPES.contains(name)) {
+				return null;
+			}
+			
+			if (!this.resourceTypesDiscovered) {
+				for (ChainFileResourceType resourceType : ServiceLoader.load(ChainFileResourceType.class)) {
+					if (!this.resourceTypes.containsKey(resourceType.getName())) {
+						logger.debug("Discovered chain file resource type {}: {}", resourceType.getName(), resourceType);
+						this.resourceTypes.put(resourceType.getName(), resourceType);
+					}
+				}
+				this.resourceTypesDiscovered = true;
+			}
+			return this.resourceTypes.get(name);
+		}
+		
 		/**
 		 * Resolves all evaluator using the chain file specified and returns the parent
 		 * property chain builder.
@@ -331,39 +670,149 @@ public class PropertyChainBuilder {
 		public PropertyChainBuilder resolve() {
 			logger.debug("Resolving PropertyChain by chain files");
 			
+			if (this.snapshotFile != null && this.restoreSnapshot()) {
+				return PropertyChainBuilder.this;
+			}
+			
+			PropertyChainSnapshot snapshot = null;
+			if (this.snapshotFile != null) {
+				snapshot = new PropertyChainSnapshot();
+				snapshot.names.addAll(this.names);
+				snapshot.resourceFolders.addAll(this.getResourceFolderNames());
+			}
+			
+			Map<Integer, String[]> props = this.readChainFiles(snapshot);
+			try {
+				this.buildChain(props, null, snapshot);
+			} catch (SnapshotInvalidException ex) {
+				// Cannot happen as we don't restore a snapshot
+				throw new JuRuntimeException(ex);
+			}
+			
+			if (snapshot != null) {
+				try {
+					snapshot.write(this.snapshotFile);
+					logger.debug("Wrote PropertyChain snapshot: {}", this.snapshotFile);
+				} catch (Exception ex) {
+					logger.warn("Couldn't write PropertyChain snapshot " + this.snapshotFile, ex);
+				}
+			}
+			
+			return PropertyChainBuilder.this;
+		}
+		
+		private List<String> getResourceFolderNames() {
+			List<String> folderNames = new ArrayList<>();
+			for (Path resourceFolder : resourceFolders) {
+				folderNames.add(resourceFolder.toAbsolutePath().toString());
+			}
+			return folderNames;
+		}
+		
+		/**
+		 * Tries to restore the chain from the snapshot file.
+		 * @return True if the chain could be restored, false if the snapshot is missing or invalid
+		 */
+		private boolean restoreSnapshot() {
+			int evaluatorCount = evaluators.size();
+			
+			try {
+				PropertyChainSnapshot snapshot = PropertyChainSnapshot.read(this.snapshotFile);
+				if (snapshot == null) {
+					throw new SnapshotInvalidException("No snapshot found");
+				} else if (!snapshot.names.equals(this.names)) {
+					throw new SnapshotInvalidException("Chain file names changed");
+				} else if (!snapshot.resourceFolders.equals(this.getResourceFolderNames())) {
+					throw new SnapshotInvalidException("Resource folders changed");
+				}
+				
+				for (List<URL> folderFiles : this.folderChainFiles.values()) {
+					for (URL folderFile : folderFiles) {
+						if (!snapshot.chainFiles.containsKey(folderFile.toString())) {
+							throw new SnapshotInvalidException("New chain file: " + folderFile);
+						}
+					}
+				}
+				for (Map.Entry<String, String> chainFile : snapshot.chainFiles.entrySet()) {
+					if (!chainFile.getValue().equals(PropertyChainSnapshot.fingerprint(new URL(chainFile.getKey())))) {
+						throw new SnapshotInvalidException("Chain file changed: " + chainFile.getKey());
+					}
+				}
+				
+				Map<Integer, String[]> props = new LinkedHashMap<>();
+				for (PropertyChainSnapshot.Entry entry : snapshot.entries) {
+					props.put(entry.priorization, entry.lineParts.clone());
+				}
+				this.buildChain(props, snapshot.entries.iterator(), null);
+				
+				logger.debug("Restored PropertyChain from snapshot: {}", this.snapshotFile);
+				return true;
+			} catch (SnapshotInvalidException ex) {
+				logger.debug("Couldn't use PropertyChain snapshot {}: {}", this.snapshotFile, ex.getMessage());
+			} catch (Exception ex) {
+				logger.warn("Couldn't restore PropertyChain snapshot " + this.snapshotFile, ex);
+			}
+			
+			// Remove evaluators we might have added from the snapshot
+			evaluators.subList(evaluatorCount, evaluators.size()).clear();
+			return false;
+		}
+		
+		private Map<Integer, String[]> readChainFiles(final PropertyChainSnapshot snapshot) {
+			// Look up the chain files on the classpath
+			List<Callable<List<URL>>> lookups = new ArrayList<>();
+			for (final String name : this.names) {
+				lookups.add(new Callable<List<URL>>() {
+					@Override
+					public List<URL> call() {
+						return JuUrl.resource().getAll(name, false);
+					}
+				});
+			}
+			List<List<URL>> classpathFiles = this.invokeAll(lookups);
+			
+			List<Callable<ChainFileContents>> reads = new ArrayList<>();
+			for (int i = 0; i < this.names.size(); i++) {
+				List<URL> propFiles = new ArrayList<>();
+				propFiles.addAll(this.folderChainFiles.get(this.names.get(i)));
+				propFiles.addAll(classpathFiles.get(i));
+				resolvedResources.put(this.names.get(i), Collections.unmodifiableList(propFiles));
+				
+				for (final URL propFile : propFiles) {
+					reads.add(new Callable<ChainFileContents>() {
+						@Override
+						public ChainFileContents call() {
+							return new ChainFileContents(propFile, snapshot != null);
+						}
+					});
+				}
+			}
+			
 			// Process contents of prop files
 			
 			XString duplicatePrios = new XString();
 			Map<Integer, String[]> props = new TreeMap<>();
-			for (URL propFile : this.propFiles) {
-				logger.debug("Processing property file: " + propFile);
+			for (ChainFileContents contents : this.invokeAll(reads)) {
+				logger.debug("Processing property file: " + contents.url);
+				
+				if (snapshot != null) {
+					snapshot.chainFiles.put(contents.url.toString(), contents.fingerprint);
+				}
 				
 				XString filteredContents = new XString("Filtered contents: " );
 				filteredContents.increaseIndent();
 				
-				try (BufferedReader r = new IOUtil().createReader(propFile)) {
-					String line = r.readLine();
-					while (line != null) {
-						String lineParts[] = JuStringUtils.split(line, ",", true);
-						if (lineParts.length > 0 && !lineParts[0].startsWith("#")) {
-							AssertUtil.assertTrue("Invalid line: " + line, lineParts.length > 1);
-							// Process line
-							filteredContents.addLine(line);
-							
-							int priorization = Integer.parseInt(lineParts[0]);
-							if (props.containsKey(priorization)) {
-								duplicatePrios.addLineFormatted("Duplicate priorization in %s: %d", propFile, priorization);
-							}
-							
-							props.put(priorization, Arrays.copyOfRange(lineParts, 1, lineParts.length));
-						} else {
-							// Ignore line
-						}
-						
-						line = r.readLine();
+				for (int i = 0; i < contents.lines.size(); i++) {
+					// Process line
+					filteredContents.addLine(contents.lines.get(i));
+					
+					String lineParts[] = contents.lineParts.get(i);
+					int priorization = Integer.parseInt(lineParts[0]);
+					if (props.containsKey(priorization)) {
+						duplicatePrios.addLineFormatted("Duplicate priorization in %s: %d", contents.url, priorization);
 					}
-				} catch (Exception ex) {
-					throw new JuRuntimeException("Couldn't process property file %s", ex, propFile);
+					
+					props.put(priorization, Arrays.copyOfRange(lineParts, 1, lineParts.length));
 				}
 				
 				logger.debug(filteredContents.toString());
@@ -373,10 +822,78 @@ public class PropertyChainBuilder {
 				}
 			}
 			
+			return props;
+		}
+		
+		/**
+		 * Runs the tasks, in parallel if parallel resolution is enabled.
+		 * @param tasks Tasks
+		 * @return Results of the tasks, in the order of the tasks
+		 * @throws JuRuntimeException If a task fails. Runtime exceptions of tasks are rethrown as they are
+		 */
+		private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+			List<T> results = new ArrayList<>();
+			try {
+				if (!this.parallel || tasks.size() < 2) {
+					for (Callable<T> task : tasks) {
+						results.add(task.call());
+					}
+				} else {
+					// Resources are looked up using the context ClassLoader, so make sure the pool threads use ours
+					final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+					List<Callable<T>> poolTasks = new ArrayList<>();
+					for (final Callable<T> task : tasks) {
+						poolTasks.add(new Callable<T>() {
+							@Override
+							public T call() throws Exception {
+								Thread thread = Thread.currentThread();
+								ClassLoader poolClassLoader = thread.getContextClassLoader();
+								thread.setContextClassLoader(contextClassLoader);
+								try {
+									return task.call();
+								} finally {
+									thread.setContextClassLoader(poolClassLoader);
+								}
+							}
+						});
+					}
+					
+					for (Future<T> future : PropertyChainBuilder.getResolverPool().invokeAll(poolTasks)) {
+						try {
+							results.add(future.get());
+						} catch (ExecutionException ex) {
+							throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+						}
+					}
+				}
+			} catch (RuntimeException ex) {
+				throw ex;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new JuRuntimeException("Interrupted while resolving chain files", ex);
+			} catch (Exception ex) {
+				throw new JuRuntimeException("Couldn't resolve chain files", ex);
+			}
+			return results;
+		}
+		
+		/**
+		 * Adds the evaluators for the chain file entries.
+		 * @param props Line parts of the chain file entries (without priorization) by priorization, in the order they should be added
+		 * @param restoredEntries Snapshot entries to restore the resources from. If null, resources are looked up and loaded
+		 * @param snapshot Snapshot to add the entries to. May be null
+		 * @throws SnapshotInvalidException If the restored entries are not valid anymore
+		 */
+		private void buildChain(Map<Integer, String[]> props, Iterator<PropertyChainSnapshot.Entry> restoredEntries
+				, PropertyChainSnapshot snapshot) throws SnapshotInvalidException {
 			// Build property chain from read info
 			
 			PropertyChainBuilder chainBuilder = PropertyChainBuilder.this;
 			
+			Map<Integer, PrefetchedResource> prefetchedResources = this.parallel && restoredEntries == null
+					? this.prefetchResources(props)
+					: null;
+			
 			XString chainInfo = new XString("Evaluated property chain:");
 			chainInfo.increaseIndent();
 			for (int prio : props.keySet()) {
@@ -384,6 +901,16 @@ public class PropertyChainBuilder {
 				
 				// Get the remaining line parts (without priorization)
 				String[] lineParts = props.get(prio);
+				String[] rawLineParts = lineParts.clone();
+				
+				PropertyChainSnapshot.Entry restoredEntry = restoredEntries != null ? restoredEntries.next() : null;
+				PropertyChainSnapshot.Entry entry = null;
+				if (snapshot != null) {
+					entry = new PropertyChainSnapshot.Entry();
+					entry.priorization = prio;
+					entry.lineParts = lineParts.clone();
+					snapshot.entries.add(entry);
+				}
 				
 				String propType = lineParts[0];
 				// Perform placeholder substitution
@@ -406,21 +933,69 @@ public class PropertyChainBuilder {
 					lineParts[i] = part.toString();
 				}
 				
+				if (restoredEntry != null && !Arrays.equals(restoredEntry.resolvedLineParts, lineParts)) {
+					throw new SnapshotInvalidException("Placeholders resolved differently: " + Arrays.toString(lineParts));
+				}
+				if (entry != null) {
+					entry.resolvedLineParts = lineParts.clone();
+				}
+				
+				// Prefetched resources can only be used if the entry didn't contain placeholders
+				PrefetchedResource prefetched = prefetchedResources != null && Arrays.equals(rawLineParts, lineParts)
+						? prefetchedResources.get(prio)
+						: null;
+				
+				ChainFileResourceType resourceType = this.getResourceType(propType);
+				
 				if ("sys".equals(propType)) {
 					chainBuilder.addSystemPropertyEvaluator();
 					chainInfo.addText("System Properties");
-				} else if ("prop".equals(propType)) {
-					AssertUtil.assertTrue("prop property type must be followed by a resource path", lineParts.length > 1);
+				} else if ("prop".equals(propType) || resourceType != null) {
+					AssertUtil.assertTrue(propType + " property type must be followed by a resource path", lineParts.length > 1);
+					// Custom resource types are handled like properties files, using the type to load the properties
+					String fileInfo = resourceType == null ? "Properties file: " : resourceType.getName() + " file: ";
 					String resourcePath = lineParts[1];
 					boolean optional = lineParts.length > 2 && "optional".equals(lineParts[2]);
 					
-					URL resourceUrl = getFileResource(resourcePath, optional);
+					URL resourceUrl;
+					if (restoredEntry != null) {
+						resourceUrl = this.validateRestoredResource(restoredEntry, resourcePath);
+						if (resourceUrl != null) {
+							chainBuilder.addPropertyEvaluator(new PropertiesPropertyEvaluator(resourceUrl, resourceType, restoredEntry.properties));
+						}
+					} else {
+						resourceUrl = prefetched != null ? prefetched.url : getFileResource(resourcePath, optional);
+						if (resourceUrl != null) {
+							String fingerprint = entry != null ? PropertyChainSnapshot.fingerprint(resourceUrl) : null;
+							
+							PropertiesPropertyEvaluator evaluator;
+							if (prefetched != null && prefetched.contents != null) {
+								@SuppressWarnings("unchecked")
+								Map<Object, Object> contents = (Map<Object, Object>) prefetched.contents;
+								evaluator = new PropertiesPropertyEvaluator(resourceUrl, resourceType, contents);
+							} else {
+								try {
+									evaluator = new PropertiesPropertyEvaluator(resourceUrl, resourceType, this.lazy);
+								} catch (JuException ex) {
+									throw new JuRuntimeException("Couldn't load properties from url " + resourceUrl, ex);
+								}
+							}
+							chainBuilder.addPropertyEvaluator(evaluator);
+							
+							if (entry != null) {
+								entry.url = resourceUrl.toString();
+								entry.fingerprint = fingerprint;
+								entry.properties = new Properties();
+								entry.properties.putAll(evaluator.getContents());
+							}
+						}
+					}
+					
 					if (resourceUrl != null) {
-						chainBuilder.addResourcePropertyEvaluator(resourceUrl);
-						chainInfo.addText("Properties file: " + resourceUrl);
+						chainInfo.addText(fileInfo + resourceUrl);
 					} else {
 						AssertUtil.assertTrue("Mandatory resource not found: " + resourcePath, optional);
-						chainInfo.addText("Properties file:   >>> optional resource not found: " + resourcePath);
+						chainInfo.addText(fileInfo + "  >>> optional resource not found: " + resourcePath);
 					}
 				} else if ("csv".equals(propType)) {
 					AssertUtil.assertTrue(
@@ -428,13 +1003,38 @@ public class PropertyChainBuilder {
 					String resourcePath = lineParts[1];
 					String profilePropertyName = lineParts[2];
 					
-					String profileName = chainBuilder.getPropertyChain().get(profilePropertyName);
+					// Undefined profile properties fail if the builder throws exceptions for undefined properties
+					String profileName = chainBuilder.peekChain().get(profilePropertyName, chainBuilder.defaultThrowExceptionIfUndefined);
 					String defaultColumn = lineParts.length > 3
 							? lineParts[2]
 							: "default";
 					
-					URL resourceUrl = getFileResource(resourcePath, false);
-					chainBuilder.addCsvPropertyEvaluator(resourceUrl, profileName, defaultColumn);
+					URL resourceUrl;
+					if (restoredEntry != null) {
+						if (!Objects.equals(restoredEntry.profileName, profileName)) {
+							throw new SnapshotInvalidException("Profile changed: " + profilePropertyName);
+						}
+						
+						resourceUrl = this.validateRestoredResource(restoredEntry, resourcePath);
+						chainBuilder.addPropertyEvaluator(new CsvPropertyEvaluator(resourceUrl, profileName, defaultColumn
+								, CsvTableLookup.fromRows(restoredEntry.rows, defaultColumn)));
+					} else {
+						resourceUrl = prefetched != null ? prefetched.url : getFileResource(resourcePath, false);
+						String fingerprint = entry != null ? PropertyChainSnapshot.fingerprint(resourceUrl) : null;
+						
+						CsvPropertyEvaluator evaluator = prefetched != null && prefetched.contents != null
+								? new CsvPropertyEvaluator(resourceUrl, profileName, defaultColumn, (CsvTableLookup) prefetched.contents)
+								: new CsvPropertyEvaluator(resourceUrl, profileName, defaultColumn, this.lazy);
+						chainBuilder.addPropertyEvaluator(evaluator);
+						
+						if (entry != null) {
+							entry.profileName = profileName;
+							entry.url = resourceUrl.toString();
+							entry.fingerprint = fingerprint;
+							entry.rows = evaluator.getTable().getRows();
+						}
+					}
+					
 					chainInfo.addFormatted("CSV Properties: %s [profileName=%s, defaultColumn=%s]"
 							, resourceUrl
 							, profileName
@@ -446,30 +1046,250 @@ public class PropertyChainBuilder {
 			
 			// Output evaluated chain
 			logger.info(chainInfo.toString());
-			
-			return PropertyChainBuilder.this;
-		}
-	}
-	
-	private URL getFileResource(String resourceName, boolean optional) {
-		// Try lookup in resource folders
-		for (Path p : this.resourceFolders) {
-			Path resourcePath = p.resolve(resourceName);
-			if (JuUrl.path().isExistingFile(resourcePath)) {
-				return JuUrl.toUrl(resourcePath);
-			}
 		}
 		
-		// Try lookup on classpath
-		return JuUrl.resource().single().exceptionIfNone(!optional).get(resourceName, false);
-	}
-	
-	/**
-	 * Helper class to configure property interpolation of a PropertyChain.
-	 * @author martin.meyer@inftec.ch
-	 *
-	 */
-	public final class InterpolationBuilder {
+		/**
+		 * Looks up (and loads, unless lazy loading is enabled) the resources of all entries that don't contain
+		 * placeholders in parallel.
+		 * <p>
+		 * Failures are ignored. The resources are looked up again when building the chain, so the failure
+		 * is reported for the entry that caused it.
+		 * @param props Line parts of the chain file entries (without priorization) by priorization
+		 * @return Prefetched resources by priorization
+		 */
+		private Map<Integer, PrefetchedResource> prefetchResources(Map<Integer, String[]> props) {
+			List<Integer> prios = new ArrayList<>();
+			List<Callable<PrefetchedResource>> tasks = new ArrayList<>();
+			
+			for (Map.Entry<Integer, String[]> prop : props.entrySet()) {
+				final String[] lineParts = prop.getValue();
+				String propType = lineParts[0];
+				
+				boolean placeholders = false;
+				for (int i = 1; i < lineParts.length; i++) {
+					placeholders |= lineParts[i].contains("${") || lineParts[i].contains("%");
+				}
+				if (placeholders) {
+					continue;
+				}
+				
+				final boolean lazy = this.lazy;
+				final ChainFileResourceType resourceType = this.getResourceType(propType);
+				if (("prop".equals(propType) || resourceType != null) && lineParts.length > 1) {
+					
+					prios.add(prop.getKey());
+					tasks.add(new Callable<PrefetchedResource>() {
+						@Override
+						public PrefetchedResource call() {
+							try {
+								boolean optional = lineParts.length > 2 && "optional".equals(lineParts[2]);
+								URL resourceUrl = getFileResource(lineParts[1], optional);
+								
+								Map<Object, Object> contents = null;
+								if (resourceUrl != null && !lazy) {
+									contents = resourceType != null
+											? resourceType.load(resourceUrl)
+											: PropertiesCache.load(resourceUrl);
+								}
+								return new PrefetchedResource(resourceUrl, contents);
+							} catch (Exception ex) {
+								logger.debug("Couldn't prefetch {}: {}", lineParts[1], ex.getMessage());
+								return null;
+							}
+						}
+					});
+				} else if ("csv".equals(propType) && lineParts.length > 2) {
+					// Same default column as when building the chain
+					final String defaultColumn = lineParts.length > 3
+							? lineParts[2]
+							: "default";
+					
+					prios.add(prop.getKey());
+					tasks.add(new Callable<PrefetchedResource>() {
+						@Override
+						public PrefetchedResource call() {
+							try {
+								URL resourceUrl = getFileResource(lineParts[1], false);
+								
+								CsvTableLookup contents = null;
+								if (!lazy) {
+									contents = CsvTableLookup.build()
+											.from(resourceUrl)
+											.defaultColumn(defaultColumn)
+											.create();
+								}
+								return new PrefetchedResource(resourceUrl, contents);
+							} catch (Exception ex) {
+								logger.debug("Couldn't prefetch {}: {}", lineParts[1], ex.getMessage());
+								return null;
+							}
+						}
+					});
+				}
+			}
+			
+			Map<Integer, PrefetchedResource> prefetchedResources = new HashMap<>();
+			List<PrefetchedResource> resources = this.invokeAll(tasks);
+			for (int i = 0; i < prios.size(); i++) {
+				if (resources.get(i) != null) {
+					prefetchedResources.put(prios.get(i), resources.get(i));
+				}
+			}
+			
+			logger.debug("Prefetched {} of {} chain file resources", prefetchedResources.size(), props.size());
+			return prefetchedResources;
+		}
+			
+		/**
+		 * Validates that the resource of a restored snapshot entry is unchanged.
+		 * @param restoredEntry Restored entry
+		 * @param resourcePath Resource path
+		 * @return URL of the resource or null if the resource wasn't found when the snapshot was created
+		 * @throws SnapshotInvalidException If the resource has changed
+		 */
+		private URL validateRestoredResource(PropertyChainSnapshot.Entry restoredEntry, String resourcePath) throws SnapshotInvalidException {
+			// Resource folders take precedence over the classpath, so make sure no resource was added there
+			URL folderResource = getFolderResource(resourcePath);
+			if (folderResource != null && !folderResource.toString().equals(restoredEntry.url)) {
+				throw new SnapshotInvalidException("New resource: " + folderResource);
+			}
+			
+			if (restoredEntry.url == null) {
+				return null;
+			}
+			
+			URL resourceUrl;
+			try {
+				resourceUrl = new URL(restoredEntry.url);
+			} catch (MalformedURLException ex) {
+				throw new SnapshotInvalidException("Invalid URL: " + restoredEntry.url);
+			}
+			
+			if (!PropertyChainSnapshot.fingerprint(resourceUrl).equals(restoredEntry.fingerprint)) {
+				throw new SnapshotInvalidException("Resource changed: " + resourceUrl);
+			}
+			return resourceUrl;
+		}
+	}
+	
+	/**
+	 * Entries of a chain file, read by ChainFilesResolver.
+	 */
+	private static final class ChainFileContents {
+		private final URL url;
+		private final String fingerprint;
+		
+		/**
+		 * Lines containing entries, i.e. without empty lines and comments.
+		 */
+		private final List<String> lines = new ArrayList<>();
+		private final List<String[]> lineParts = new ArrayList<>();
+		
+		/**
+		 * Reads the chain file.
+		 * @param url URL of the chain file
+		 * @param fingerprint Whether the fingerprint of the chain file should be computed (for a snapshot)
+		 * @throws JuRuntimeException If the chain file cannot be read or contains invalid lines
+		 */
+		private ChainFileContents(URL url, boolean fingerprint) {
+			this.url = url;
+			this.fingerprint = fingerprint ? PropertyChainSnapshot.fingerprint(url) : null;
+			
+			try (BufferedReader r = new IOUtil().createReader(url)) {
+				String line = r.readLine();
+				while (line != null) {
+					String lineParts[] = JuStringUtils.split(line, ",", true);
+					if (lineParts.length > 0 && !lineParts[0].startsWith("#")) {
+						AssertUtil.assertTrue("Invalid line: " + line, lineParts.length > 1);
+						// Validate the priorization right away
+						Integer.parseInt(lineParts[0]);
+						
+						this.lines.add(line);
+						this.lineParts.add(lineParts);
+					} else {
+						// Ignore line
+					}
+					
+					line = r.readLine();
+				}
+			} catch (Exception ex) {
+				throw new JuRuntimeException("Couldn't process property file %s", ex, url);
+			}
+		}
+	}
+	
+	/**
+	 * Resources of a chain file entry that have been looked up (and loaded) in advance by ChainFilesResolver.
+	 */
+	private static final class PrefetchedResource {
+		private final URL url;
+		
+		/**
+		 * Contents of the resource, i.e. a properties Map or a CsvTableLookup. Null if the resource wasn't found or
+		 * should be loaded lazily.
+		 */
+		private final Object contents;
+		
+		private PrefetchedResource(URL url, Object contents) {
+			this.url = url;
+			this.contents = contents;
+		}
+	}
+	
+	/**
+	 * Gets the pool used to resolve chain files in parallel.
+	 * <p>
+	 * Resolving is mostly waiting for I/O, so we use at least a couple of threads even on machines with few cores.
+	 * The threads are daemon threads and won't prevent the JVM from exiting.
+	 * @return Resolver pool
+	 */
+	private static synchronized ForkJoinPool getResolverPool() {
+		if (resolverPool == null) {
+			resolverPool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+		}
+		return resolverPool;
+	}
+	
+	/**
+	 * Thrown if a PropertyChainSnapshot cannot be used to restore a chain.
+	 */
+	private static class SnapshotInvalidException extends Exception {
+		private static final long serialVersionUID = 1L;
+		
+		private SnapshotInvalidException(String message) {
+			super(message);
+		}
+	}
+	
+	private URL getFolderResource(String resourceName) {
+		for (Path p : this.resourceFolders) {
+			Path resourcePath = p.resolve(resourceName);
+			if (JuUrl.path().isExistingFile(resourcePath)) {
+				return JuUrl.toUrl(resourcePath);
+			}
+		}
+		return null;
+	}
+	
+	private URL getFileResource(String resourceName, boolean optional) {
+		// Try lookup in resource folders, then on the classpath
+		URL resourceUrl = this.getFolderResource(resourceName);
+		if (resourceUrl == null) {
+			resourceUrl = JuUrl.resource().single().exceptionIfNone(!optional).get(resourceName, false);
+		}
+		
+		this.resolvedResources.put(resourceName, resourceUrl != null
+				? Collections.singletonList(resourceUrl)
+				: Collections.<URL>emptyList());
+		return resourceUrl;
+	}
+	
+	/**
+	 * Helper class to configure property interpolation of a PropertyChain.
+	 * @author martin.meyer@inftec.ch
+	 *
+	 */
+	public final class InterpolationBuilder {
 		private boolean enabled = true;
 		private boolean envVariableInterpolation = true;
 		
@@ -495,148 +1315,457 @@ public class PropertyChainBuilder {
 		}
 	}
 	
-	private static class PropertyChainImpl implements InterpolatingPropertyChain {
+	/**
+	 * Helper class to configure the caching of decrypted values of a PropertyChain.
+	 * <p>
+	 * Decrypting values like ENC(xxxx) can be expensive, so the PropertyChain can cache decrypted values
+	 * by their encrypted value. The cache is bounded and cleared by PropertyChain.clearCache().
+	 * <p>
+	 * Caching is disabled by default as the cache keeps the decrypted plaintexts in memory for the lifetime
+	 * of the chain (or until the cache is cleared or the values expire).
+	 * @author martin.meyer@inftec.ch
+	 *
+	 */
+	public final class DecryptionCacheBuilder {
+		private boolean enabled = false;
+		private int maxSize = 1000;
+		private long expiryTime = 0;
+		private TimeUnit expiryTimeUnit = TimeUnit.MILLISECONDS;
+		
+		/**
+		 * Sets whether decrypted values are cached.
+		 * @param enableCache If true, decrypted values are cached. If false, values are decrypted on every evaluation.
+		 * @return DecryptionCacheBuilder
+		 */
+		public DecryptionCacheBuilder enable(boolean enableCache) {
+			this.enabled = enableCache;
+			return this;
+		}
+		
+		/**
+		 * Sets the maximum number of decrypted values to cache.
+		 * <p>
+		 * If reached, the value longest not used will be discarded. Default is 1000.
+		 * @param maxSize Maximum number of cached values
+		 * @return DecryptionCacheBuilder
+		 */
+		public DecryptionCacheBuilder maxSize(int maxSize) {
+			AssertUtil.assertTrue("maxSize must be greater than 0", maxSize > 0);
+			this.maxSize = maxSize;
+			return this;
+		}
+		
+		/**
+		 * Sets the time after which decrypted values expire and need to be decrypted again.
+		 * <p>
+		 * By default, values never expire.
+		 * @param expiryTime Expiry time. If 0 or less, values never expire
+		 * @param expiryTimeUnit Unit of the expiry time
+		 * @return DecryptionCacheBuilder
+		 */
+		public DecryptionCacheBuilder expireAfter(long expiryTime, TimeUnit expiryTimeUnit) {
+			this.expiryTime = expiryTime;
+			this.expiryTimeUnit = expiryTimeUnit;
+			return this;
+		}
+		
+		/**
+		 * Finished decryption cache configuration and returns the PropertyBuilder.
+		 * @return PropertyChainBuilder to continue configuration
+		 */
+		public PropertyChainBuilder done() {
+			return PropertyChainBuilder.this;
+		}
+	}
+	
+	/**
+	 * Helper class to configure lookup metrics of a PropertyChain.
+	 * <p>
+	 * If enabled, the PropertyChain collects lookup counts per key, hit and miss counts per evaluator
+	 * and latency histograms of the evaluate, decrypt and interpolate phases. The metrics are registered
+	 * as a PropertyChainMetrics MBean with the platform MBeanServer.
+	 * <p>
+	 * Metrics are only collected by chains returned by getPropertyChain().
+	 * @author martin.meyer@inftec.ch
+	 *
+	 */
+	public final class MetricsBuilder {
+		private boolean enabled = false;
+		private String objectName = "ch.inftec.ju:type=PropertyChain,name=default";
+		
+		/**
+		 * Sets whether lookup metrics are collected.
+		 * @param enableMetrics If true, metrics are collected. If false, lookups won't be instrumented at all.
+		 * @return MetricsBuilder
+		 */
+		public MetricsBuilder enable(boolean enableMetrics) {
+			this.enabled = enableMetrics;
+			return this;
+		}
+		
+		/**
+		 * Sets the name the metrics MBean is registered with.
+		 * <p>
+		 * An MBean already registered with the same name will be replaced. Default is
+		 * 'ch.inftec.ju:type=PropertyChain,name=default'.
+		 * @param objectName Object name of the MBean
+		 * @return MetricsBuilder
+		 */
+		public MetricsBuilder objectName(String objectName) {
+			this.objectName = objectName;
+			return this;
+		}
+		
+		/**
+		 * Finished metrics configuration and returns the PropertyBuilder.
+		 * @return PropertyChainBuilder to continue configuration
+		 */
+		public PropertyChainBuilder done() {
+			return PropertyChainBuilder.this;
+		}
+	}
+	
+	private static class PropertyChainImpl extends AbstractPropertyChain {
 		private Logger logger = LoggerFactory.getLogger(PropertyChainImpl.class);
 		
+		/**
+		 * Placeholder for undefined keys in the resolved values cache as ConcurrentMap doesn't
+		 * support null values.
+		 */
+		private static final PropertyInfoImpl UNDEFINED = new PropertyInfoImpl(null, null, null);
+		
 		private final List<PropertyEvaluator> evaluators;
 		private final JuTextEncryptor decryptor;
-		private final boolean defaultThrowExceptionIfUndefined;
-		private final Interpolator interpolator;
+		private final PropertyInterpolator interpolator;
+		
+		/**
+		 * ValueSource for environment variables. Null if environment variable interpolation is disabled.
+		 */
+		private final ValueSource environmentValueSource;
 		private final Set<String> hiddenValueKeys;
 		
-		private PropertyChainImpl(PropertyChainBuilder builder, boolean defaultThrowExceptionIfUndefined) {
-			this.defaultThrowExceptionIfUndefined =  defaultThrowExceptionIfUndefined;
+		/**
+		 * Whether the chain might contain sensitive values, i.e. whether interpolated values need to be
+		 * checked for references to sensitive values.
+		 */
+		private final boolean hasSensitiveValues;
+		
+		/**
+		 * Cache of resolved (i.e. decrypted and interpolated) values by key. Null if
+		 * caching is disabled.
+		 * <p>
+		 * clearCache replaces the map rather than clearing it, so resolutions that evaluated the
+		 * previous state can only publish their values to the discarded map.
+		 */
+		private volatile ConcurrentMap<String, PropertyInfoImpl> resolvedValues;
+		
+		/**
+		 * Cache of decrypted values by encrypted value. Null if no decryptor is set or
+		 * caching is disabled.
+		 */
+		private final ClearableCache<String, String> decryptedValues;
+		
+		/**
+		 * Lookup metrics. Null if metrics are disabled.
+		 */
+		private PropertyChainMetrics metrics;
+		
+		/**
+		 * Listener for reloaded evaluators. Evaluators only hold a weak reference to it, so we
+		 * need to keep a strong one as long as the chain is alive.
+		 */
+		private final UpdateListener<PropertyEvaluator> reloadListener = new UpdateListener<PropertyEvaluator>() {
+			@Override
+			public void updated(JuEventObject<PropertyEvaluator> event) {
+				logger.debug("Evaluator was reloaded, clearing cache: {}", event.getSource());
+				PropertyChainImpl.this.clearCache();
+				PropertyChainImpl.this.fireUpdateEvent();
+			}
+		};
+		
+		private PropertyChainImpl(PropertyChainBuilder builder, boolean defaultThrowExceptionIfUndefined, boolean cacheResolvedValues) {
+			super(defaultThrowExceptionIfUndefined, builder.converters);
+			
 			this.evaluators = new ArrayList<>(builder.evaluators);
 			this.decryptor = builder.decryptor;
 			this.hiddenValueKeys = new HashSet<>(builder.hiddenValueKeys);
+			this.hasSensitiveValues = this.decryptor != null || !this.hiddenValueKeys.isEmpty();
+			this.resolvedValues = cacheResolvedValues
+					? new ConcurrentHashMap<String, PropertyInfoImpl>()
+					: null;
 			
+			DecryptionCacheBuilder decryptionCache = builder.decryptionCacheBuilder;
+			if (this.decryptor != null && decryptionCache.enabled) {
+				this.decryptedValues = Caches.simpleBoundedCache(decryptionCache.maxSize
+						, decryptionCache.expiryTime
+						, decryptionCache.expiryTimeUnit
+						, new Function<String, String>() {
+							@Override
+							public String apply(String encryptedValue) {
+								return JuSecurityUtils.decryptTaggedValueIfNecessary(encryptedValue, decryptor);
+							}
+						});
+			} else {
+				this.decryptedValues = null;
+			}
+			
+			this.environmentValueSource = builder.interpolationBuilder.envVariableInterpolation
+					? builder.getEnvironmentValueSource()
+					: null;
 			if (builder.interpolationBuilder.enabled) {
-				this.interpolator = new RegexBasedInterpolator();
-				if (builder.interpolationBuilder.envVariableInterpolation) {
-					try {
-						this.interpolator.addValueSource(new EnvarBasedValueSource());
-					} catch (Exception ex) {
-						throw new JuRuntimeException("Couldn't create EnvarBasedValueSource", ex);
-					}
+				if (this.environmentValueSource != null) {
+					this.interpolator = new PropertyInterpolator(this.environmentValueSource, new ChainValueSource());
+				} else {
+					this.interpolator = new PropertyInterpolator(new ChainValueSource());
 				}
-				
-				this.interpolator.addValueSource(new ChainValueSource());
 			} else {
 				this.interpolator = null;
 			}
 		}
 		
-		@Override
-		public String get(String key) {
-			return this.get(key, this.defaultThrowExceptionIfUndefined);
-		}
-
-		@Override
-		public String get(String key, boolean throwExceptionIfNotDefined) {
-			Object obj = this.getObject(key, null, throwExceptionIfNotDefined);
-			return obj == null ? null : obj.toString();
-		}
-
-		@Override
-		public String get(String key, String defaultValue) {
-			String val = this.get(key, false);
-			return val != null ? val : defaultValue;
-		}
-		
-		@Override
-		public <T> T get(String key, Class<T> clazz) {
-			String val = this.get(key);
-			return this.convert(val, clazz);
-		}
-		
-		@Override
-		public <T> T get(String key, Class<T> clazz, boolean throwExceptionIfNotDefined) {
-			String val = this.get(key, throwExceptionIfNotDefined);
-			return this.convert(val, clazz);
+		/**
+		 * Enables lookup metrics and registers them as an MBean.
+		 * @param objectName Object name of the MBean
+		 */
+		private void enableMetrics(String objectName) {
+			List<String> evaluatorNames = new ArrayList<>();
+			for (PropertyEvaluator evaluator : this.evaluators) {
+				evaluatorNames.add(evaluator.toString());
+			}
+			
+			this.metrics = new PropertyChainMetrics(evaluatorNames);
+			MBeanUtils.registerPlatformMBean(objectName, this.metrics);
 		}
 		
-		@Override
-		public <T> T get(String key, Class<T> clazz, String defaultValue) {
-			String val = this.get(key, defaultValue);
-			return this.convert(val, clazz);
+		/**
+		 * Enables reloading of all evaluators that support it.
+		 * @param intervalMillis Poll interval in milliseconds
+		 */
+		private void enableReloading(long intervalMillis) {
+			for (PropertyEvaluator evaluator : this.evaluators) {
+				if (evaluator instanceof ResourcePropertyEvaluator) {
+					ResourcePropertyEvaluator<?> resourceEvaluator = (ResourcePropertyEvaluator<?>) evaluator;
+					resourceEvaluator.getUpdateNotifier().addWeakListener(this.reloadListener);
+					resourceEvaluator.enableReloading(intervalMillis);
+				}
+			}
 		}
 		
-		@SuppressWarnings("unchecked")
-		private <T> T convert(String val, Class<T> clazz) {
-			if (StringUtils.isEmpty(val)) return null;
+		/**
+		 * Resolves the specified key, using the resolved values cache if enabled.
+		 * @param key Key
+		 * @return Resolved PropertyInfo or null if the key is undefined
+		 */
+		private PropertyInfoImpl resolve(String key) {
+			if (this.metrics != null) {
+				this.metrics.recordLookup(key);
+			}
 			
-			if (clazz == Integer.class) {
-				return (T) new Integer(val);
-			} else if (clazz == Boolean.class) {
-				return (T) new Boolean(val);
-			} else if (clazz == Object.class) {
-				return (T) val;
-			} else {
-				throw new JuRuntimeException("Conversion not supported: " + clazz);
+			ConcurrentMap<String, PropertyInfoImpl> resolvedValues = this.resolvedValues;
+			if (resolvedValues == null) {
+				return this.evaluteAndInterpolate(key);
 			}
-		}
-		
-		private Object getObject(String key, Object defaultValue, boolean throwExceptionIfNotDefined) {
-			PropertyInfoImpl pi = this.evaluteAndInterpolate(key);
-			if (pi == null || pi.getValue() == null) {
-				if (throwExceptionIfNotDefined) {
-					throw new JuRuntimeException("Property undefined: " + key);
-				} else {
-					return defaultValue;
-				}
+			
+			PropertyInfoImpl pi = resolvedValues.get(key);
+			if (pi == null) {
+				pi = this.evaluteAndInterpolate(key);
+				resolvedValues.putIfAbsent(key, pi != null ? pi : UNDEFINED);
+				return pi;
+			} else {
+				return pi == UNDEFINED ? null : pi;
 			}
-			return pi.getValue();
 		}
 		
 		private PropertyInfoImpl evaluteAndInterpolate(String key) {
-			PropertyInfoImpl pi = this.evaluate(key);
+			return this.interpolateInfo(this.evaluate(key));
+		}
 			
+		private PropertyInfoImpl interpolateInfo(PropertyInfoImpl pi) {
 			if (this.interpolator != null && pi != null && pi.rawValue instanceof String) {
+				long start = this.metrics != null ? System.nanoTime() : 0;
 				try{ 
 					String interpolatedValue = this.interpolator.interpolate(pi.getValue());
 					pi.setValue(interpolatedValue);
+					this.hideSensitiveReferences(pi);
 					return pi;
 				} catch (InterpolationException ex) {
 					logger.warn("Couldn't interpolate " + pi.getValue(), ex);
 					return pi;
+				} finally {
+					if (this.metrics != null) {
+						this.metrics.recordInterpolate(System.nanoTime() - start);
+					}
 				}
 			} else {
 				return pi;
 			}
 		}
 		
-		private PropertyInfoImpl evaluate(String key) {
-			for (PropertyEvaluator evaluator : evaluators) {
+		/**
+		 * Marks the specified interpolated property sensitive if its value references a sensitive value, so
+		 * secrets interpolated into other values are hidden like the secrets themselves.
+		 * @param pi Interpolated PropertyInfo
+		 */
+		private void hideSensitiveReferences(PropertyInfoImpl pi) {
+			if (this.hasSensitiveValues && !pi.isSensitive()
+					&& this.referencesSensitiveValue(pi.getRawValue(), new HashSet<String>())) {
+				pi.setDisplayValue(ENCRYPTED_VALUE_LOGGING_STRING);
+				pi.setSensitive(true);
+			}
+		}
+		
+		/**
+		 * Checks whether the specified value references sensitive values, directly or through other references.
+		 * <p>
+		 * Queries the evaluators directly, so the check neither decrypts values nor affects the metrics.
+		 */
+		private boolean referencesSensitiveValue(String value, Set<String> visitedKeys) {
+			for (String expression : PropertyInterpolator.getExpressions(value)) {
+				if (!visitedKeys.add(expression)) {
+					continue;
+				}
+				for (PropertyEvaluator evaluator : this.evaluators) {
+					Object val = evaluator.get(expression);
+					if (val != null) {
+						if (this.hiddenValueKeys.contains(expression)
+								|| (this.decryptor != null && JuSecurityUtils.isEncryptedByTag(val.toString()))
+								|| (val instanceof String && this.referencesSensitiveValue((String) val, visitedKeys))) {
+							return true;
+						}
+						break;
+					}
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * Gets the value of the specified key like get(key, Object.class) does. Used if this chain is nested in
+		 * another chain.
+		 * <p>
+		 * Values that need neither decryption nor interpolation are returned as evaluated, without the overhead
+		 * of a full lookup. All other values are resolved as usual, so the nested chain behaves exactly the same.
+		 * @param key Key
+		 * @return Value or null if the key is undefined or its value empty
+		 */
+		private Object getNestedValue(String key) {
+			if (this.resolvedValues != null || this.metrics != null || !this.returnsPlainValues()) {
+				// Make sure we use the cache and record metrics
+				return this.get(key, Object.class);
+			}
+			
+			for (PropertyEvaluator evaluator : this.evaluators) {
 				Object val = evaluator.get(key);
 				if (val != null) {
 					String stringVal = val.toString();
-
-					PropertyInfoImpl pi = new PropertyInfoImpl(key, val, evaluator.toString());
-					
-					// Check if we should hide value
-					if (this.hiddenValueKeys.contains(key)) {
-						pi.setDisplayValue(ENCRYPTED_VALUE_LOGGING_STRING);
-						pi.setSensitive(true);
+					if (JuSecurityUtils.isEncryptedByTag(stringVal)
+							|| (this.interpolator != null && val instanceof String
+									&& !PropertyInterpolator.getExpressions(stringVal).isEmpty())) {
+						stringVal = this.interpolateInfo(this.createInfo(key, val, evaluator)).getValue();
 					}
-					
-					// Check if the value is encrypted
-					if (JuSecurityUtils.isEncryptedByTag(stringVal)) {
-						if (decryptor != null) {
-							pi.setValue(JuSecurityUtils.decryptTaggedValueIfNecessary(stringVal, decryptor));
-							pi.setDisplayValue(ENCRYPTED_VALUE_LOGGING_STRING);
-							pi.setSensitive(true);
-						} else {
-							logger.warn("Value seems to be encrypted, but no decrypted was set on the PropertyChain");
-						}
+					return StringUtils.isEmpty(stringVal) ? null : stringVal;
+				}
+			}
+			return null;
+		}
+		
+		private PropertyInfoImpl evaluate(String key) {
+			long start = this.metrics != null ? System.nanoTime() : 0;
+			for (int i = 0; i < this.evaluators.size(); i++) {
+				PropertyEvaluator evaluator = this.evaluators.get(i);
+				Object val = evaluator.get(key);
+				if (this.metrics != null) {
+					this.metrics.recordEvaluator(i, val != null);
+				}
+				if (val != null) {
+					if (this.metrics != null) {
+						this.metrics.recordEvaluate(System.nanoTime() - start);
 					}
 					
+					PropertyInfoImpl pi = this.createInfo(key, val, evaluator);
 					logger.debug("Evaluated property: {}", pi);
 					return pi;
 				}
 			}
+			if (this.metrics != null) {
+				this.metrics.recordEvaluate(System.nanoTime() - start);
+			}
 			return null;
 		}
+		
+		/**
+		 * Evaluates the specified keys, querying each evaluator once for all keys that are still undefined.
+		 * @param keys Keys
+		 * @return Map of PropertyInfos of all defined keys. The values are not interpolated yet
+		 */
+		private Map<String, PropertyInfoImpl> evaluateAll(List<String> keys) {
+			Map<String, PropertyInfoImpl> infos = new HashMap<>();
+			
+			long start = this.metrics != null ? System.nanoTime() : 0;
+			List<String> undefinedKeys = keys;
+			for (int i = 0; i < this.evaluators.size() && !undefinedKeys.isEmpty(); i++) {
+				PropertyEvaluator evaluator = this.evaluators.get(i);
+				List<String> stillUndefinedKeys = new ArrayList<>();
+				for (String key : undefinedKeys) {
+					Object val = evaluator.get(key);
+					if (this.metrics != null) {
+						this.metrics.recordEvaluator(i, val != null);
+					}
+					if (val != null) {
+						infos.put(key, this.createInfo(key, val, evaluator));
+					} else {
+						stillUndefinedKeys.add(key);
+					}
+				}
+				undefinedKeys = stillUndefinedKeys;
+			}
+			if (this.metrics != null) {
+				this.metrics.recordEvaluate(System.nanoTime() - start);
+			}
+			
+			return infos;
+		}
+		
+		private PropertyInfoImpl createInfo(String key, Object val, PropertyEvaluator evaluator) {
+			String stringVal = val.toString();
+			
+			PropertyInfoImpl pi = new PropertyInfoImpl(key, val, evaluator.toString());
+			
+			// Check if we should hide value
+			if (this.hiddenValueKeys.contains(key)) {
+				pi.setDisplayValue(ENCRYPTED_VALUE_LOGGING_STRING);
+				pi.setSensitive(true);
+			}
+			
+			// Check if the value is encrypted
+			if (JuSecurityUtils.isEncryptedByTag(stringVal)) {
+				if (decryptor != null) {
+					pi.setValue(this.decrypt(stringVal));
+					pi.setDisplayValue(ENCRYPTED_VALUE_LOGGING_STRING);
+					pi.setSensitive(true);
+				} else {
+					logger.warn("Value seems to be encrypted, but no decrypted was set on the PropertyChain");
+				}
+			}
+			
+			return pi;
+		}
 
+		private String decrypt(String encryptedValue) {
+			long start = this.metrics != null ? System.nanoTime() : 0;
+			try {
+				if (this.decryptedValues != null) {
+					return this.decryptedValues.get(encryptedValue);
+				} else {
+					return JuSecurityUtils.decryptTaggedValueIfNecessary(encryptedValue, decryptor);
+				}
+			} finally {
+				if (this.metrics != null) {
+					this.metrics.recordDecrypt(System.nanoTime() - start);
+				}
+			}
+		}
+		
 		@Override
 		public Set<String> listKeys() {
 			Set<String> keys = new LinkedHashSet<>();
@@ -650,7 +1779,112 @@ public class PropertyChainBuilder {
 		
 		@Override
 		public PropertyInfo getInfo(String key) {
-			return this.evaluteAndInterpolate(key);
+			return this.resolve(key);
+		}
+		
+		@Override
+		protected Map<String, PropertyInfo> getInfos(Collection<String> keys) {
+			Map<String, PropertyInfo> infos = new HashMap<>();
+			ConcurrentMap<String, PropertyInfoImpl> resolvedValues = this.resolvedValues;
+			
+			// Use cached values where available
+			List<String> pendingKeys = new ArrayList<>();
+			for (String key : new LinkedHashSet<>(keys)) {
+				if (this.metrics != null) {
+					this.metrics.recordLookup(key);
+				}
+				
+				PropertyInfoImpl pi = resolvedValues != null ? resolvedValues.get(key) : null;
+				if (pi == null) {
+					pendingKeys.add(key);
+				} else if (pi != UNDEFINED) {
+					infos.put(key, pi);
+				}
+			}
+			if (pendingKeys.isEmpty()) {
+				return infos;
+			}
+			
+			BulkValueSource bulkValueSource = new BulkValueSource(pendingKeys, this.evaluateAll(pendingKeys));
+			for (String key : pendingKeys) {
+				PropertyInfoImpl pi = bulkValueSource.resolve(key);
+				if (pi != null) {
+					infos.put(key, pi);
+				}
+				if (resolvedValues != null) {
+					resolvedValues.putIfAbsent(key, pi != null ? pi : UNDEFINED);
+				}
+			}
+			
+			logger.debug("Evaluated {} properties in bulk", pendingKeys.size());
+			return infos;
+		}
+		
+		@Override
+		protected String getUninterpolatedValue(String key) {
+			PropertyInfoImpl pi = this.evaluate(key);
+			return pi != null ? pi.getValue() : null;
+		}
+		
+		@Override
+		PropertyInterpolator createInterpolator(ValueSource chainValueSource) {
+			if (this.interpolator == null) {
+				return null;
+			} else if (this.environmentValueSource != null) {
+				return new PropertyInterpolator(this.environmentValueSource, chainValueSource);
+			} else {
+				return new PropertyInterpolator(chainValueSource);
+			}
+		}
+		
+		@Override
+		protected Collection<String> listIndexedKeys() {
+			Set<String> keys = new LinkedHashSet<>();
+			for (PropertyEvaluator evaluator : evaluators) {
+				if (!this.hasVolatileKeys(evaluator)) {
+					keys.addAll(evaluator.listKeys());
+				}
+			}
+			return keys;
+		}
+		
+		@Override
+		protected Collection<String> listVolatileKeys() {
+			Set<String> keys = new LinkedHashSet<>();
+			for (PropertyEvaluator evaluator : evaluators) {
+				if (this.hasVolatileKeys(evaluator)) {
+					keys.addAll(evaluator.listKeys());
+				}
+			}
+			return keys;
+		}
+		
+		/**
+		 * Checks whether the keys of an evaluator might change without the chain being notified, e.g. system
+		 * properties, nested chains or Properties objects provided by the caller. Keys of resources only change
+		 * when they are reloaded, which clears the key index.
+		 * <p>
+		 * If resolved values are cached, all keys are considered stable until clearCache is called.
+		 */
+		private boolean hasVolatileKeys(PropertyEvaluator evaluator) {
+			if (this.resolvedValues != null) {
+				return false;
+			} else if (evaluator instanceof ResourcePropertyEvaluator) {
+				return ((ResourcePropertyEvaluator<?>) evaluator).resourceUrl == null;
+			} else {
+				return !(evaluator instanceof MappedPropertiesEvaluator);
+			}
+		}
+		
+		@Override
+		public void clearCache() {
+			this.clearKeyIndex();
+			if (this.resolvedValues != null) {
+				this.resolvedValues = new ConcurrentHashMap<>();
+			}
+			if (this.decryptedValues != null) {
+				this.decryptedValues.clear();
+			}
 		}
 		
 		private class ChainValueSource extends AbstractValueSource {
@@ -664,6 +1898,86 @@ public class PropertyChainBuilder {
 				return pi != null ? pi.getValue() : null;
 			}
 		}
+		
+		/**
+		 * ValueSource used to interpolate the values of a bulk evaluation.
+		 * <p>
+		 * Keeps the properties evaluated during the bulk evaluation and interpolates them at most once,
+		 * so keys referencing each other share interpolation work.
+		 */
+		private class BulkValueSource extends AbstractValueSource {
+			private final Map<String, PropertyInfoImpl> infos;
+			private final Set<String> undefinedKeys = new HashSet<>();
+			private final Set<String> interpolatedKeys = new HashSet<>();
+			private final Set<String> interpolatingKeys = new HashSet<>();
+			private final PropertyInterpolator bulkInterpolator;
+			
+			/**
+			 * Creates a new BulkValueSource.
+			 * @param evaluatedKeys Keys that have been evaluated
+			 * @param infos PropertyInfos of the evaluated keys that are defined
+			 */
+			private BulkValueSource(List<String> evaluatedKeys, Map<String, PropertyInfoImpl> infos) {
+				super(false);
+				
+				this.infos = infos;
+				for (String key : evaluatedKeys) {
+					if (!infos.containsKey(key)) {
+						this.undefinedKeys.add(key);
+					}
+				}
+				this.bulkInterpolator = PropertyChainImpl.this.createInterpolator(this);
+			}
+			
+			/**
+			 * Resolves the specified key, i.e. evaluates it if it isn't known yet and interpolates its value.
+			 * <p>
+			 * Keys that are being interpolated yield their raw value, so the interpolator can detect cycles.
+			 * @param key Key
+			 * @return PropertyInfo or null if the key is undefined
+			 */
+			private PropertyInfoImpl resolve(String key) {
+				PropertyInfoImpl pi = this.infos.get(key);
+				if (pi == null) {
+					if (this.undefinedKeys.contains(key)) {
+						return null;
+					}
+					pi = PropertyChainImpl.this.evaluate(key);
+					if (pi == null) {
+						this.undefinedKeys.add(key);
+						return null;
+					}
+					this.infos.put(key, pi);
+				}
+				
+				if (this.bulkInterpolator != null
+						&& pi.rawValue instanceof String
+						&& !this.interpolatedKeys.contains(key)
+						&& this.interpolatingKeys.add(key)) {
+					long start = metrics != null ? System.nanoTime() : 0;
+					try {
+						pi.setValue(this.bulkInterpolator.interpolate(pi.getValue()));
+					} catch (InterpolationException ex) {
+						logger.warn("Couldn't interpolate " + pi.getValue(), ex);
+					} finally {
+						this.interpolatingKeys.remove(key);
+						this.interpolatedKeys.add(key);
+						if (metrics != null) {
+							metrics.recordInterpolate(System.nanoTime() - start);
+						}
+					}
+					PropertyChainImpl.this.hideSensitiveReferences(pi);
+				}
+				
+				return pi;
+			}
+			
+			@Override
+			public Object getValue(String expression) {
+				PropertyInfoImpl pi = this.resolve(expression);
+				return pi != null ? pi.getValue() : null;
+			}
+		}
 
 		@Override
 		public String interpolate(String expression) {
@@ -695,29 +2009,259 @@ public class PropertyChainBuilder {
 		}
 	}
 	
-	private static class PropertiesPropertyEvaluator implements PropertyEvaluator {
-		private final URL propertiesUrl;
-		private final Properties props;
+	/**
+	 * Base class for evaluators that load their contents from a resource.
+	 * <p>
+	 * The loaded contents are published using a volatile reference, so readers never block and
+	 * always see either the old or the new contents, but never partially loaded ones.
+	 * <p>
+	 * If reloading is enabled, the resource is polled for modifications in the background and
+	 * reloaded if its modification time changed. Listeners of the update notifier are informed
+	 * after new contents have been published. Only resources on the file system can be reloaded.
+	 * @author martin.meyer@inftec.ch
+	 *
+	 * @param <T> Type of the loaded contents
+	 */
+	private static abstract class ResourcePropertyEvaluator<T> implements PropertyEvaluator {
+		private static final Logger logger = LoggerFactory.getLogger(ResourcePropertyEvaluator.class);
+		
+		private static ScheduledExecutorService reloadExecutor;
+		
+		protected final URL resourceUrl;
+		
+		private final UpdateEventNotifier<PropertyEvaluator> updateNotifier = JuEventUtils.newUpdateEventNotifier();
+		private final AtomicBoolean reloadingEnabled = new AtomicBoolean(false);
+		
+		private volatile T contents;
+		private volatile long lastModified;
+		
+		/**
+		 * Creates an evaluator for a resource. Extending classes must call reload() once they are initialized,
+		 * unless the contents should be loaded on first access.
+		 * @param resourceUrl URL of the resource
+		 */
+		protected ResourcePropertyEvaluator(URL resourceUrl) {
+			this.resourceUrl = resourceUrl;
+		}
+		
+		/**
+		 * Creates an evaluator with fixed contents that won't ever be reloaded.
+		 * @param contents Contents
+		 */
+		protected ResourcePropertyEvaluator(T contents) {
+			this.resourceUrl = null;
+			this.contents = contents;
+		}
+		
+		/**
+		 * Creates an evaluator for a resource whose contents have already been loaded, e.g. from a snapshot.
+		 * @param resourceUrl URL of the resource
+		 * @param contents Current contents of the resource
+		 */
+		protected ResourcePropertyEvaluator(URL resourceUrl, T contents) {
+			this.resourceUrl = resourceUrl;
+			this.contents = contents;
+			this.lastModified = this.getLastModified();
+		}
+		
+		/**
+		 * Loads the contents from the resource.
+		 * @return Contents
+		 * @throws JuException If the contents cannot be loaded
+		 */
+		protected abstract T load() throws JuException;
+		
+		/**
+		 * Gets the current contents, loading them if they haven't been loaded yet.
+		 * @return Contents
+		 * @throws JuRuntimeException If the contents need to be loaded and cannot be loaded
+		 */
+		protected final T getContents() {
+			T c = this.contents;
+			if (c == null && this.resourceUrl != null) {
+				c = this.loadOnFirstAccess();
+			}
+			return c;
+		}
+		
+		private synchronized T loadOnFirstAccess() {
+			if (this.contents == null) {
+				try {
+					this.reload();
+					logger.debug("Loaded properties from {} on first access", this.resourceUrl);
+				} catch (Exception ex) {
+					throw new JuRuntimeException("Couldn't load properties from %s", ex, this.resourceUrl);
+				}
+			}
+			return this.contents;
+		}
+		
+		/**
+		 * (Re)loads the contents from the resource and publishes them.
+		 * @throws JuException If the contents cannot be loaded
+		 */
+		protected final void reload() throws JuException {
+			// Get the modification time before loading so we won't miss changes during the load
+			long modified = this.getLastModified();
+			this.contents = this.load();
+			this.lastModified = modified;
+		}
+		
+		private boolean isFileResource() {
+			return this.resourceUrl != null && "file".equals(this.resourceUrl.getProtocol());
+		}
+		
+		private long getLastModified() {
+			if (this.isFileResource()) {
+				try {
+					return Files.getLastModifiedTime(JuUrl.toPath(this.resourceUrl)).toMillis();
+				} catch (Exception ex) {
+					// File might have been deleted or is being replaced
+					return -1;
+				}
+			} else {
+				return 0;
+			}
+		}
+		
+		private void reloadIfModified() {
+			if (this.contents == null) {
+				// Not loaded yet, we'll get the current contents on first access
+				return;
+			}
+			
+			long modified = this.getLastModified();
+			if (modified != this.lastModified) {
+				try {
+					this.reload();
+					logger.info("Reloaded properties from {}", this.resourceUrl);
+				} catch (Exception ex) {
+					// Keep the old contents, we'll retry if the resource is modified again
+					this.lastModified = modified;
+					logger.warn("Couldn't reload properties from " + this.resourceUrl + ". Keeping previous values.", ex);
+					return;
+				}
+				
+				this.updateNotifier.fireUpdateEvent(this);
+			}
+		}
+		
+		/**
+		 * Gets the notifier that fires an update event when the contents were reloaded.
+		 * @return Update notifier
+		 */
+		final EventNotifier<UpdateListener<PropertyEvaluator>> getUpdateNotifier() {
+			return this.updateNotifier;
+		}
+		
+		/**
+		 * Enables background reloading of the resource if it hasn't been enabled yet.
+		 * <p>
+		 * Has no effect if the resource isn't located on the file system.
+		 * @param intervalMillis Poll interval in milliseconds
+		 */
+		final void enableReloading(long intervalMillis) {
+			if (!this.isFileResource() || !this.reloadingEnabled.compareAndSet(false, true)) {
+				return;
+			}
+			
+			ReloadTask task = new ReloadTask(this);
+			task.future = ResourcePropertyEvaluator.getReloadExecutor().scheduleWithFixedDelay(task
+					, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+			
+			logger.debug("Enabled reloading of {} every {} ms", this.resourceUrl, intervalMillis);
+		}
+		
+		private static synchronized ScheduledExecutorService getReloadExecutor() {
+			if (reloadExecutor == null) {
+				reloadExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "ju-util-PropertyReloader");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			}
+			return reloadExecutor;
+		}
+		
+		/**
+		 * Task polling a resource for modifications. Only holds a weak reference to the evaluator
+		 * and cancels itself once the evaluator has been garbage collected.
+		 */
+		private static class ReloadTask implements Runnable {
+			private final WeakReference<ResourcePropertyEvaluator<?>> evaluator;
+			private volatile ScheduledFuture<?> future;
+			
+			private ReloadTask(ResourcePropertyEvaluator<?> evaluator) {
+				this.evaluator = new WeakReference<ResourcePropertyEvaluator<?>>(evaluator);
+			}
+			
+			@Override
+			public void run() {
+				ResourcePropertyEvaluator<?> e = this.evaluator.get();
+				if (e == null) {
+					if (this.future != null) {
+						this.future.cancel(false);
+					}
+				} else {
+					try {
+						e.reloadIfModified();
+					} catch (Exception ex) {
+						// Make sure the task keeps on running
+						logger.error("Couldn't check resource for modifications: " + e.resourceUrl, ex);
+					}
+				}
+			}
+		}
+	}
+	
+	private static class PropertiesPropertyEvaluator extends ResourcePropertyEvaluator<Map<Object, Object>> {
+		/**
+		 * Custom type of the resource. Null for properties files.
+		 */
+		private final ChainFileResourceType resourceType;
 		
 		public PropertiesPropertyEvaluator(Properties props) {
-			this.propertiesUrl = null;
-			this.props = props;
+			super(props);
+			this.resourceType = null;
 		}
 		
 		public PropertiesPropertyEvaluator(URL propertiesUrl) throws JuException {
-			this.propertiesUrl = propertiesUrl;
-			this.props = new IOUtil().loadPropertiesFromUrl(propertiesUrl);
+			this(propertiesUrl, null, false);
+		}
+		
+		public PropertiesPropertyEvaluator(URL resourceUrl, ChainFileResourceType resourceType, boolean lazy) throws JuException {
+			super(resourceUrl);
+			this.resourceType = resourceType;
+			if (!lazy) {
+				this.reload();
+			}
+		}
+		
+		public PropertiesPropertyEvaluator(URL resourceUrl, ChainFileResourceType resourceType, Map<Object, Object> props) {
+			super(resourceUrl, props);
+			this.resourceType = resourceType;
+		}
+		
+		@Override
+		protected Map<Object, Object> load() throws JuException {
+			return this.resourceType != null
+					? this.resourceType.load(this.resourceUrl)
+					: PropertiesCache.load(this.resourceUrl);
 		}
 		
 		@Override
 		public Object get(String key) {
-			return this.props == null ? null : this.props.get(key);
+			Map<Object, Object> props = this.getContents();
+			return props == null ? null : props.get(key);
 		};
 		
 		@Override
 		public String toString() {
-			if (this.propertiesUrl != null) {
-				return JuStringUtils.toString(this, "url", this.propertiesUrl);
+			if (this.resourceUrl != null) {
+				return JuStringUtils.toString(this, "url", this.resourceUrl);
 			} else {
 				return JuStringUtils.toString(this);
 			}
@@ -725,27 +2269,62 @@ public class PropertyChainBuilder {
 		
 		@Override
 		public Set<String> listKeys() {
-			return JuCollectionUtils.getKeyStrings(props);
+			return JuCollectionUtils.getKeyStrings(this.getContents());
 		}
 	}
 	
-	private static class CsvPropertyEvaluator implements PropertyEvaluator {
-		private final URL resourceUrl;
+	/**
+	 * Evaluator for the profile column of a CSV. Holds the resolved column of the profile, so lookups don't
+	 * need to resolve the profile and default column.
+	 */
+	private static class CsvPropertyEvaluator extends ResourcePropertyEvaluator<CsvTableLookup.Column> {
 		private final String profile;
-		private final CsvTableLookup csvTable;
+		private final String defaultColumn;
 		
 		public CsvPropertyEvaluator(URL resourceUrl, String profile, String defaultColumn) {
-			this.resourceUrl = resourceUrl;
+			this(resourceUrl, profile, defaultColumn, false);
+		}
+		
+		public CsvPropertyEvaluator(URL resourceUrl, String profile, String defaultColumn, boolean lazy) {
+			super(resourceUrl);
+			this.profile = profile;
+			this.defaultColumn = defaultColumn;
+			
+			if (!lazy) {
+				try {
+					this.reload();
+				} catch (JuException ex) {
+					throw new JuRuntimeException("Couldn't load CSV from url " + resourceUrl, ex);
+				}
+			}
+		}
+		
+		public CsvPropertyEvaluator(URL resourceUrl, String profile, String defaultColumn, CsvTableLookup csvTable) {
+			super(resourceUrl, csvTable.getColumn(profile));
 			this.profile = profile;
-			this.csvTable = CsvTableLookup.build()
-					.from(resourceUrl)
-					.defaultColumn(defaultColumn)
+			this.defaultColumn = defaultColumn;
+		}
+		
+		@Override
+		protected CsvTableLookup.Column load() {
+			CsvTableLookup csvTable = CsvTableLookup.build()
+					.from(this.resourceUrl)
+					.defaultColumn(this.defaultColumn)
 					.create();
+			return csvTable.getColumn(this.profile);
+		}
+		
+		/**
+		 * Gets the CSV table containing the profile column.
+		 * @return CsvTableLookup
+		 */
+		public CsvTableLookup getTable() {
+			return this.getContents().getTable();
 		}
 		
 		@Override
 		public Object get(String key) {
-			return this.csvTable.get(key, this.profile);
+			return this.getContents().get(key);
 		}
 		
 		@Override
@@ -758,7 +2337,7 @@ public class PropertyChainBuilder {
 		@Override
 		public Set<String> listKeys() {
 			Set<String> keys = new LinkedHashSet<String>();
-			keys.addAll(this.csvTable.getKeys());
+			keys.addAll(this.getTable().getKeys());
 			
 			return keys;
 		}
@@ -773,7 +2352,12 @@ public class PropertyChainBuilder {
 		
 		@Override
 		public Object get(String key) {
-			return this.nestedChain.get(key, Object.class);
+			if (this.nestedChain instanceof PropertyChainImpl) {
+				// Evaluate the nested chain directly rather than through a full lookup
+				return ((PropertyChainImpl) this.nestedChain).getNestedValue(key);
+			} else {
+				return this.nestedChain.get(key, Object.class);
+			}
 		}
 
 		@Override
@@ -788,7 +2372,7 @@ public class PropertyChainBuilder {
 		}
 	}
 	
-	private static class PropertyInfoImpl implements PropertyInfo {
+	private static class PropertyInfoImpl extends AbstractPropertyChain.ConvertedValueHolder {
 		private final String key;
 		private final Object rawValue;
 		private final String evaluatorInfo;
@@ -0,0 +1,346 @@
+package ch.inftec.ju.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a PropertyChain resolved by chain files.
+ * <p>
+ * Contains the chain file entries along with the contents of the property and CSV resources they
+ * referenced, so an unchanged configuration can be restored using one sequential read instead of
+ * resource lookups and parsing.
+ * <p>
+ * Each resource is stored with a fingerprint that can be validated cheaply: Resources on the file system
+ * (or within JARs on the file system) are fingerprinted by the modification time and size of the file,
+ * all other resources by a checksum of their contents.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class PropertyChainSnapshot {
+	private static final int MAGIC = 0x4A555043; // JUPC
+	private static final int VERSION = 1;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Names of the chain files.
+	 */
+	final List<String> names = new ArrayList<>();
+	
+	/**
+	 * Resource folders of the PropertyChainBuilder.
+	 */
+	final List<String> resourceFolders = new ArrayList<>();
+	
+	/**
+	 * Fingerprints of the chain files by URL.
+	 */
+	final Map<String, String> chainFiles = new LinkedHashMap<>();
+	
+	/**
+	 * Chain file entries, in the order they have been added to the chain.
+	 */
+	final List<Entry> entries = new ArrayList<>();
+	
+	/**
+	 * Snapshot of a chain file entry and the resource it referenced.
+	 */
+	static final class Entry {
+		int priorization;
+		
+		/**
+		 * Line parts as specified in the chain file, i.e. before placeholder substitution.
+		 */
+		String[] lineParts;
+		
+		/**
+		 * Line parts after placeholder substitution.
+		 */
+		String[] resolvedLineParts;
+		
+		/**
+		 * Profile name of CSV entries.
+		 */
+		String profileName;
+		
+		/**
+		 * URL of the resource. Null if none was found (for optional resources) or the entry doesn't have one.
+		 */
+		String url;
+		String fingerprint;
+		
+		/**
+		 * Contents of properties resources.
+		 */
+		Properties properties;
+		
+		/**
+		 * Contents of CSV resources.
+		 */
+		List<String[]> rows;
+	}
+	
+	/**
+	 * Reads a snapshot from the specified file.
+	 * @param file Snapshot file
+	 * @return Snapshot or null if the file doesn't exist or isn't a snapshot of this version
+	 * @throws IOException If the snapshot cannot be read
+	 */
+	static PropertyChainSnapshot read(Path file) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			
+			PropertyChainSnapshot snapshot = new PropertyChainSnapshot();
+			snapshot.names.addAll(readList(in));
+			snapshot.resourceFolders.addAll(readList(in));
+			
+			int chainFileCount = in.readInt();
+			for (int i = 0; i < chainFileCount; i++) {
+				snapshot.chainFiles.put(readString(in), readString(in));
+			}
+			
+			int entryCount = in.readInt();
+			for (int i = 0; i < entryCount; i++) {
+				Entry entry = new Entry();
+				entry.priorization = in.readInt();
+				entry.lineParts = readArray(in);
+				entry.resolvedLineParts = readArray(in);
+				entry.profileName = readString(in);
+				entry.url = readString(in);
+				entry.fingerprint = readString(in);
+				
+				if (in.readBoolean()) {
+					entry.properties = new Properties();
+					int propertyCount = in.readInt();
+					for (int j = 0; j < propertyCount; j++) {
+						entry.properties.setProperty(readString(in), readString(in));
+					}
+				}
+				
+				if (in.readBoolean()) {
+					entry.rows = new ArrayList<>();
+					int rowCount = in.readInt();
+					for (int j = 0; j < rowCount; j++) {
+						entry.rows.add(readArray(in));
+					}
+				}
+				
+				snapshot.entries.add(entry);
+			}
+			
+			return snapshot;
+		}
+	}
+	
+	/**
+	 * Writes the snapshot to the specified file.
+	 * <p>
+	 * The snapshot is written to a temporary file first that is then moved to the target file, so
+	 * readers will never see partially written snapshots.
+	 * @param file Snapshot file
+	 * @throws IOException If the snapshot cannot be written
+	 */
+	void write(Path file) throws IOException {
+		Path folder = file.toAbsolutePath().getParent();
+		Files.createDirectories(folder);
+		
+		Path tempFile = Files.createTempFile(folder, file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				
+				writeList(out, this.names);
+				writeList(out, this.resourceFolders);
+				
+				out.writeInt(this.chainFiles.size());
+				for (Map.Entry<String, String> chainFile : this.chainFiles.entrySet()) {
+					writeString(out, chainFile.getKey());
+					writeString(out, chainFile.getValue());
+				}
+				
+				out.writeInt(this.entries.size());
+				for (Entry entry : this.entries) {
+					out.writeInt(entry.priorization);
+					writeArray(out, entry.lineParts);
+					writeArray(out, entry.resolvedLineParts);
+					writeString(out, entry.profileName);
+					writeString(out, entry.url);
+					writeString(out, entry.fingerprint);
+					
+					out.writeBoolean(entry.properties != null);
+					if (entry.properties != null) {
+						// Only String keys and values are stored, including defaults, so count exactly those
+						Set<String> keys = entry.properties.stringPropertyNames();
+						out.writeInt(keys.size());
+						for (String key : keys) {
+							writeString(out, key);
+							writeString(out, entry.properties.getProperty(key));
+						}
+					}
+					
+					out.writeBoolean(entry.rows != null);
+					if (entry.rows != null) {
+						out.writeInt(entry.rows.size());
+						for (String[] row : entry.rows) {
+							writeArray(out, row);
+						}
+					}
+				}
+			}
+			
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	/**
+	 * Computes the fingerprint of the specified resource.
+	 * @param url Resource URL
+	 * @return Fingerprint. If the resource doesn't exist, a fingerprint representing a missing resource is returned
+	 */
+	static String fingerprint(URL url) {
+		try {
+			Path file = PropertyChainSnapshot.getFile(url);
+			if (file != null) {
+				if (!Files.isRegularFile(file)) {
+					return "missing";
+				}
+				return PropertyChainSnapshot.getModificationStamp(file);
+			} else {
+				CRC32 crc = new CRC32();
+				try (InputStream in = url.openStream()) {
+					byte[] buffer = new byte[8192];
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						crc.update(buffer, 0, read);
+					}
+				}
+				return "crc:" + crc.getValue();
+			}
+		} catch (Exception ex) {
+			return "missing";
+		}
+	}
+	
+	/**
+	 * Gets a stamp of the modification time and size of the file containing the specified resource.
+	 * @param url Resource URL
+	 * @return Stamp or null if the resource isn't located on the file system or doesn't exist
+	 */
+	static String getModificationStamp(URL url) {
+		try {
+			Path file = PropertyChainSnapshot.getFile(url);
+			if (file != null && Files.isRegularFile(file)) {
+				return PropertyChainSnapshot.getModificationStamp(file);
+			}
+		} catch (Exception ex) {
+			// Handled like resources that aren't located on the file system
+		}
+		return null;
+	}
+	
+	private static String getModificationStamp(Path file) throws IOException {
+		return String.format("mtime:%d,size:%d", Files.getLastModifiedTime(file).toMillis(), Files.size(file));
+	}
+	
+	/**
+	 * Gets the file containing the resource, i.e. the file itself or the JAR containing it.
+	 * @return Path or null if the resource isn't located on the file system
+	 */
+	private static Path getFile(URL url) throws Exception {
+		if ("file".equals(url.getProtocol())) {
+			return JuUrl.toPath(url);
+		} else if ("jar".equals(url.getProtocol())) {
+			String path = url.getPath();
+			int separatorIndex = path.indexOf("!/");
+			if (separatorIndex > 0) {
+				URL jarUrl = new URL(path.substring(0, separatorIndex));
+				if ("file".equals(jarUrl.getProtocol())) {
+					return JuUrl.toPath(jarUrl);
+				}
+			}
+		}
+		return null;
+	}
+	
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		} else {
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return new String(bytes, UTF_8);
+		}
+	}
+	
+	private static void writeArray(DataOutputStream out, String[] array) throws IOException {
+		if (array == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(array.length);
+			for (String s : array) {
+				writeString(out, s);
+			}
+		}
+	}
+	
+	private static String[] readArray(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		} else {
+			String[] array = new String[length];
+			for (int i = 0; i < length; i++) {
+				array[i] = readString(in);
+			}
+			return array;
+		}
+	}
+	
+	private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+		writeArray(out, list.toArray(new String[list.size()]));
+	}
+	
+	private static List<String> readList(DataInputStream in) throws IOException {
+		List<String> list = new ArrayList<>();
+		for (String s : readArray(in)) {
+			list.add(s);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,212 @@
+package ch.inftec.ju.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.interpolation.InterpolationException;
+import org.codehaus.plexus.interpolation.ValueSource;
+
+import ch.inftec.ju.util.collection.Caches;
+import ch.inftec.ju.util.collection.ClearableCache;
+import ch.inftec.ju.util.function.Function;
+
+/**
+ * Interpolator that replaces placeholders like ${expression} with values looked up from
+ * a list of ValueSources.
+ * <p>
+ * Expressions are resolved using the first ValueSource returning a non-null value. Resolved values
+ * are interpolated recursively. Placeholders that cannot be resolved are left as is. If a recursive
+ * expression cycle is detected, an InterpolationException is thrown.
+ * <p>
+ * Input Strings are parsed once into templates of literal segments and expressions. Templates are
+ * cached process wide, so subsequent interpolations of the same String just need to concatenate the
+ * segments and resolved values. The cache is bounded, templates used least recently are evicted.
+ * Strings without placeholders are returned without any parsing at all.
+ * <p>
+ * This class is thread safe as long as the ValueSources are.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class PropertyInterpolator {
+	private static final String PLACEHOLDER_START = "${";
+	private static final char PLACEHOLDER_END = '}';
+	
+	/**
+	 * Maximum number of templates we'll cache. If exceeded, the templates used least recently are evicted.
+	 */
+	private static final int MAX_CACHED_TEMPLATES = 10000;
+	
+	/**
+	 * Number of segments of the template cache. Templates are distributed by hash code, so concurrent
+	 * interpolations rarely contend for the same segment lock.
+	 */
+	private static final int TEMPLATE_CACHE_SEGMENTS = 16;
+	
+	private static final List<ClearableCache<String, Template>> templates = PropertyInterpolator.createTemplateCache();
+	
+	private final ValueSource[] valueSources;
+	
+	/**
+	 * Creates a new interpolator.
+	 * @param valueSources ValueSources to look up expressions, in the order they should be queried
+	 */
+	PropertyInterpolator(ValueSource... valueSources) {
+		this.valueSources = valueSources.clone();
+	}
+	
+	/**
+	 * Interpolates the specified input.
+	 * @param input Input String
+	 * @return Interpolated String
+	 * @throws InterpolationException If a recursive expression cycle is detected
+	 */
+	String interpolate(String input) throws InterpolationException {
+		return this.interpolate(input, null);
+	}
+	
+	private String interpolate(String input, List<String> resolvingExpressions) throws InterpolationException {
+		if (input == null || input.indexOf(PLACEHOLDER_START) < 0) {
+			return input;
+		}
+		
+		Template template = PropertyInterpolator.getTemplate(input);
+		if (template.expressions.length == 0) {
+			return input;
+		}
+		
+		List<String> resolving = resolvingExpressions != null
+				? resolvingExpressions
+				: new ArrayList<String>();
+		
+		StringBuilder sb = new StringBuilder(input.length() + 16);
+		for (int i = 0; i < template.expressions.length; i++) {
+			sb.append(template.literals[i]);
+			
+			String expression = template.expressions[i];
+			if (resolving.contains(expression)) {
+				throw new InterpolationException(String.format(
+						"Detected recursive expression cycle: %s -> %s", resolving, expression), expression);
+			}
+			
+			Object value = this.lookup(expression);
+			if (value == null) {
+				// Leave unresolved placeholders as they are
+				sb.append(PLACEHOLDER_START).append(expression).append(PLACEHOLDER_END);
+			} else {
+				resolving.add(expression);
+				sb.append(this.interpolate(value.toString(), resolving));
+				resolving.remove(resolving.size() - 1);
+			}
+		}
+		sb.append(template.literals[template.expressions.length]);
+		
+		return sb.toString();
+	}
+	
+	private Object lookup(String expression) {
+		for (ValueSource valueSource : this.valueSources) {
+			Object value = valueSource.getValue(expression);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the expressions of the placeholders contained in the specified input.
+	 * @param input Input String
+	 * @return Unmodifiable list of expressions, in the order they occur in the input
+	 */
+	static List<String> getExpressions(String input) {
+		if (input == null || input.indexOf(PLACEHOLDER_START) < 0) {
+			return Collections.emptyList();
+		}
+		
+		return Collections.unmodifiableList(Arrays.asList(PropertyInterpolator.getTemplate(input).expressions));
+	}
+	
+	private static Template getTemplate(String input) {
+		return templates.get((input.hashCode() & Integer.MAX_VALUE) % TEMPLATE_CACHE_SEGMENTS).get(input);
+	}
+	
+	/**
+	 * Removes all cached templates.
+	 */
+	static void clearTemplates() {
+		for (ClearableCache<String, Template> segment : templates) {
+			segment.clear();
+		}
+	}
+	
+	/**
+	 * Gets the number of cached templates.
+	 * @return Number of cached templates
+	 */
+	static long getCachedTemplateCount() {
+		long count = 0;
+		for (ClearableCache<String, Template> segment : templates) {
+			count += segment.size();
+		}
+		return count;
+	}
+	
+	private static List<ClearableCache<String, Template>> createTemplateCache() {
+		List<ClearableCache<String, Template>> segments = new ArrayList<>();
+		for (int i = 0; i < TEMPLATE_CACHE_SEGMENTS; i++) {
+			segments.add(Caches.simpleBoundedCache(MAX_CACHED_TEMPLATES / TEMPLATE_CACHE_SEGMENTS, new Function<String, Template>() {
+				@Override
+				public Template apply(String input) {
+					return Template.compile(input);
+				}
+			}));
+		}
+		return Collections.unmodifiableList(segments);
+	}
+	
+	/**
+	 * Compiled representation of an input String.
+	 * <p>
+	 * The input is split into alternating literal segments and expressions, i.e.
+	 * literals[0] expressions[0] literals[1] ... expressions[n-1] literals[n].
+	 */
+	private static final class Template {
+		private final String[] literals;
+		private final String[] expressions;
+		
+		private Template(List<String> literals, List<String> expressions) {
+			this.literals = literals.toArray(new String[literals.size()]);
+			this.expressions = expressions.toArray(new String[expressions.size()]);
+		}
+		
+		private static Template compile(String input) {
+			List<String> literals = new ArrayList<>();
+			List<String> expressions = new ArrayList<>();
+			
+			int literalStart = 0;
+			int searchStart = 0;
+			int start;
+			while ((start = input.indexOf(PLACEHOLDER_START, searchStart)) >= 0) {
+				int end = input.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+				if (end < 0) {
+					// No more complete placeholders
+					break;
+				} else if (end == start + PLACEHOLDER_START.length()) {
+					// Empty placeholder ${}. Not an expression, so keep on searching
+					searchStart = start + 1;
+				} else {
+					literals.add(input.substring(literalStart, start));
+					expressions.add(input.substring(start + PLACEHOLDER_START.length(), end));
+					
+					literalStart = end + 1;
+					searchStart = end + 1;
+				}
+			}
+			literals.add(input.substring(literalStart));
+			
+			return new Template(literals, expressions);
+		}
+	}
+}
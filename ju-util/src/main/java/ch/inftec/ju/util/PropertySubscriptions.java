@@ -0,0 +1,332 @@
+package ch.inftec.ju.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.inftec.ju.util.PropertyChain.PropertyInfo;
+import ch.inftec.ju.util.event.JuEventObject;
+import ch.inftec.ju.util.event.JuEventUtils;
+import ch.inftec.ju.util.event.JuEventUtils.UpdateEventNotifier;
+import ch.inftec.ju.util.event.UpdateListener;
+
+/**
+ * Subscriptions to changes of the keys of a PropertyChain.
+ * <p>
+ * Keeps the effective values of all subscribed keys along with a dependency graph of the keys they
+ * reference through placeholders like ${otherKey}. Whenever the chain fires an update event, the
+ * uninterpolated values of all keys in the graph are evaluated again. Only subscribed keys that
+ * depend on a changed key are resolved (i.e. interpolated) again and compared to their previous value.
+ * <p>
+ * Changes are only detected when the chain fires an update event, i.e. when its evaluators are reloaded or
+ * the chain an overlay is based on fires. Other changes of the sources (like a modified system property or a
+ * file of a chain without reloading) are not detected.
+ * <p>
+ * This class is thread safe. Listeners are notified outside of any lock.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+final class PropertySubscriptions {
+	private final Logger logger = LoggerFactory.getLogger(PropertySubscriptions.class);
+	
+	private final AbstractPropertyChain chain;
+	
+	/**
+	 * Notifiers by subscribed key or prefix.
+	 */
+	private final Map<String, UpdateEventNotifier<PropertyInfo>> notifiers = new LinkedHashMap<>();
+	
+	/**
+	 * Effective values of the subscribed keys. Undefined keys have a null value.
+	 */
+	private final Map<String, String> values = new HashMap<>();
+	
+	/**
+	 * Uninterpolated values of the subscribed keys and all keys they reference, directly or indirectly.
+	 */
+	private final Map<String, String> sourceValues = new HashMap<>();
+	
+	/**
+	 * Keys that are referenced directly by the value of a key, i.e. the edges of the dependency graph.
+	 */
+	private final Map<String, List<String>> references = new HashMap<>();
+	
+	/**
+	 * Listener for updates of the chain. The chain references its notifier and this instance, so a strong
+	 * reference won't keep anything alive longer than the chain.
+	 */
+	private final UpdateListener<PropertyChain> updateListener = new UpdateListener<PropertyChain>() {
+		@Override
+		public void updated(JuEventObject<PropertyChain> event) {
+			PropertySubscriptions.this.checkForChanges();
+		}
+	};
+	
+	PropertySubscriptions(AbstractPropertyChain chain) {
+		this.chain = chain;
+		this.chain.getUpdateNotifier().addListener(this.updateListener);
+	}
+	
+	/**
+	 * Subscribes a listener to changes of the specified key or prefix.
+	 * @param keyOrPrefix Key or prefix
+	 * @param listener Listener
+	 */
+	synchronized void subscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener) {
+		AssertUtil.assertNotNull("Key or prefix must not be null", keyOrPrefix);
+		
+		UpdateEventNotifier<PropertyInfo> notifier = this.notifiers.get(keyOrPrefix);
+		if (notifier == null) {
+			notifier = JuEventUtils.newUpdateEventNotifier();
+			this.notifiers.put(keyOrPrefix, notifier);
+		}
+		notifier.addListener(listener);
+		
+		// Remember the current state of keys we don't know yet
+		for (String key : this.getKeys(keyOrPrefix)) {
+			if (!this.values.containsKey(key)) {
+				this.values.put(key, this.resolve(key));
+				this.track(key, Collections.<String, String>emptyMap());
+			}
+		}
+	}
+	
+	/**
+	 * Removes a subscribed listener.
+	 * @param keyOrPrefix Key or prefix the listener was subscribed to
+	 * @param listener Listener
+	 */
+	synchronized void unsubscribe(String keyOrPrefix, UpdateListener<PropertyInfo> listener) {
+		UpdateEventNotifier<PropertyInfo> notifier = this.notifiers.get(keyOrPrefix);
+		if (notifier != null) {
+			notifier.removeListener(listener);
+		}
+	}
+	
+	/**
+	 * Checks all subscribed keys for changes and notifies the listeners of changed keys.
+	 */
+	void checkForChanges() {
+		List<PendingEvent> events = new ArrayList<>();
+		
+		synchronized (this) {
+			// Evaluate the uninterpolated values of all keys in the graph
+			Map<String, String> currentSourceValues = new HashMap<>();
+			Set<String> changedKeys = new HashSet<>();
+			for (Map.Entry<String, String> entry : this.sourceValues.entrySet()) {
+				String sourceValue = this.chain.getUninterpolatedValue(entry.getKey());
+				currentSourceValues.put(entry.getKey(), sourceValue);
+				if (!Objects.equals(sourceValue, entry.getValue())) {
+					changedKeys.add(entry.getKey());
+				}
+			}
+			
+			// Get the currently subscribed keys (prefixes might match new keys)
+			Set<String> subscribedKeys = new HashSet<>();
+			for (String keyOrPrefix : this.notifiers.keySet()) {
+				subscribedKeys.addAll(this.getKeys(keyOrPrefix));
+			}
+			
+			// Find keys whose value might have changed, using the graph of the previous values
+			List<String> affectedKeys = new ArrayList<>();
+			for (String key : subscribedKeys) {
+				if (!this.values.containsKey(key) || this.dependsOn(key, changedKeys)) {
+					affectedKeys.add(key);
+				}
+			}
+			for (String key : this.values.keySet()) {
+				if (!subscribedKeys.contains(key)) {
+					// Key matched a prefix before and is gone now
+					affectedKeys.add(key);
+				}
+			}
+			
+			// Update the graph
+			for (String changedKey : changedKeys) {
+				this.sourceValues.remove(changedKey);
+				this.references.remove(changedKey);
+			}
+			for (String key : subscribedKeys) {
+				this.track(key, currentSourceValues);
+			}
+			this.removeUnreachableKeys(subscribedKeys);
+			
+			// Resolve affected keys and compare them with their previous values
+			for (String key : affectedKeys) {
+				String oldValue = this.values.get(key);
+				
+				PropertyInfo pi = subscribedKeys.contains(key) ? this.chain.getInfo(key) : null;
+				String newValue = pi != null ? pi.getValue() : null;
+				
+				if (subscribedKeys.contains(key)) {
+					this.values.put(key, newValue);
+				} else {
+					this.values.remove(key);
+				}
+				
+				if (!Objects.equals(oldValue, newValue)) {
+					PropertyInfo eventInfo = newValue != null ? pi : new UndefinedPropertyInfo(key);
+					for (Map.Entry<String, UpdateEventNotifier<PropertyInfo>> notifier : this.notifiers.entrySet()) {
+						if (PropertySubscriptions.matches(notifier.getKey(), key)) {
+							events.add(new PendingEvent(notifier.getValue(), eventInfo));
+						}
+					}
+				}
+			}
+		}
+		
+		for (PendingEvent event : events) {
+			logger.debug("Subscribed property changed: {}", event.info);
+			event.notifier.fireUpdateEvent(event.info);
+		}
+	}
+	
+	private static boolean isPrefix(String keyOrPrefix) {
+		return keyOrPrefix.isEmpty() || keyOrPrefix.endsWith(".");
+	}
+	
+	private static boolean matches(String keyOrPrefix, String key) {
+		return PropertySubscriptions.isPrefix(keyOrPrefix)
+				? key.startsWith(keyOrPrefix)
+				: key.equals(keyOrPrefix);
+	}
+	
+	private List<String> getKeys(String keyOrPrefix) {
+		return PropertySubscriptions.isPrefix(keyOrPrefix)
+				? this.chain.listKeysByPrefix(keyOrPrefix)
+				: Collections.singletonList(keyOrPrefix);
+	}
+	
+	private String resolve(String key) {
+		PropertyInfo pi = this.chain.getInfo(key);
+		return pi != null ? pi.getValue() : null;
+	}
+	
+	/**
+	 * Adds the key and all keys it references to the dependency graph, unless they are already contained.
+	 * @param key Key
+	 * @param knownSourceValues Uninterpolated values that have already been evaluated
+	 */
+	private void track(String key, Map<String, String> knownSourceValues) {
+		if (this.sourceValues.containsKey(key)) return;
+		
+		String sourceValue = knownSourceValues.containsKey(key)
+				? knownSourceValues.get(key)
+				: this.chain.getUninterpolatedValue(key);
+		List<String> referencedKeys = PropertyInterpolator.getExpressions(sourceValue);
+		
+		this.sourceValues.put(key, sourceValue);
+		this.references.put(key, referencedKeys);
+		
+		for (String referencedKey : referencedKeys) {
+			this.track(referencedKey, knownSourceValues);
+		}
+	}
+	
+	/**
+	 * Checks whether the key itself or any key it references (directly or indirectly) is contained in
+	 * the specified keys.
+	 */
+	private boolean dependsOn(String key, Set<String> keys) {
+		Set<String> visitedKeys = new HashSet<>();
+		LinkedList<String> pendingKeys = new LinkedList<>();
+		pendingKeys.add(key);
+		
+		while (!pendingKeys.isEmpty()) {
+			String currentKey = pendingKeys.removeFirst();
+			if (!visitedKeys.add(currentKey)) continue;
+			if (keys.contains(currentKey)) return true;
+			
+			List<String> referencedKeys = this.references.get(currentKey);
+			if (referencedKeys != null) {
+				pendingKeys.addAll(referencedKeys);
+			}
+		}
+		
+		return false;
+	}
+	
+	private void removeUnreachableKeys(Set<String> subscribedKeys) {
+		Set<String> reachableKeys = new HashSet<>();
+		LinkedList<String> pendingKeys = new LinkedList<>(subscribedKeys);
+		
+		while (!pendingKeys.isEmpty()) {
+			String key = pendingKeys.removeFirst();
+			if (reachableKeys.add(key)) {
+				List<String> referencedKeys = this.references.get(key);
+				if (referencedKeys != null) {
+					pendingKeys.addAll(referencedKeys);
+				}
+			}
+		}
+		
+		this.sourceValues.keySet().retainAll(reachableKeys);
+		this.references.keySet().retainAll(reachableKeys);
+	}
+	
+	private static final class PendingEvent {
+		private final UpdateEventNotifier<PropertyInfo> notifier;
+		private final PropertyInfo info;
+		
+		private PendingEvent(UpdateEventNotifier<PropertyInfo> notifier, PropertyInfo info) {
+			this.notifier = notifier;
+			this.info = info;
+		}
+	}
+	
+	/**
+	 * PropertyInfo of a key that became undefined.
+	 */
+	private static final class UndefinedPropertyInfo implements PropertyInfo {
+		private final String key;
+		
+		private UndefinedPropertyInfo(String key) {
+			this.key = key;
+		}
+		
+		@Override
+		public String getKey() {
+			return this.key;
+		}
+		
+		@Override
+		public String getValue() {
+			return null;
+		}
+		
+		@Override
+		public String getDisplayValue() {
+			return null;
+		}
+		
+		@Override
+		public String getRawValue() {
+			return null;
+		}
+		
+		@Override
+		public boolean isSensitive() {
+			return false;
+		}
+		
+		@Override
+		public String getEvaluatorInfo() {
+			return null;
+		}
+		
+		@Override
+		public String toString() {
+			return JuStringUtils.toString(this, "key", this.key);
+		}
+	}
+}
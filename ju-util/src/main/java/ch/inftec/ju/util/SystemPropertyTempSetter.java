@@ -6,8 +6,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.codehaus.plexus.interpolation.EnvarBasedValueSource;
-
 /**
  * Helper class to temporarly set system properties that can will be set
  * to their original values on (auto) close.
@@ -91,19 +89,11 @@ public class SystemPropertyTempSetter implements AutoCloseable, Serializable {
 		
 		maps.put(key, value);
 		
-		this.resetEnvarBasedValueSourceCache();
+		// The environment is snapshotted for interpolation, so we need to refresh it
+		EnvironmentValueSource.refresh();
 		this.clearJuChainIfNecessary();
 	}
 	
-	/**
-	 * Hack for UnitTests that use EnvarBasedValueSource. This class caches values by default,
-	 * so we need to clear that internal cache when Using SystemPropertyTempSetter...
-	 */
-	private void resetEnvarBasedValueSourceCache() {
-		ReflectUtils.setStaticField(EnvarBasedValueSource.class, "envarsCaseSensitive", null, true);
-		ReflectUtils.setStaticField(EnvarBasedValueSource.class, "envarsCaseInsensitive", null, true);
-	}
-	
 	@SuppressWarnings("unchecked")
 	private EnvMaps getEnvMaps() {
 		EnvMaps envMaps = new EnvMaps();
@@ -182,6 +172,7 @@ public class SystemPropertyTempSetter implements AutoCloseable, Serializable {
 		// Reset Env
 		if (this.origEnvs != null) {
 			this.getEnvMaps().reset(this.origEnvs);
+			EnvironmentValueSource.refresh();
 		}
 		
 		// Clear JU property chain if we had changes
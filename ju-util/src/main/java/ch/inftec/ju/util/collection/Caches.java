@@ -1,5 +1,7 @@
 package ch.inftec.ju.util.collection;
 
+import java.util.concurrent.TimeUnit;
+
 import ch.inftec.ju.util.function.Function;
 
 /**
@@ -16,7 +18,25 @@ public class Caches {
 	 * @param <V> Value type
 	 * @return Cache implementation
 	 */
-	public static <K, V> Cache<K, V> simpleBoundedCache(int maxSize, Function<K, V> unknownValueGetter) {
+	public static <K, V> ClearableCache<K, V> simpleBoundedCache(int maxSize, Function<K, V> unknownValueGetter) {
 		return new SimpleCache<>(maxSize, unknownValueGetter);
 	}
+
+	/**
+	 * Returns a simple, thread safe Cache implementation with a maximum size, an expiry time and a getter function to create values
+	 * for keys not available in the cache yet / anymore.
+	 * <p>
+	 * Values expire after the specified time since they have been added to the cache. Expired values will be recreated using the
+	 * getter function on the next access.
+	 * @param maxSize Maximum size of the cache. If reached, the longest unused value will be removed
+	 * @param expiryTime Time after which a value expires. If 0 or less, values never expire
+	 * @param expiryTimeUnit Unit of the expiry time
+	 * @param unknownValueGetter Function to create values for keys not stored in the Cache
+	 * @param <K> Key type
+	 * @param <V> Value type
+	 * @return Cache implementation
+	 */
+	public static <K, V> ClearableCache<K, V> simpleBoundedCache(int maxSize, long expiryTime, TimeUnit expiryTimeUnit, Function<K, V> unknownValueGetter) {
+		return new SimpleCache<>(maxSize, expiryTimeUnit.toMillis(expiryTime), unknownValueGetter);
+	}
 }
@@ -0,0 +1,13 @@
+package ch.inftec.ju.util.collection;
+
+/**
+ * Cache that can be cleared.
+ * <p>
+ * Kept separate from the Cache interface so existing Cache implementations aren't affected.
+ */
+public interface ClearableCache<K, V> extends Cache<K, V> {
+	/**
+	 * Removes all values from the cache.
+	 */
+	void clear();
+}
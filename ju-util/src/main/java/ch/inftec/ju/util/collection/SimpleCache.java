@@ -14,11 +14,12 @@ import ch.inftec.ju.util.function.Function;
  * <p/>
  * For heavy use, it is recommended to use a 'professional' Cache implementation, e.g. from Guava library.
  */
-class SimpleCache<K, V> implements Cache<K, V> {
+class SimpleCache<K, V> implements ClearableCache<K, V> {
 	private final int maxSize;
+	private final long expiryMillis;
 	private final Function<K, V> unknownValueGetter;
 
-	private final Map<K, V> items = new LinkedHashMap<>();
+	private final Map<K, CacheEntry<V>> items = new LinkedHashMap<>();
 
 	/**
 	 * Creates a new Cache with the specified max size and an unknown value getter function. If Cache.get is called with an unknown key,
@@ -29,34 +30,64 @@ class SimpleCache<K, V> implements Cache<K, V> {
 	 * @param unknownValueGetter Function to retrieve unknown items when get is called
 	 */
 	SimpleCache(int maxSize, Function<K, V> unknownValueGetter) {
+		this(maxSize, 0, unknownValueGetter);
+	}
+
+	/**
+	 * Creates a new Cache with the specified max size, expiry time and an unknown value getter function.
+	 * <p/>
+	 * Values older than the expiry time are treated like unknown values, i.e. they will be recreated using the function.
+	 * @param maxSize Maximum size of the Cache
+	 * @param expiryMillis Time in milliseconds after which values expire. If 0 or less, values never expire
+	 * @param unknownValueGetter Function to retrieve unknown items when get is called
+	 */
+	SimpleCache(int maxSize, long expiryMillis, Function<K, V> unknownValueGetter) {
 		Validate.isTrue(maxSize > 0, "maxSize must be greater than 0, but was %d", maxSize);
 		Validate.notNull(unknownValueGetter, "unknownValueGetter must be specified");
 
 		this.maxSize = maxSize;
+		this.expiryMillis = expiryMillis;
 		this.unknownValueGetter = unknownValueGetter;
 	}
 
+	/**
+	 * Gets the value for the specified key, creating it using the unknown value getter if it isn't cached (or expired).
+	 * <p/>
+	 * The unknown value getter is called without holding the lock of the cache, so slow getters don't block lookups
+	 * of other keys. Concurrent lookups of the same unknown key might call the getter more than once, the value
+	 * added first is kept then.
+	 */
 	@Override
-	public synchronized V get(K key) {
-		if (!items.containsKey(key)) {
-			V value = unknownValueGetter.apply(key);
-			items.put(key, value);
-		} else {
-			// Re-add the value again to move it to the end of the linked hashmap
+	public V get(K key) {
+		synchronized (this) {
+			// Remove and re-add the entry to move it to the end of the linked hashmap
 			// This is not terribly performing, but meats the requirements of the Cache
-			V value = items.get(key);
-			items.remove(key);
-			items.put(key, value);
+			CacheEntry<V> entry = items.remove(key);
+			if (entry != null && !isExpired(entry)) {
+				items.put(key, entry);
+				return entry.value;
+			}
 		}
 
-		truncateCache();
+		V value = unknownValueGetter.apply(key);
+
+		synchronized (this) {
+			// Another thread might have added the value in the meantime
+			CacheEntry<V> entry = items.remove(key);
+			if (entry == null || isExpired(entry)) {
+				entry = new CacheEntry<>(value);
+			}
+			items.put(key, entry);
 
-		return items.get(key);
+			truncateCache();
+
+			return entry.value;
+		}
 	}
 
 	@Override
 	public synchronized void put(K key, V value) {
-		items.put(key, value);
+		items.put(key, new CacheEntry<>(value));
 
 		truncateCache();
 	}
@@ -66,6 +97,15 @@ class SimpleCache<K, V> implements Cache<K, V> {
 		return items.size();
 	}
 
+	@Override
+	public synchronized void clear() {
+		items.clear();
+	}
+
+	private boolean isExpired(CacheEntry<V> entry) {
+		return expiryMillis > 0 && System.currentTimeMillis() - entry.created > expiryMillis;
+	}
+
 	private synchronized void truncateCache() {
 		while (items.size() > maxSize) {
 			K oldestKey = items.keySet().iterator().next();
@@ -73,4 +113,13 @@ class SimpleCache<K, V> implements Cache<K, V> {
 			items.remove(oldestKey);
 		}
 	}
+
+	private static final class CacheEntry<V> {
+		private final V value;
+		private final long created = System.currentTimeMillis();
+
+		private CacheEntry(V value) {
+			this.value = value;
+		}
+	}
 }
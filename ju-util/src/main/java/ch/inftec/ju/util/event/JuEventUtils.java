@@ -1,6 +1,8 @@
 package ch.inftec.ju.util.event;
 
+import java.util.ArrayList;
 import java.util.EventListener;
+import java.util.List;
 
 import org.junit.Assert;
 
@@ -75,6 +77,9 @@ public final class JuEventUtils {
 	 * <p>
 	 * Handles adding and removing of listeners. Extending classes can use the
 	 * getListeners method to iterate over all registered listeners.
+	 * <p>
+	 * Adding and removing listeners is thread safe. Extending classes must synchronize on
+	 * the notifier when iterating over the listeners.
 	 * @author Martin
 	 *
 	 * @param <T> Type of the EventListeners
@@ -83,17 +88,17 @@ public final class JuEventUtils {
 		private final WeakReferenceIterable<T> listeners = JuCollectionUtils.newWeakReferenceIterable();
 		
 		@Override
-		public final void addListener(T listener) {
+		public final synchronized void addListener(T listener) {
 			this.listeners.add(listener);
 		}
 
 		@Override
-		public final void addWeakListener(T listener) {
+		public final synchronized void addWeakListener(T listener) {
 			this.listeners.addWeak(listener);
 		}
 
 		@Override
-		public final void removeListener(T listener) {
+		public final synchronized void removeListener(T listener) {
 			this.listeners.remove(listener);
 		}
 		
@@ -118,11 +123,20 @@ public final class JuEventUtils {
 		
 		/**
 		 * Fires an update event notifying all registered listeners.
+		 * <p>
+		 * Events may be fired from any thread. The listeners are notified in the firing thread.
 		 * @param sender Sender of the event
 		 */
 		public void fireUpdateEvent(T sender) {
+			List<UpdateListener<T>> listeners = new ArrayList<>();
+			synchronized (this) {
+				for (UpdateListener<T> listener : this.getListeners()) {
+					listeners.add(listener);
+				}
+			}
+			
 			JuEventObject<T> o = new JuEventObject<>(sender);
-			for (UpdateListener<T> listener : this.getListeners()) {
+			for (UpdateListener<T> listener : listeners) {
 				listener.updated(o);
 			}
 		}
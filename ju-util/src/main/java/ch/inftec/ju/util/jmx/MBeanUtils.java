@@ -24,18 +24,63 @@ public class MBeanUtils {
 		return new MBeanUtilImpl(ManagementFactory.getPlatformMBeanServer(), objectName);
 	}
 	
+	/**
+	 * Registers an MBean with the PlatformMBeanServer.
+	 * <p>
+	 * If an MBean is already registered with the same name, it is replaced.
+	 * @param objectName Name of the object, e.g. 'ch.inftec.ju:type=PropertyChain,name=default'
+	 * @param mbean MBean instance
+	 */
+	public static void registerPlatformMBean(String objectName, Object mbean) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = MBeanUtils.createObjectName(objectName);
+		
+		try {
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(mbean, name);
+		} catch (Exception ex) {
+			throw new JuRuntimeException("Couldn't register MBean %s", ex, objectName);
+		}
+	}
+	
+	/**
+	 * Unregisters an MBean from the PlatformMBeanServer.
+	 * @param objectName Name of the object
+	 * @return True if the MBean was registered, false otherwise
+	 */
+	public static boolean unregisterPlatformMBean(String objectName) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = MBeanUtils.createObjectName(objectName);
+		
+		try {
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+				return true;
+			} else {
+				return false;
+			}
+		} catch (Exception ex) {
+			throw new JuRuntimeException("Couldn't unregister MBean %s", ex, objectName);
+		}
+	}
+	
+	private static ObjectName createObjectName(String objectName) {
+		try {
+			return new ObjectName(objectName);
+		} catch (Exception ex) {
+			throw new JuRuntimeException("Couldn't create ObjectName for %s", ex, objectName);
+		}
+	}
+	
 	private static final class MBeanUtilImpl implements MBeanUtil {
 		private final MBeanServer server;
 		private final ObjectName objectName;
 		
 		private MBeanUtilImpl(MBeanServer server, String objectName) {
 			this.server = server;
-			
-			try {
-				this.objectName = new ObjectName(objectName);
-			} catch (Exception ex) {
-				throw new JuRuntimeException("Couldn't create ObjectName for %s", ex, objectName);
-			}
+			this.objectName = MBeanUtils.createObjectName(objectName);
 		}
 		
 		@Override
@@ -0,0 +1,239 @@
+package ch.inftec.ju.util.jmx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ch.inftec.ju.util.JuStringUtils;
+
+/**
+ * Lookup metrics of a PropertyChain.
+ * <p>
+ * Collects lookup counts per key, hit and miss counts per evaluator and latency histograms for
+ * the evaluate, decrypt and interpolate phases of a lookup. Recording doesn't allocate objects
+ * except for the first lookup of a key.
+ * <p>
+ * Lookup counts are kept for a limited number of distinct keys (the keys looked up first), so dynamic or
+ * undefined keys can't make the metrics grow without bounds. Lookups of further keys are only counted
+ * in total, see getUntrackedKeyLookupCount.
+ * <p>
+ * Instances are thread safe. Use MBeanUtils.registerPlatformMBean to expose them over JMX.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+public class PropertyChainMetrics implements PropertyChainMetricsMBean {
+	/**
+	 * Default maximum number of distinct keys to count lookups for.
+	 */
+	public static final int DEFAULT_MAX_TRACKED_KEYS = 1000;
+	
+	private final List<String> evaluatorNames;
+	private final int maxTrackedKeys;
+	
+	private final AtomicLong lookupCount = new AtomicLong();
+	private final ConcurrentMap<String, AtomicLong> keyLookupCounts = new ConcurrentHashMap<>();
+	private final AtomicInteger trackedKeyCount = new AtomicInteger();
+	private final AtomicLong untrackedKeyLookupCount = new AtomicLong();
+	private final AtomicLongArray evaluatorHits;
+	private final AtomicLongArray evaluatorMisses;
+	
+	private final LatencyHistogram evaluateLatency = new LatencyHistogram();
+	private final LatencyHistogram decryptLatency = new LatencyHistogram();
+	private final LatencyHistogram interpolateLatency = new LatencyHistogram();
+	
+	/**
+	 * Creates new PropertyChainMetrics.
+	 * @param evaluatorNames Names of the evaluators of the chain, in the order they are queried
+	 */
+	public PropertyChainMetrics(List<String> evaluatorNames) {
+		this(evaluatorNames, DEFAULT_MAX_TRACKED_KEYS);
+	}
+	
+	/**
+	 * Creates new PropertyChainMetrics.
+	 * @param evaluatorNames Names of the evaluators of the chain, in the order they are queried
+	 * @param maxTrackedKeys Maximum number of distinct keys to count lookups for
+	 */
+	public PropertyChainMetrics(List<String> evaluatorNames, int maxTrackedKeys) {
+		this.evaluatorNames = Collections.unmodifiableList(new ArrayList<>(evaluatorNames));
+		this.maxTrackedKeys = maxTrackedKeys;
+		this.evaluatorHits = new AtomicLongArray(evaluatorNames.size());
+		this.evaluatorMisses = new AtomicLongArray(evaluatorNames.size());
+	}
+	
+	/**
+	 * Records the lookup of a key.
+	 * @param key Key
+	 */
+	public void recordLookup(String key) {
+		this.lookupCount.incrementAndGet();
+		
+		AtomicLong count = this.keyLookupCounts.get(key);
+		if (count == null) {
+			if (this.trackedKeyCount.get() >= this.maxTrackedKeys) {
+				this.untrackedKeyLookupCount.incrementAndGet();
+				return;
+			}
+			
+			// Concurrent lookups of new keys might exceed the limit slightly, that's fine
+			AtomicLong newCount = new AtomicLong();
+			count = this.keyLookupCounts.putIfAbsent(key, newCount);
+			if (count == null) {
+				count = newCount;
+				this.trackedKeyCount.incrementAndGet();
+			}
+		}
+		count.incrementAndGet();
+	}
+	
+	/**
+	 * Records the result of querying an evaluator.
+	 * @param evaluatorIndex Index of the evaluator in the chain
+	 * @param hit True if the evaluator returned a value, false otherwise
+	 */
+	public void recordEvaluator(int evaluatorIndex, boolean hit) {
+		if (hit) {
+			this.evaluatorHits.incrementAndGet(evaluatorIndex);
+		} else {
+			this.evaluatorMisses.incrementAndGet(evaluatorIndex);
+		}
+	}
+	
+	/**
+	 * Records the duration of evaluating a key by the evaluators.
+	 * @param nanos Duration in nanoseconds
+	 */
+	public void recordEvaluate(long nanos) {
+		this.evaluateLatency.record(nanos);
+	}
+	
+	/**
+	 * Records the duration of decrypting a value.
+	 * @param nanos Duration in nanoseconds
+	 */
+	public void recordDecrypt(long nanos) {
+		this.decryptLatency.record(nanos);
+	}
+	
+	/**
+	 * Records the duration of interpolating a value.
+	 * @param nanos Duration in nanoseconds
+	 */
+	public void recordInterpolate(long nanos) {
+		this.interpolateLatency.record(nanos);
+	}
+	
+	@Override
+	public long getLookupCount() {
+		return this.lookupCount.get();
+	}
+	
+	@Override
+	public Map<String, Long> getKeyLookupCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		for (Map.Entry<String, AtomicLong> entry : this.keyLookupCounts.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		return counts;
+	}
+	
+	@Override
+	public long getUntrackedKeyLookupCount() {
+		return this.untrackedKeyLookupCount.get();
+	}
+	
+	@Override
+	public Map<String, Long> getEvaluatorHitCounts() {
+		return this.toEvaluatorMap(this.evaluatorHits);
+	}
+	
+	@Override
+	public Map<String, Long> getEvaluatorMissCounts() {
+		return this.toEvaluatorMap(this.evaluatorMisses);
+	}
+	
+	private Map<String, Long> toEvaluatorMap(AtomicLongArray counts) {
+		// Prefix the names with the index as evaluators might have the same name
+		Map<String, Long> map = new LinkedHashMap<>();
+		for (int i = 0; i < this.evaluatorNames.size(); i++) {
+			map.put(String.format("%d: %s", i, this.evaluatorNames.get(i)), counts.get(i));
+		}
+		return map;
+	}
+	
+	@Override
+	public Map<String, Long> getEvaluateLatencyHistogram() {
+		return this.evaluateLatency.toMap();
+	}
+	
+	@Override
+	public Map<String, Long> getDecryptLatencyHistogram() {
+		return this.decryptLatency.toMap();
+	}
+	
+	@Override
+	public Map<String, Long> getInterpolateLatencyHistogram() {
+		return this.interpolateLatency.toMap();
+	}
+	
+	@Override
+	public void reset() {
+		this.lookupCount.set(0);
+		this.keyLookupCounts.clear();
+		this.trackedKeyCount.set(0);
+		this.untrackedKeyLookupCount.set(0);
+		for (int i = 0; i < this.evaluatorNames.size(); i++) {
+			this.evaluatorHits.set(i, 0);
+			this.evaluatorMisses.set(i, 0);
+		}
+		this.evaluateLatency.reset();
+		this.decryptLatency.reset();
+		this.interpolateLatency.reset();
+	}
+	
+	@Override
+	public String toString() {
+		return JuStringUtils.toString(this, "lookupCount", this.getLookupCount());
+	}
+	
+	/**
+	 * Histogram with buckets of decimal orders of magnitude, from 1 microsecond up to 1 second.
+	 */
+	private static final class LatencyHistogram {
+		private static final long[] BUCKET_LIMITS_MICROS = {1, 10, 100, 1000, 10000, 100000, 1000000};
+		
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKET_LIMITS_MICROS.length + 1);
+		
+		private void record(long nanos) {
+			long micros = nanos / 1000;
+			int bucket = 0;
+			while (bucket < BUCKET_LIMITS_MICROS.length && micros > BUCKET_LIMITS_MICROS[bucket]) {
+				bucket++;
+			}
+			this.counts.incrementAndGet(bucket);
+		}
+		
+		private void reset() {
+			for (int i = 0; i < this.counts.length(); i++) {
+				this.counts.set(i, 0);
+			}
+		}
+		
+		private Map<String, Long> toMap() {
+			Map<String, Long> map = new LinkedHashMap<>();
+			for (int i = 0; i < BUCKET_LIMITS_MICROS.length; i++) {
+				map.put("<= " + BUCKET_LIMITS_MICROS[i] + "us", this.counts.get(i));
+			}
+			map.put("> " + BUCKET_LIMITS_MICROS[BUCKET_LIMITS_MICROS.length - 1] + "us", this.counts.get(BUCKET_LIMITS_MICROS.length));
+			return map;
+		}
+	}
+}
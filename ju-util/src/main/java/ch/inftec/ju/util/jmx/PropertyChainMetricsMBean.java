@@ -0,0 +1,69 @@
+package ch.inftec.ju.util.jmx;
+
+import java.util.Map;
+
+/**
+ * MBean interface of PropertyChainMetrics.
+ * <p>
+ * Latency histograms map the upper bound of a bucket (e.g. '&lt;= 10us') to the number of
+ * measurements within the bucket.
+ * @author martin.meyer@inftec.ch
+ *
+ */
+public interface PropertyChainMetricsMBean {
+	/**
+	 * Gets the total number of key lookups.
+	 * @return Number of lookups
+	 */
+	long getLookupCount();
+	
+	/**
+	 * Gets the number of lookups by key.
+	 * <p>
+	 * Only a limited number of distinct keys is tracked, see getUntrackedKeyLookupCount.
+	 * @return Map of key to number of lookups
+	 */
+	Map<String, Long> getKeyLookupCounts();
+	
+	/**
+	 * Gets the number of lookups of keys that weren't tracked by getKeyLookupCounts as the maximum
+	 * number of tracked keys had been reached.
+	 * @return Number of lookups of untracked keys
+	 */
+	long getUntrackedKeyLookupCount();
+	
+	/**
+	 * Gets the number of times an evaluator returned a value, in the order of the evaluators in the chain.
+	 * @return Map of evaluator to number of hits
+	 */
+	Map<String, Long> getEvaluatorHitCounts();
+	
+	/**
+	 * Gets the number of times an evaluator was queried without returning a value, in the order of the evaluators in the chain.
+	 * @return Map of evaluator to number of misses
+	 */
+	Map<String, Long> getEvaluatorMissCounts();
+	
+	/**
+	 * Gets the latency histogram of evaluating a key by the evaluators.
+	 * @return Latency histogram
+	 */
+	Map<String, Long> getEvaluateLatencyHistogram();
+	
+	/**
+	 * Gets the latency histogram of decrypting values.
+	 * @return Latency histogram
+	 */
+	Map<String, Long> getDecryptLatencyHistogram();
+	
+	/**
+	 * Gets the latency histogram of interpolating values.
+	 * @return Latency histogram
+	 */
+	Map<String, Long> getInterpolateLatencyHistogram();
+	
+	/**
+	 * Resets all counters and histograms.
+	 */
+	void reset();
+}
@@ -1,6 +1,8 @@
 package ch.inftec.ju.util;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -80,6 +82,51 @@ public class CsvTableLookupTest {
 		Assert.assertNull(l.get(null, "H1"));
 	}
 	
+	@Test
+	public void column_returnsSameValues_asGet() {
+		CsvTableLookup l = this.tableLookupBuilder().defaultColumn("H1").create();
+		
+		for (String header : Arrays.asList("H1", "H2", "H3", "H4", "H5")) {
+			CsvTableLookup.Column column = l.getColumn(header);
+			for (String key : Arrays.asList("R1", "R2", "R3", "R4", "R5")) {
+				Assert.assertEquals(header + "/" + key, l.get(key, header), column.get(key));
+			}
+		}
+		
+		Assert.assertEquals("V11", l.getColumn("H3").get("R1"));
+		Assert.assertEquals("V11", l.getColumn("H5").get("R1"));
+		Assert.assertNull(l.getColumn("H5").get("R5"));
+		Assert.assertNull(l.getColumn(null).get("R1"));
+	}
+	
+	@Test
+	public void rows_canBeUsed_toRecreateTable() {
+		CsvTableLookup l = this.tableLookupBuilder().defaultColumn("H2").create();
+		CsvTableLookup copy = CsvTableLookup.fromRows(l.getRows(), "H2");
+		
+		Assert.assertEquals(l.getHeaders(), copy.getHeaders());
+		Assert.assertEquals(l.getKeys(), copy.getKeys());
+		for (String header : Arrays.asList("H1", "H2", "H3", "H4", "H5")) {
+			for (String key : l.getKeys()) {
+				Assert.assertEquals(header + "/" + key, l.get(key, header), copy.get(key, header));
+			}
+		}
+	}
+	
+	@Test
+	public void equalValues_areShared() {
+		List<String[]> rows = new ArrayList<>();
+		rows.add(new String[] {"", "p1", "p2"});
+		rows.add(new String[] {"k1", new String("host"), new String("host")});
+		rows.add(new String[] {"k2", new String("host"), "other"});
+		
+		CsvTableLookup l = CsvTableLookup.fromRows(rows, null);
+		Assert.assertEquals("host", l.get("k1", "p1"));
+		Assert.assertSame(l.get("k1", "p1"), l.get("k1", "p2"));
+		Assert.assertSame(l.get("k1", "p1"), l.get("k2", "p1"));
+		Assert.assertEquals("other", l.get("k2", "p2"));
+	}
+	
 	private CsvTableLookupBuilder tableLookupBuilder() {
 		return CsvTableLookup.build()
 				.from(JuUrl.resource().relativeTo(CsvTableLookupTest.class).get("data.csv"));
@@ -1,5 +1,7 @@
 package ch.inftec.ju.util;
 
+import java.util.Properties;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -23,6 +25,37 @@ public class JuUtilsTest {
 		Assert.assertEquals("derby", JuUtils.getJuPropertyChain().get("ju-dbutil-test.profile"));
 	}
 	
+	@Test
+	public void propertyChain_isShared_untilCleared() throws Exception {
+		final PropertyChain[] chains = new PropertyChain[8];
+		Thread[] threads = new Thread[chains.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					chains[index] = JuUtils.getJuPropertyChain();
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		for (PropertyChain chain : chains) {
+			Assert.assertSame(chains[0], chain);
+		}
+		
+		JuUtils.clearPropertyChain();
+		PropertyChain newChain = JuUtils.getJuPropertyChain();
+		Assert.assertNotSame(chains[0], newChain);
+		Assert.assertSame(newChain, JuUtils.getJuPropertyChain());
+		
+		// The previous chain can still be used
+		Assert.assertEquals("derby", chains[0].get("ju-dbutil-test.profile"));
+	}
+	
 	@Test
 	public void propertyChain_priorizes_systemProperty() {
 		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
@@ -137,6 +170,38 @@ public class JuUtilsTest {
 		Assert.assertEquals("Hello World", JuUtils.interpolate("Hello ${p1}", pc));
 	}
 	
+	@Test
+	public void canInterpolate_value_repeatedly_reflectingChanges() {
+		Properties props = new Properties();
+		props.put("p1", "World");
+		PropertyChain pc = new PropertyChainBuilder()
+			.addPropertiesPropertyEvaluator(props)
+			.getPropertyChain();
+		
+		Assert.assertEquals("Hello World", JuUtils.interpolate("Hello ${p1}", pc));
+		Assert.assertEquals("Hello World", JuUtils.interpolate("Hello ${p1}", pc));
+		
+		props.put("p1", "Mars");
+		Assert.assertEquals("Hello Mars", JuUtils.interpolate("Hello ${p1}", pc));
+		Assert.assertEquals("Hello ${p2}", JuUtils.interpolate("Hello ${p2}", pc));
+	}
+	
+	@Test
+	public void canInterpolate_envValue_withChain() {
+		PropertyChain pc = PropertyChainTest.createPropertiesChain(false,
+				"p1", "Hello");
+		
+		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
+			ts.setEnv("MY_ENV", "World");
+			Assert.assertEquals("Hello World", JuUtils.interpolate("${p1} ${env.MY_ENV}", pc));
+			
+			ts.setEnv("MY_ENV", "Mars");
+			Assert.assertEquals("Hello Mars", JuUtils.interpolate("${p1} ${env.MY_ENV}", pc));
+		}
+		
+		Assert.assertEquals("Hello ${env.MY_ENV}", JuUtils.interpolate("${p1} ${env.MY_ENV}", pc));
+	}
+	
 	@Test
 	public void canInterpolate_envValue() {
 		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
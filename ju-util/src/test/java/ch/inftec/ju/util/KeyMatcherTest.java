@@ -0,0 +1,112 @@
+package ch.inftec.ju.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyMatcherTest {
+	@Test
+	public void getMatches_returnsSameResults_asPatternMatches() {
+		List<String> regexes = Arrays.asList(
+				"ju\\.db\\..*"
+				, ".*\\.password"
+				, "ju\\.(db|ws)\\.(url|user)"
+				, "[a-c]+\\d?"
+				, "[^.]*"
+				, "a(bc)*d+e?"
+				, "x.*?y"
+				, "\\w+\\s\\W"
+				, "(?:ab|a)(c|bcd)"
+				, "[\\d_-]+"
+				, ""
+				, "a|"
+				, "a.b");
+		KeyMatcher matcher = KeyMatcher.build().regexes(regexes).create();
+		
+		List<String> keys = Arrays.asList("ju.db.url", "ju.ws.user", "ju.ws.password", "abc", "abc1", "abc12", "ad"
+				, "abcbcdde", "xy", "x..y", "xyz", "word !", "word a", "abcd", "abc", "12_-3", "", "a", "a\nb", "a-b"
+				, "ju.db.", "äö.password");
+		
+		for (String key : keys) {
+			BitSet expected = new BitSet();
+			for (int i = 0; i < regexes.size(); i++) {
+				if (Pattern.matches(regexes.get(i), key)) {
+					expected.set(i);
+				}
+			}
+			Assert.assertEquals("Key " + key, expected, matcher.getMatches(key));
+		}
+	}
+	
+	@Test
+	public void supplementaryCharacters_areMatched_asOneCharacter() {
+		List<String> regexes = Arrays.asList(".", "a.", "[^x]", "a[^x]", "\\W", "\\S", "..", "\uD83D\uDE00+", "[\uD83D\uDE00-\uD83D\uDE4F]");
+		KeyMatcher matcher = KeyMatcher.build().regexes(regexes).glob("?").glob("a?").create();
+		
+		List<String> keys = Arrays.asList("\uD83D\uDE00", "a\uD83D\uDE00", "\uD83D\uDE00\uD83D\uDE00", "\uD83D\uDE4F", "\uD83D", "\uDE00");
+		for (String key : keys) {
+			BitSet expected = new BitSet();
+			for (int i = 0; i < regexes.size(); i++) {
+				if (Pattern.matches(regexes.get(i), key)) {
+					expected.set(i);
+				}
+			}
+			if (key.codePointCount(0, key.length()) == 1) {
+				expected.set(regexes.size());
+			} else if (key.startsWith("a") && key.codePointCount(0, key.length()) == 2) {
+				expected.set(regexes.size() + 1);
+			}
+			Assert.assertEquals("Key " + key, expected, matcher.getMatches(key));
+		}
+	}
+	
+	@Test
+	public void globs_canBeMatched() {
+		KeyMatcher matcher = KeyMatcher.build()
+				.glob("ju.*.password")
+				.glob("ju.?b.*")
+				.regex("ju\\..*")
+				.create();
+		
+		Assert.assertEquals(this.bits(0, 2), matcher.getMatches("ju.ws.password"));
+		Assert.assertEquals(this.bits(0, 1, 2), matcher.getMatches("ju.db.password"));
+		Assert.assertEquals(this.bits(2), matcher.getMatches("ju.db"));
+		Assert.assertEquals(this.bits(), matcher.getMatches("juXdb.password"));
+	}
+	
+	@Test
+	public void unsupportedRegexFeatures_areMatched_usingJavaRegex() {
+		KeyMatcher matcher = KeyMatcher.build()
+				.regex("(a)\\1")
+				.regex("^a{2,3}$")
+				.regex("(?i)ju\\.DB")
+				.regex("a(?!b).")
+				.regex("aa")
+				.create();
+		
+		Assert.assertEquals(this.bits(0, 1, 3, 4), matcher.getMatches("aa"));
+		Assert.assertEquals(this.bits(1), matcher.getMatches("aaa"));
+		Assert.assertEquals(this.bits(2), matcher.getMatches("ju.db"));
+		Assert.assertEquals(this.bits(3), matcher.getMatches("ac"));
+	}
+	
+	@Test
+	public void nullKey_matchesNothing() {
+		KeyMatcher matcher = KeyMatcher.build().regex(".*").create();
+		
+		Assert.assertFalse(matcher.matchesAny(null));
+		Assert.assertTrue(matcher.matchesAny(""));
+	}
+	
+	private BitSet bits(int... indexes) {
+		BitSet bits = new BitSet();
+		for (int index : indexes) {
+			bits.set(index);
+		}
+		return bits;
+	}
+}
@@ -1,10 +1,24 @@
 package ch.inftec.ju.util;
 
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class PropertyChainBuilderTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+	
 	@Test
 	public void buildsSystemPropertyEvaluator() {
 		PropertyChain chain = new PropertyChainBuilder()
@@ -50,6 +64,29 @@ public class PropertyChainBuilderTest {
 		Assert.assertEquals("classpathPropVal", chain.get("propCp"));
 	}
 	
+	@Test
+	public void reports_resolvedResources() {
+		PropertyChainBuilder builder = new PropertyChainBuilder()
+			.addResourceFolder(JuUrl.existingFolder("src/test/nonCpResources"))
+			.addEvaluatorsByChainFiles()
+				.name("ch/inftec/ju/util/propertyChain/fileSystemProps_prop.files")
+				.resolve();
+		
+		Map<String, List<URL>> resources = builder.getResolvedResources();
+		Assert.assertEquals(Arrays.asList(
+				"ch/inftec/ju/util/propertyChain/fileSystemProps_prop.files"
+				, "ch/inftec/ju/util/propertyChain/fileSystemProps.properties"
+				, "ch/inftec/ju/util/propertyChain/fileSystemProps_cpFs.properties"
+				, "ch/inftec/ju/util/propertyChain/fileSystemProps_cpOnly.properties"), new ArrayList<>(resources.keySet()));
+		
+		// Chain files are read from the resource folders and the classpath, other resources from the first location found
+		Assert.assertEquals(2, resources.get("ch/inftec/ju/util/propertyChain/fileSystemProps_prop.files").size());
+		Assert.assertTrue(resources.get("ch/inftec/ju/util/propertyChain/fileSystemProps_cpFs.properties").get(0)
+				.toString().contains("nonCpResources"));
+		Assert.assertFalse(resources.get("ch/inftec/ju/util/propertyChain/fileSystemProps_cpOnly.properties").get(0)
+				.toString().contains("nonCpResources"));
+	}
+	
 	@Test
 	public void supports_SystemProperties_inPropertiesFiels() {
 		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
@@ -99,6 +136,33 @@ public class PropertyChainBuilderTest {
 		Assert.assertEquals("val1", chain2.get("p1"));
 	}
 	
+	@Test
+	public void nestedPropertyChains_resolveValues_likeNestedLookups() {
+		PropertyChain innerChain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("p1", "inner1", "p2", "${p1}", "p3", "", "p4", "${p5}")
+			.getPropertyChain();
+		
+		PropertyChain middleChain = new PropertyChainBuilder()
+			.addPropertyChainPropertyEvaluator(innerChain)
+			.addListPropertyEvaluator("p3", "middle3")
+			.getPropertyChain();
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("p1", "outer1")
+			.addPropertyChainPropertyEvaluator(middleChain)
+			.addListPropertyEvaluator("p5", "outer5")
+			.getPropertyChain();
+		
+		Assert.assertEquals("outer1", chain.get("p1"));
+		// Placeholders are resolved by the nested chain first
+		Assert.assertEquals("inner1", chain.get("p2"));
+		// Empty values of nested chains are treated as undefined
+		Assert.assertEquals("middle3", chain.get("p3"));
+		// Placeholders the nested chain cannot resolve are resolved by the outer chain
+		Assert.assertEquals("outer5", chain.get("p4"));
+		Assert.assertNull(chain.get("p6"));
+	}
+	
 	@Test
 	public void canInterpolate_inPropertiesFile_usingPercentageSign() {
 		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
@@ -128,4 +192,407 @@ public class PropertyChainBuilderTest {
 			Assert.assertEquals("interpolated", chain.get("key"));
 		}
 	}
+	
+	@Test
+	public void canRestore_propertyChain_fromSnapshot() throws Exception {
+		Path folder = this.tempFolder.getRoot().toPath();
+		Path snapshotFile = folder.resolve("chain.snapshot");
+		
+		Files.write(folder.resolve("snap.files"), ("0,sys\n"
+				+ "10,prop,snap_%snapProfile%.properties,optional\n"
+				+ "20,prop,snap.properties\n"
+				+ "30,csv,snap.csv,snapProfile\n").getBytes("UTF-8"));
+		Path propFile = folder.resolve("snap.properties");
+		Files.write(propFile, "snapProfile=p1\nprop=v1\n".getBytes("UTF-8"));
+		Files.write(folder.resolve("snap_p2.properties"), "prop=profileVal\n".getBytes("UTF-8"));
+		Files.write(folder.resolve("snap.csv"), ";default;p1\ncsvProp;csvDefault;csvP1\n".getBytes("UTF-8"));
+		
+		PropertyChain chain = this.buildSnapshotChain(folder, snapshotFile);
+		Assert.assertTrue(Files.exists(snapshotFile));
+		Assert.assertEquals("v1", chain.get("prop"));
+		Assert.assertEquals("csvP1", chain.get("csvProp"));
+		
+		// Change the file without changing its modification time and size. The snapshot will be used
+		FileTime modificationTime = Files.getLastModifiedTime(propFile);
+		Files.write(propFile, "snapProfile=p1\nprop=v2\n".getBytes("UTF-8"));
+		Files.setLastModifiedTime(propFile, modificationTime);
+		
+		chain = this.buildSnapshotChain(folder, snapshotFile);
+		Assert.assertEquals("v1", chain.get("prop"));
+		Assert.assertEquals("csvP1", chain.get("csvProp"));
+		
+		// Change the modification time. The snapshot will be invalid
+		Files.setLastModifiedTime(propFile, FileTime.fromMillis(modificationTime.toMillis() + 2000));
+		chain = this.buildSnapshotChain(folder, snapshotFile);
+		Assert.assertEquals("v2", chain.get("prop"));
+		
+		// Changing a placeholder value will invalidate the snapshot as well
+		try (SystemPropertyTempSetter ts = new SystemPropertyTempSetter()) {
+			ts.setProperty("snapProfile", "p2");
+			
+			chain = this.buildSnapshotChain(folder, snapshotFile);
+			Assert.assertEquals("profileVal", chain.get("prop"));
+			Assert.assertEquals("csvDefault", chain.get("csvProp"));
+		}
+		
+		chain = this.buildSnapshotChain(folder, snapshotFile);
+		Assert.assertEquals("v2", chain.get("prop"));
+		Assert.assertEquals("csvP1", chain.get("csvProp"));
+	}
+	
+	@Test
+	public void snapshot_storesStringProperties_only() throws Exception {
+		Path snapshotFile = this.tempFolder.getRoot().toPath().resolve("strings.snapshot");
+		
+		Properties defaults = new Properties();
+		defaults.setProperty("defaultProp", "defaultVal");
+		
+		PropertyChainSnapshot.Entry entry = new PropertyChainSnapshot.Entry();
+		entry.lineParts = new String[] {"10", "prop", "a.properties"};
+		entry.resolvedLineParts = entry.lineParts;
+		entry.properties = new Properties(defaults);
+		entry.properties.setProperty("prop", "val");
+		entry.properties.put("intProp", 1);
+		entry.properties.put(2, "intKey");
+		
+		PropertyChainSnapshot.Entry csvEntry = new PropertyChainSnapshot.Entry();
+		csvEntry.lineParts = new String[] {"20", "csv", "a.csv"};
+		csvEntry.resolvedLineParts = csvEntry.lineParts;
+		csvEntry.rows = new ArrayList<>();
+		csvEntry.rows.add(new String[] {"csvProp", "csvVal"});
+		
+		PropertyChainSnapshot snapshot = new PropertyChainSnapshot();
+		snapshot.names.add("a.files");
+		snapshot.entries.add(entry);
+		snapshot.entries.add(csvEntry);
+		snapshot.write(snapshotFile);
+		
+		PropertyChainSnapshot restored = PropertyChainSnapshot.read(snapshotFile);
+		Assert.assertEquals(2, restored.entries.size());
+		
+		Properties props = restored.entries.get(0).properties;
+		Assert.assertEquals(2, props.size());
+		Assert.assertEquals("val", props.getProperty("prop"));
+		Assert.assertEquals("defaultVal", props.getProperty("defaultProp"));
+		
+		Assert.assertEquals(20, Integer.parseInt(restored.entries.get(1).lineParts[0]));
+		Assert.assertArrayEquals(new String[] {"csvProp", "csvVal"}, restored.entries.get(1).rows.get(0));
+	}
+	
+	@Test
+	public void canLoad_resources_onFirstAccess() throws Exception {
+		Path folder = this.tempFolder.getRoot().toPath();
+		
+		Files.write(folder.resolve("lazy.files"), ("10,prop,lazy.properties\n"
+				+ "20,csv,broken.csv,profile\n").getBytes("UTF-8"));
+		Files.write(folder.resolve("lazy.properties"), "prop=val\n".getBytes("UTF-8"));
+		// CSV needs at least a header and one row
+		Files.write(folder.resolve("broken.csv"), ";default\n".getBytes("UTF-8"));
+		
+		try {
+			new PropertyChainBuilder()
+				.addResourceFolder(folder)
+				.addEvaluatorsByChainFiles()
+					.name("lazy.files")
+					.resolve();
+			Assert.fail("Expected exception for broken CSV");
+		} catch (JuRuntimeException ex) {
+			// Expected
+		}
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addResourceFolder(folder)
+			.addEvaluatorsByChainFiles()
+				.name("lazy.files")
+				.lazy(true)
+				.resolve()
+			.getPropertyChain();
+		
+		// Answered by the properties file, so the CSV isn't loaded
+		Assert.assertEquals("val", chain.get("prop"));
+		
+		try {
+			chain.get("csvProp");
+			Assert.fail("Expected exception for broken CSV");
+		} catch (JuRuntimeException ex) {
+			Assert.assertTrue(ex.getMessage().contains("broken.csv"));
+		}
+		
+		// Missing mandatory resources are still detected when resolving
+		Files.delete(folder.resolve("lazy.properties"));
+		try {
+			new PropertyChainBuilder()
+				.addResourceFolder(folder)
+				.addEvaluatorsByChainFiles()
+					.name("lazy.files")
+					.lazy(true)
+					.resolve();
+			Assert.fail("Expected exception for missing resource");
+		} catch (Exception ex) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void customResourceTypes_cannotReplace_builtInTypes() throws Exception {
+		Path folder = this.tempFolder.getRoot().toPath();
+		
+		Files.write(folder.resolve("types.files"), ("10,prop,types.properties\n"
+				+ "20,csv,types.csv,profile\n").getBytes("UTF-8"));
+		Files.write(folder.resolve("types.properties"), "profile=p1\n".getBytes("UTF-8"));
+		Files.write(folder.resolve("types.csv"), ";default;p1\ncsvProp;csvDefault;csvP1\n".getBytes("UTF-8"));
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addResourceFolder(folder)
+			.addEvaluatorsByChainFiles()
+				.name("types.files")
+				.resourceType(new ChainFileResourceType() {
+					@Override
+					public String getName() {
+						return "csv";
+					}
+					
+					@Override
+					public Properties load(URL resourceUrl) throws JuException {
+						throw new JuException("Custom csv type must not be used");
+					}
+				})
+				.resolve()
+			.getPropertyChain();
+		
+		Assert.assertEquals("csvP1", chain.get("csvProp"));
+	}
+	
+	@Test
+	public void canResolve_chainFiles_inParallel() throws Exception {
+		Path folder = this.tempFolder.getRoot().toPath();
+		
+		StringBuilder chainFile = new StringBuilder("0,sys\n");
+		for (int i = 1; i <= 20; i++) {
+			chainFile.append(i * 10).append(",prop,par").append(i).append(".properties\n");
+			Files.write(folder.resolve("par" + i + ".properties")
+					, ("prop=val" + i + "\nprop" + i + "=val" + i + "\nprofile=p1\n").getBytes("UTF-8"));
+		}
+		// Entries with placeholders depend on entries with a higher priority
+		chainFile.append("500,prop,par_%profile%.properties,optional\n");
+		chainFile.append("510,csv,par.csv,profile\n");
+		chainFile.append("520,prop,missing.properties,optional\n");
+		Files.write(folder.resolve("par.files"), chainFile.toString().getBytes("UTF-8"));
+		Files.write(folder.resolve("par_p1.properties"), "profileProp=profileVal\n".getBytes("UTF-8"));
+		Files.write(folder.resolve("par.csv"), ";default;p1\ncsvProp;csvDefault;csvP1\n".getBytes("UTF-8"));
+		
+		PropertyChain sequentialChain = new PropertyChainBuilder()
+			.addResourceFolder(folder)
+			.addEvaluatorsByChainFiles()
+				.name("par.files")
+				.resolve()
+			.getPropertyChain();
+		
+		PropertyChain parallelChain = new PropertyChainBuilder()
+			.addResourceFolder(folder)
+			.addEvaluatorsByChainFiles()
+				.name("par.files")
+				.parallel(true)
+				.resolve()
+			.getPropertyChain();
+		
+		// Entries are added in the order of their priorization
+		Assert.assertEquals("val1", parallelChain.get("prop"));
+		Assert.assertEquals("val20", parallelChain.get("prop20"));
+		Assert.assertEquals("profileVal", parallelChain.get("profileProp"));
+		Assert.assertEquals("csvP1", parallelChain.get("csvProp"));
+		
+		Assert.assertEquals(sequentialChain.listKeys(), parallelChain.listKeys());
+		for (String key : sequentialChain.listKeys()) {
+			Assert.assertEquals(sequentialChain.get(key), parallelChain.get(key));
+		}
+		
+		// Errors are reported for the entry causing them
+		Files.delete(folder.resolve("par10.properties"));
+		try {
+			new PropertyChainBuilder()
+				.addResourceFolder(folder)
+				.addEvaluatorsByChainFiles()
+					.name("par.files")
+					.parallel(true)
+					.resolve();
+			Assert.fail("Expected exception for missing resource");
+		} catch (Exception ex) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void csvProfileProperty_isMandatory_ifBuilderThrowsExceptionIfUndefined() throws Exception {
+		Path folder = this.tempFolder.getRoot().toPath();
+		Files.write(folder.resolve("profile.files"), "10,csv,profile.csv,undefinedProfile\n".getBytes("UTF-8"));
+		Files.write(folder.resolve("profile.csv"), ";default;p1\ncsvProp;csvDefault;csvP1\n".getBytes("UTF-8"));
+		
+		try {
+			new PropertyChainBuilder()
+				.setDefaultThrowExceptionIfUndefined(true)
+				.addResourceFolder(folder)
+				.addEvaluatorsByChainFiles()
+					.name("profile.files")
+					.resolve();
+			Assert.fail("Expected exception for undefined profile property");
+		} catch (JuRuntimeException ex) {
+			Assert.assertEquals("Property undefined: undefinedProfile", ex.getMessage());
+		}
+	}
+	
+	private PropertyChain buildSnapshotChain(Path folder, Path snapshotFile) {
+		return new PropertyChainBuilder()
+			.addResourceFolder(folder)
+			.addEvaluatorsByChainFiles()
+				.name("snap.files")
+				.snapshot(snapshotFile)
+				.resolve()
+			.getPropertyChain();
+	}
+	
+	@Test
+	public void canBuild_frozenPropertyChain() {
+		Properties props = new Properties();
+		props.put("p1", "v1");
+		props.put("p2", "${p1}-v2");
+		for (int i = 0; i < 1000; i++) {
+			props.put("key" + i, "val" + i);
+		}
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addPropertiesPropertyEvaluator(props)
+			.getFrozenPropertyChain();
+		
+		props.put("p1", "v1b");
+		props.put("p3", "v3");
+		
+		Assert.assertEquals("v1", chain.get("p1"));
+		Assert.assertEquals("v1-v2", chain.get("p2"));
+		Assert.assertEquals("${p1}-v2", chain.getInfo("p2").getRawValue());
+		Assert.assertNull(chain.get("p3"));
+		Assert.assertNull(chain.getInfo("p3"));
+		Assert.assertEquals(1002, chain.listKeys().size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals("val" + i, chain.get("key" + i));
+		}
+	}
+	
+	@Test
+	public void frozenPropertyChain_canInterpolate_andThrowException_ifUndefined() {
+		InterpolatingPropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("p1", "v1")
+			.setDefaultThrowExceptionIfUndefined(true)
+			.getFrozenPropertyChain();
+		
+		Assert.assertEquals("Hello v1", chain.interpolate("Hello ${p1}"));
+		
+		try {
+			chain.get("p2");
+			Assert.fail("Expected exception for undefined property");
+		} catch (JuRuntimeException ex) {
+			Assert.assertEquals("Property undefined: p2", ex.getMessage());
+		}
+	}
+	
+	@Test
+	public void propertiesResources_areParsedOnce_andShared() throws Exception {
+		Path propFile = this.tempFolder.newFile("shared.properties").toPath();
+		Files.write(propFile, "p1=v1".getBytes("UTF-8"));
+		
+		Map<Object, Object> props = PropertiesCache.load(JuUrl.toUrl(propFile));
+		Assert.assertEquals("v1", props.get("p1"));
+		Assert.assertSame(props, PropertiesCache.load(JuUrl.toUrl(propFile)));
+		
+		try {
+			props.put("p1", "v1b");
+			Assert.fail("Expected cached properties to be read only");
+		} catch (UnsupportedOperationException ex) {
+			// Expected
+		}
+		try {
+			props.entrySet().iterator().next().setValue("v1b");
+			Assert.fail("Expected cached properties to be read only");
+		} catch (UnsupportedOperationException ex) {
+			// Expected
+		}
+		Assert.assertEquals("v1", props.get("p1"));
+		
+		// Modified resources are parsed again
+		Files.write(propFile, "p1=v1b".getBytes("UTF-8"));
+		Files.setLastModifiedTime(propFile, FileTime.fromMillis(Files.getLastModifiedTime(propFile).toMillis() + 2000));
+		
+		Map<Object, Object> modifiedProps = PropertiesCache.load(JuUrl.toUrl(propFile));
+		Assert.assertNotSame(props, modifiedProps);
+		Assert.assertEquals("v1b", modifiedProps.get("p1"));
+		Assert.assertEquals("v1", props.get("p1"));
+		
+		// Chains of the same resource share the properties
+		PropertyChain chain1 = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator(JuUrl.toUrl(propFile))
+			.getPropertyChain();
+		PropertyChain chain2 = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator(JuUrl.toUrl(propFile))
+			.getPropertyChain();
+		Assert.assertEquals("v1b", chain1.get("p1"));
+		Assert.assertEquals("v1b", chain2.get("p1"));
+	}
+	
+	@Test
+	public void mappedPropertyEvaluator_parsesFiles_likeProperties() throws Exception {
+		String contents = "# Comment\n"
+				+ "! Other comment \\\n"
+				+ "simple=value\n"
+				+ "  indented : value with spaces  \n"
+				+ "whitespaceSeparator   value\n"
+				+ "emptyValue=\n"
+				+ "noSeparator\n"
+				+ "continued=first, \\\n"
+				+ "    second, \\\r\n"
+				+ "\tthird\n"
+				+ "escaped\\ key\\=x=a\\tb\\nc\\\\\n"
+				+ "unicode=\\u00e4\u00f6\n"
+				+ "\u00fcmlaut=value\n"
+				+ "duplicate=first\n"
+				+ "duplicate=second\r\n"
+				+ "=emptyKey\n"
+				+ "last=value\\";
+		Path propFile = this.tempFolder.newFile("mapped.properties").toPath();
+		Files.write(propFile, contents.getBytes(IOUtil.getDefaultCharset()));
+		
+		Properties props = new IOUtil().loadPropertiesFromUrl(JuUrl.toUrl(propFile));
+		PropertyChain chain = new PropertyChainBuilder()
+			.addMappedPropertyEvaluator(propFile)
+			.interpolation()
+				.enable(false)
+				.done()
+			.getPropertyChain();
+		
+		Assert.assertEquals(JuCollectionUtils.getKeyStrings(props), chain.listKeys());
+		for (String key : props.stringPropertyNames()) {
+			Assert.assertEquals(key, props.getProperty(key), chain.getInfo(key).getValue());
+		}
+		Assert.assertEquals("second", chain.get("duplicate"));
+		Assert.assertNull(chain.get("undefined"));
+	}
+	
+	@Test
+	public void mappedPropertyEvaluator_canHandle_largeFiles() throws Exception {
+		StringBuilder contents = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			contents.append("route.").append(i).append("=target-").append(i).append("\n");
+		}
+		Path propFile = this.tempFolder.newFile("large.properties").toPath();
+		Files.write(propFile, contents.toString().getBytes("UTF-8"));
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addMappedPropertyEvaluator(propFile)
+			.getPropertyChain();
+		
+		Assert.assertEquals(100000, chain.listKeys().size());
+		for (int i = 0; i < 100000; i += 997) {
+			Assert.assertEquals("target-" + i, chain.get("route." + i));
+		}
+		Assert.assertNull(chain.get("route.100000"));
+	}
 }
@@ -1,17 +1,44 @@
 package ch.inftec.ju.util;
 
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assert;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import ch.inftec.ju.security.JuSecurityUtils;
 import ch.inftec.ju.security.JuTextEncryptor;
 import ch.inftec.ju.util.PropertyChain.PropertyInfo;
+import ch.inftec.ju.util.event.JuEventUtils;
+import ch.inftec.ju.util.event.JuEventUtils.TestUpdateListener;
+import ch.inftec.ju.util.function.Function;
+import ch.inftec.ju.util.jmx.MBeanUtil;
+import ch.inftec.ju.util.jmx.MBeanUtils;
 
 public class PropertyChainTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+	
 	@Test
 	public void resourcePropertyEvaluator_ignoresMissingResource() {
 		PropertyChain chain = new PropertyChainBuilder()
@@ -69,6 +96,259 @@ public class PropertyChainTest {
 		Assert.assertFalse(chain.get("booleanProp2", Boolean.class));
 	}
 	
+	@Test
+	public void propertyChain_providesTypedAccessors() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator("ch/inftec/ju/util/PropertyChainTest_conversion.properties", false)
+			.addListPropertyEvaluator(
+					"longProp", "12345678901",
+					"durationProp1", "1500",
+					"durationProp2", "2min",
+					"durationProp3", "1500 ms",
+					"enumProp", "SECONDS",
+					"listProp", " a, b,,c ",
+					"emptyProp", "")
+			.getPropertyChain();
+		
+		Assert.assertEquals(1, chain.getInt("intProp1"));
+		Assert.assertEquals(-1, chain.getInt("intProp2", 5));
+		Assert.assertEquals(5, chain.getInt("undefinedProp", 5));
+		Assert.assertEquals(5, chain.getInt("emptyProp", 5));
+		
+		Assert.assertEquals(12345678901L, chain.getLong("longProp"));
+		Assert.assertEquals(7L, chain.getLong("undefinedProp", 7L));
+		
+		Assert.assertTrue(chain.getBoolean("booleanProp1"));
+		Assert.assertFalse(chain.getBoolean("booleanProp2", true));
+		Assert.assertTrue(chain.getBoolean("undefinedProp", true));
+		
+		Assert.assertEquals(1500L, chain.getDuration("durationProp1", TimeUnit.MILLISECONDS));
+		Assert.assertEquals(120L, chain.getDuration("durationProp2", TimeUnit.SECONDS));
+		Assert.assertEquals(1L, chain.getDuration("durationProp3", TimeUnit.SECONDS));
+		Assert.assertEquals(3L, chain.getDuration("undefinedProp", TimeUnit.SECONDS, 3L));
+		
+		Assert.assertEquals(TimeUnit.SECONDS, chain.getEnum("enumProp", TimeUnit.class));
+		Assert.assertEquals(TimeUnit.SECONDS, chain.get("enumProp", TimeUnit.class));
+		Assert.assertNull(chain.getEnum("undefinedProp", TimeUnit.class));
+		Assert.assertEquals(TimeUnit.DAYS, chain.getEnum("undefinedProp", TimeUnit.class, TimeUnit.DAYS));
+		
+		TestUtils.assertCollectionEquals(chain.getList("listProp"), "a", "b", "c");
+		Assert.assertTrue(chain.getList("undefinedProp").isEmpty());
+	}
+	
+	@Test
+	public void typedAccessors_throwException_forUndefinedOrInvalidValues() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("invalidInt", "abc", "invalidDuration", "5 weeks")
+			.getPropertyChain();
+		
+		try {
+			chain.getInt("undefinedProp");
+			Assert.fail("Expected exception for undefined property");
+		} catch (JuRuntimeException ex) {
+			Assert.assertEquals("Property undefined: undefinedProp", ex.getMessage());
+		}
+		
+		try {
+			chain.getInt("invalidInt", 1);
+			Assert.fail("Expected exception for invalid int");
+		} catch (JuRuntimeException ex) {
+			Assert.assertTrue(ex.getCause() instanceof NumberFormatException);
+		}
+		
+		try {
+			chain.getDuration("invalidDuration", TimeUnit.SECONDS);
+			Assert.fail("Expected exception for invalid duration");
+		} catch (JuRuntimeException ex) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void typedAccessors_cacheConvertedValues_ofCachedProperties() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("listProp", "a,b")
+			.setCacheResolvedValues(true)
+			.getPropertyChain();
+		
+		Assert.assertSame(chain.getList("listProp"), chain.getList("listProp"));
+		
+		PropertyChain frozenChain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("listProp", "a,b")
+			.getFrozenPropertyChain();
+		
+		Assert.assertSame(frozenChain.getList("listProp"), frozenChain.getList("listProp"));
+	}
+	
+	@Test
+	public void canConvert_usingCustomConverter() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("charProp", "x")
+			.addConverter(Character.class, new Function<String, Character>() {
+				@Override
+				public Character apply(String val) {
+					return val.charAt(0);
+				}
+			})
+			.getPropertyChain();
+		
+		Assert.assertEquals(new Character('x'), chain.get("charProp", Character.class));
+		Assert.assertEquals(new Character('y'), chain.get("undefinedProp", Character.class, "y"));
+		
+		try {
+			chain.get("charProp", StringBuilder.class);
+			Assert.fail("Expected exception for unsupported type");
+		} catch (JuRuntimeException ex) {
+			Assert.assertTrue(ex.getMessage().startsWith("Conversion not supported"));
+		}
+	}
+	
+	@Test
+	public void canGet_propertiesByPrefix() {
+		PropertyChain chain = PropertyChainTest.createPropertiesChain(true,
+				"db.primary.url", "jdbc:primary",
+				"db.primary.user", "${db.user}",
+				"db.primaryBackup.url", "jdbc:backup",
+				"db.user", "sa",
+				"other", "o");
+		
+		Map<String, String> primary = chain.getByPrefix("db.primary.");
+		TestUtils.assertCollectionEquals(primary.keySet(), "db.primary.url", "db.primary.user");
+		Assert.assertEquals("sa", primary.get("db.primary.user"));
+		
+		TestUtils.assertCollectionEquals(chain.getByPrefix("db.").keySet()
+				, "db.primary.url", "db.primary.user", "db.primaryBackup.url", "db.user");
+		Assert.assertTrue(chain.getByPrefix("x").isEmpty());
+		Assert.assertEquals(5, chain.getByPrefix("").size());
+	}
+	
+	@Test
+	public void canGet_subChain() {
+		PropertyChain chain = PropertyChainTest.createPropertiesChain(true,
+				"db.primary.url", "jdbc:primary",
+				"db.primary.pool.size", "5",
+				"db.user", "sa");
+		
+		PropertyChain dbChain = chain.subChain("db.");
+		TestUtils.assertCollectionEquals(dbChain.listKeys(), "primary.pool.size", "primary.url", "user");
+		Assert.assertEquals("sa", dbChain.get("user"));
+		Assert.assertNull(dbChain.get("db.user"));
+		Assert.assertEquals("db.user", dbChain.getInfo("user").getKey());
+		
+		PropertyChain primaryChain = dbChain.subChain("primary.");
+		Assert.assertEquals("jdbc:primary", primaryChain.get("url"));
+		Assert.assertEquals(5, primaryChain.getInt("pool.size"));
+		TestUtils.assertCollectionEquals(primaryChain.getByPrefix("pool.").keySet(), "pool.size");
+	}
+	
+	@Test
+	public void canGet_multipleProperties_inBulk() {
+		final Map<String, Integer> lookups = new HashMap<>();
+		PropertyChain chain = new PropertyChainBuilder()
+			.addPropertyEvaluator(new PropertyEvaluator() {
+				@Override
+				public Object get(String key) {
+					lookups.put(key, lookups.containsKey(key) ? lookups.get(key) + 1 : 1);
+					return null;
+				}
+				
+				@Override
+				public Set<String> listKeys() {
+					return Collections.emptySet();
+				}
+			})
+			.addListPropertyEvaluator(
+					"url", "jdbc:${host}/${db}",
+					"host", "localhost",
+					"db", "${user}DB",
+					"user", "sa",
+					"cycle1", "${cycle2}",
+					"cycle2", "${cycle1}")
+			.getPropertyChain();
+		
+		Map<String, String> values = chain.getAll(Arrays.asList("user", "undefined", "url", "db", "cycle1"));
+		TestUtils.assertCollectionEquals(values.keySet(), "user", "url", "db", "cycle1");
+		Assert.assertEquals("jdbc:localhost/saDB", values.get("url"));
+		Assert.assertEquals("saDB", values.get("db"));
+		Assert.assertEquals("sa", values.get("user"));
+		Assert.assertNull(values.get("undefined"));
+		Assert.assertFalse(values.containsKey("undefined"));
+		
+		// Each key is only evaluated once, even if it is referenced by other keys
+		Assert.assertEquals(new Integer(1), lookups.get("user"));
+		Assert.assertEquals(new Integer(1), lookups.get("host"));
+		Assert.assertEquals(new Integer(1), lookups.get("undefined"));
+		Assert.assertEquals(chain.get("cycle1"), values.get("cycle1"));
+		
+		try {
+			values.put("other", "val");
+			Assert.fail("Map should be unmodifiable");
+		} catch (UnsupportedOperationException ex) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void getAll_usesCachedValues_andWorksForAllChains() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("db.url", "jdbc:${db.name}", "db.name", "test")
+			.setCacheResolvedValues(true)
+			.getPropertyChain();
+		
+		Assert.assertEquals("test", chain.get("db.name"));
+		Map<String, String> values = chain.getAll(Arrays.asList("db.url", "db.name"));
+		Assert.assertEquals("jdbc:test", values.get("db.url"));
+		Assert.assertEquals(chain.getInfo("db.url"), chain.getInfo("db.url"));
+		
+		TestUtils.assertCollectionEquals(chain.subChain("db.").getAll(Arrays.asList("name", "url", "x")).values()
+				, "test", "jdbc:test");
+		
+		PropertyChain frozenChain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("db.url", "jdbc:${db.name}", "db.name", "test")
+			.getFrozenPropertyChain();
+		Assert.assertEquals(values, frozenChain.getAll(Arrays.asList("db.url", "db.name", "x")));
+	}
+	
+	@Test
+	public void prefixQueries_reflectNewKeys_afterClearingCache() {
+		Properties props = new Properties();
+		props.put("p.a", "a");
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addPropertiesPropertyEvaluator(props)
+			.setCacheResolvedValues(true)
+			.getPropertyChain();
+		
+		TestUtils.assertCollectionEquals(chain.getByPrefix("p.").keySet(), "p.a");
+		
+		props.put("p.b", "b");
+		TestUtils.assertCollectionEquals(chain.getByPrefix("p.").keySet(), "p.a");
+		
+		chain.clearCache();
+		TestUtils.assertCollectionEquals(chain.getByPrefix("p.").keySet(), "p.a", "p.b");
+	}
+	
+	@Test
+	public void prefixQueries_reflectNewSystemProperties_withoutCache() {
+		String key = "prop1.PropertyChainTest.prefixQueries";
+		PropertyChain chain = new PropertyChainBuilder()
+			.addSystemPropertyEvaluator()
+			.addResourcePropertyEvaluator("ch/inftec/ju/util/PropertyChainTest-2.properties", false)
+			.getPropertyChain();
+		
+		TestUtils.assertCollectionEquals(chain.getByPrefix("prop1").keySet(), "prop1");
+		
+		// System properties aren't indexed, so new ones are found without clearing the cache
+		System.setProperty(key, "v");
+		try {
+			TestUtils.assertCollectionEquals(chain.getByPrefix("prop1").keySet(), "prop1", key);
+			TestUtils.assertCollectionEquals(chain.subChain("prop1.").listKeys(), "PropertyChainTest.prefixQueries");
+		} finally {
+			System.clearProperty(key);
+		}
+		TestUtils.assertCollectionEquals(chain.getByPrefix("prop1").keySet(), "prop1");
+	}
+	
 	@Test
 	public void propertyChain_decryptsEncryptedValues() {
 		JuTextEncryptor encryptor = JuSecurityUtils.buildEncryptor()
@@ -86,6 +366,105 @@ public class PropertyChainTest {
 		Assert.assertEquals("secret String", chain.get("encString"));
 	}
 	
+	@Test
+	public void propertyChain_cachesDecryptedValues() {
+		final JuTextEncryptor encryptor = JuSecurityUtils.buildEncryptor()
+			.password("secret")
+			.createTextEncryptor();
+		final int[] decryptions = new int[1];
+		JuTextEncryptor countingEncryptor = new JuTextEncryptor() {
+			@Override
+			public String encrypt(String message) {
+				return encryptor.encrypt(message);
+			}
+			
+			@Override
+			public String decrypt(String encryptedMessage) {
+				decryptions[0]++;
+				return encryptor.decrypt(encryptedMessage);
+			}
+		};
+		
+		// Decrypted values aren't cached by default
+		PropertyChain uncachedChain = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator("ch/inftec/ju/util/PropertyChainTest_encryption.properties", false)
+			.setDecryptor(countingEncryptor)
+			.getPropertyChain();
+		
+		Assert.assertEquals("secret String", uncachedChain.get("encString"));
+		Assert.assertEquals("secret String", uncachedChain.get("encString"));
+		Assert.assertEquals(2, decryptions[0]);
+		decryptions[0] = 0;
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator("ch/inftec/ju/util/PropertyChainTest_encryption.properties", false)
+			.setDecryptor(countingEncryptor)
+			.decryptionCache().enable(true).done()
+			.getPropertyChain();
+		
+		Assert.assertEquals("secret String", chain.get("encString"));
+		Assert.assertEquals("secret String", chain.get("encString"));
+		Assert.assertEquals(1, decryptions[0]);
+		
+		chain.clearCache();
+		Assert.assertEquals("secret String", chain.get("encString"));
+		Assert.assertEquals(2, decryptions[0]);
+	}
+	
+	@Test
+	public void propertyChain_exposesLookupMetrics_overJmx() {
+		JuTextEncryptor encryptor = JuSecurityUtils.buildEncryptor()
+			.password("secret")
+			.createTextEncryptor();
+		
+		String objectName = "ch.inftec.ju:type=PropertyChain,name=PropertyChainTest";
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("p1", "v1", "p2", "${p1}")
+			.addResourcePropertyEvaluator("ch/inftec/ju/util/PropertyChainTest_encryption.properties", false)
+			.setDecryptor(encryptor)
+			.metrics()
+				.enable(true)
+				.objectName(objectName)
+				.done()
+			.getPropertyChain();
+		
+		try {
+			Assert.assertEquals("v1", chain.get("p1"));
+			Assert.assertEquals("v1", chain.get("p2"));
+			Assert.assertEquals("secret String", chain.get("encString"));
+			Assert.assertNull(chain.get("undefined"));
+			
+			MBeanUtil mbean = MBeanUtils.queryPlatformMBeanServer(objectName);
+			Assert.assertEquals(new Long(4), mbean.getAttribute("LookupCount").get(Long.class));
+			
+			@SuppressWarnings("unchecked")
+			Map<String, Long> keyLookupCounts = (Map<String, Long>) mbean.getAttribute("KeyLookupCounts").get();
+			Assert.assertEquals(new Long(1), keyLookupCounts.get("p2"));
+			
+			// p1 is evaluated by the first evaluator twice, the second time when interpolating p2
+			@SuppressWarnings("unchecked")
+			Map<String, Long> hits = (Map<String, Long>) mbean.getAttribute("EvaluatorHitCounts").get();
+			TestUtils.assertCollectionEquals(hits.values(), 3L, 1L);
+			@SuppressWarnings("unchecked")
+			Map<String, Long> misses = (Map<String, Long>) mbean.getAttribute("EvaluatorMissCounts").get();
+			TestUtils.assertCollectionEquals(misses.values(), 2L, 1L);
+			
+			Assert.assertEquals(1L, this.sum((Map<?, ?>) mbean.getAttribute("DecryptLatencyHistogram").get()));
+			Assert.assertEquals(3L, this.sum((Map<?, ?>) mbean.getAttribute("InterpolateLatencyHistogram").get()));
+			Assert.assertEquals(5L, this.sum((Map<?, ?>) mbean.getAttribute("EvaluateLatencyHistogram").get()));
+		} finally {
+			MBeanUtils.unregisterPlatformMBean(objectName);
+		}
+	}
+	
+	private long sum(Map<?, ?> histogram) {
+		long sum = 0;
+		for (Object count : histogram.values()) {
+			sum += (Long) count;
+		}
+		return sum;
+	}
+	
 	@Test
 	public void propertyChain_leavesNormalValues() {
 		//JuSecurityUtils.buildEncryptor().password("secret").createTextEncryptor().encrypt("secret String");
@@ -247,6 +626,359 @@ public class PropertyChainTest {
 		Assert.assertTrue(pi.getEvaluatorInfo().startsWith("PropertyChainBuilder.PropertiesPropertyEvaluator[url="));
 	}
 	
+	@Test
+	public void propertyInfo_isSensitive_ifInterpolatedFromSensitiveValue() {
+		Properties props = new Properties();
+		props.put("db.password", "ENC(bSmw4g8BdopiLClgC7zU2Kwr0LyRqj79)");
+		props.put("db.url", "jdbc:${db.user}:${db.credentials}");
+		props.put("db.credentials", "pw=${db.password}");
+		props.put("db.user", "usr");
+		props.put("db.pin", "1234");
+		props.put("db.pinUrl", "pin:${db.pin}");
+		
+		for (boolean bulk : new boolean[] {false, true}) {
+			PropertyChain chain = new PropertyChainBuilder()
+				.addPropertiesPropertyEvaluator(props)
+				.setDecryptor(JuSecurityUtils.buildEncryptor()
+						.password("secret")
+						.createTextEncryptor())
+				.hideValueForKey("db.pin")
+				.setCacheResolvedValues(true)
+				.getPropertyChain();
+			if (bulk) {
+				// Populate the cache with bulk resolved values
+				chain.getAll(Arrays.asList("db.url", "db.credentials", "db.user", "db.pinUrl"));
+			}
+			
+			PropertyInfo url = chain.getInfo("db.url");
+			Assert.assertEquals("jdbc:usr:pw=secret String", url.getValue());
+			Assert.assertEquals("***", url.getDisplayValue());
+			Assert.assertTrue(url.isSensitive());
+			
+			Assert.assertTrue(chain.getInfo("db.credentials").isSensitive());
+			Assert.assertTrue(chain.getInfo("db.pinUrl").isSensitive());
+			
+			PropertyInfo user = chain.getInfo("db.user");
+			Assert.assertEquals("usr", user.getDisplayValue());
+			Assert.assertFalse(user.isSensitive());
+		}
+	}
+	
+	@Test
+	public void propertyChain_doesNotCache_resolvedValues_byDefault() {
+		Properties props = new Properties();
+		props.put("p1", "v1");
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addPropertiesPropertyEvaluator(props)
+			.getPropertyChain();
+		
+		Assert.assertEquals("v1", chain.get("p1"));
+		props.put("p1", "v1b");
+		Assert.assertEquals("v1b", chain.get("p1"));
+	}
+	
+	@Test
+	public void propertyChain_canCache_resolvedValues() {
+		Properties props = new Properties();
+		props.put("p1", "v1");
+		props.put("p2", "${p1}");
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addPropertiesPropertyEvaluator(props)
+			.setCacheResolvedValues(true)
+			.getPropertyChain();
+		
+		Assert.assertEquals("v1", chain.get("p2"));
+		Assert.assertNull(chain.get("p3"));
+		
+		props.put("p1", "v1b");
+		props.put("p3", "v3");
+		Assert.assertEquals("v1", chain.get("p2"));
+		Assert.assertNull(chain.get("p3"));
+		Assert.assertNull(chain.getInfo("p3"));
+		
+		chain.clearCache();
+		Assert.assertEquals("v1b", chain.get("p2"));
+		Assert.assertEquals("v3", chain.get("p3"));
+	}
+	
+	@Test
+	public void propertyChain_canOverride_values() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("p1", "v1", "p2", "${p1}", "p3", "v3", "p4", "${p3}", "p5", "${p2}")
+			.setCacheResolvedValues(true)
+			.getPropertyChain();
+		
+		Map<String, String> overrides = new HashMap<>();
+		overrides.put("p1", "o1");
+		overrides.put("o2", "${p3}");
+		PropertyChain overlay = chain.withOverrides(overrides);
+		
+		// Overrides are copied
+		overrides.put("p3", "o3");
+		
+		Assert.assertEquals("o1", overlay.get("p1"));
+		Assert.assertEquals("o1", overlay.get("p2"));
+		Assert.assertEquals("o1", overlay.get("p5"));
+		Assert.assertEquals("v3", overlay.get("o2"));
+		Assert.assertEquals("v3", overlay.get("p4"));
+		Assert.assertNull(overlay.get("p6"));
+		
+		// Values that don't depend on overrides are shared with the parent
+		Assert.assertSame(chain.getInfo("p3"), overlay.getInfo("p3"));
+		Assert.assertSame(chain.getInfo("p4"), overlay.getInfo("p4"));
+		
+		// Parent is not affected
+		Assert.assertEquals("v1", chain.get("p2"));
+		Assert.assertNull(chain.get("o2"));
+		
+		Assert.assertEquals(new TreeSet<>(Arrays.asList("o2", "p1", "p2", "p3", "p4", "p5")), new TreeSet<>(overlay.listKeys()));
+		Assert.assertEquals("x-o1", ((InterpolatingPropertyChain) overlay).interpolate("x-${p2}"));
+		
+		// Overlays can be nested
+		PropertyChain nestedOverlay = overlay.overlay(new PropertyEvaluator() {
+			@Override
+			public Object get(String key) {
+				return "p3".equals(key) ? "n3" : null;
+			}
+			
+			@Override
+			public Set<String> listKeys() {
+				return Collections.singleton("p3");
+			}
+		});
+		Assert.assertEquals("n3", nestedOverlay.get("p4"));
+		Assert.assertEquals("n3", nestedOverlay.get("o2"));
+		Assert.assertEquals("o1", nestedOverlay.get("p5"));
+		Assert.assertEquals("v3", overlay.get("p4"));
+	}
+	
+	@Test
+	public void overlay_ofSubChain_resolvesPlaceholders_inRootKeySpace() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("db.url", "jdbc:${db.host}", "db.host", "h1", "host", "rootHost")
+			.getPropertyChain();
+		
+		Map<String, String> overrides = new HashMap<>();
+		overrides.put("host", "h2");
+		overrides.put("user", "${host}");
+		PropertyChain overlay = chain.subChain("db.").withOverrides(overrides);
+		
+		Assert.assertEquals("h2", overlay.get("host"));
+		Assert.assertEquals("jdbc:h2", overlay.get("url"));
+		Assert.assertEquals("rootHost", overlay.get("user"));
+		Assert.assertEquals("jdbc:h1", chain.get("db.url"));
+	}
+	
+	@Test
+	public void overlay_clearCache_keepsCacheOfParent() {
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("p1", "v1", "p2", "${p1}")
+			.setCacheResolvedValues(true)
+			.getPropertyChain();
+		
+		PropertyInfo pi = chain.getInfo("p2");
+		PropertyChain overlay = chain.withOverrides(Collections.singletonMap("p3", "o3"));
+		overlay.clearCache();
+		
+		Assert.assertSame(pi, chain.getInfo("p2"));
+	}
+	
+	@Test
+	public void overlay_cachesDependencies_onOverrides() {
+		final AtomicInteger lookups = new AtomicInteger();
+		PropertyChain chain = new PropertyChainBuilder()
+			.addListPropertyEvaluator("p1", "v1", "p2", "${p1}")
+			.getPropertyChain();
+		
+		PropertyChain overlay = chain.overlay(new PropertyEvaluator() {
+			@Override
+			public Object get(String key) {
+				if ("p1".equals(key)) {
+					lookups.incrementAndGet();
+				}
+				return null;
+			}
+			
+			@Override
+			public Set<String> listKeys() {
+				return Collections.emptySet();
+			}
+		});
+		
+		Assert.assertEquals("v1", overlay.get("p2"));
+		Assert.assertEquals("v1", overlay.get("p2"));
+		Assert.assertEquals(1, lookups.get());
+		
+		overlay.clearCache();
+		Assert.assertEquals("v1", overlay.get("p2"));
+		Assert.assertEquals(2, lookups.get());
+	}
+	
+	@Test
+	public void propertyChain_canReload_modifiedPropertyFile() throws Exception {
+		Path propFile = this.tempFolder.newFile("reload.properties").toPath();
+		this.writeProperties(propFile, "p1=v1\np2=${p1}", 0);
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator(JuUrl.toUrl(propFile))
+			.setCacheResolvedValues(true)
+			.setReloadInterval(20, TimeUnit.MILLISECONDS)
+			.getPropertyChain();
+		
+		TestUpdateListener<PropertyChain> listener = JuEventUtils.newTestUpdateListener();
+		chain.getUpdateNotifier().addListener(listener);
+		
+		Assert.assertEquals("v1", chain.get("p2"));
+		
+		// Make sure the modification time changes, regardless of the file system's resolution
+		this.writeProperties(propFile, "p1=v1b\np2=${p1}\np3=v3", 2000);
+		
+		for (int i = 0; i < 250 && listener.getCalls() == 0; i++) {
+			Thread.sleep(20);
+		}
+		
+		Assert.assertSame(chain, listener.assertOneCall());
+		Assert.assertEquals("v1b", chain.get("p2"));
+		Assert.assertEquals("v3", chain.get("p3"));
+	}
+	
+	@Test
+	public void propertyChain_doesNotCache_staleValues_ofResolutions_concurrentToReload() throws Exception {
+		final AtomicReference<String> value = new AtomicReference<>("v1");
+		final CountDownLatch evaluating = new CountDownLatch(1);
+		final CountDownLatch reloaded = new CountDownLatch(1);
+		
+		final PropertyChain chain = new PropertyChainBuilder()
+			.addPropertyEvaluator(new PropertyEvaluator() {
+				@Override
+				public Object get(String key) {
+					String val = value.get();
+					if ("v1".equals(val)) {
+						// Block the resolution until the chain has been reloaded
+						evaluating.countDown();
+						try {
+							reloaded.await();
+						} catch (InterruptedException ex) {
+							throw new JuRuntimeException(ex);
+						}
+					}
+					return val;
+				}
+				
+				@Override
+				public Set<String> listKeys() {
+					return Collections.singleton("p1");
+				}
+			})
+			.setCacheResolvedValues(true)
+			.getPropertyChain();
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> staleValue = executor.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					return chain.get("p1");
+				}
+			});
+			
+			evaluating.await();
+			value.set("v2");
+			chain.clearCache();
+			reloaded.countDown();
+			
+			Assert.assertEquals("v1", staleValue.get());
+			Assert.assertEquals("v2", chain.get("p1"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void propertyChain_notifiesSubscribers_ofChangedValues() throws Exception {
+		Path propFile = this.tempFolder.newFile("subscribe.properties").toPath();
+		this.writeProperties(propFile, "p1=v1\np2=${p1}\np3=v3\ndb.url=jdbc:${db.host}\ndb.host=h1", 0);
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator(JuUrl.toUrl(propFile))
+			.setReloadInterval(20, TimeUnit.MILLISECONDS)
+			.getPropertyChain();
+		
+		TestUpdateListener<PropertyInfo> p2Listener = JuEventUtils.newTestUpdateListener();
+		chain.subscribe("p2", p2Listener);
+		TestUpdateListener<PropertyInfo> p3Listener = JuEventUtils.newTestUpdateListener();
+		chain.subscribe("p3", p3Listener);
+		TestUpdateListener<PropertyInfo> dbListener = JuEventUtils.newTestUpdateListener();
+		chain.subscribe("db.", dbListener);
+		
+		// Subscribers are notified before this listener
+		TestUpdateListener<PropertyChain> chainListener = JuEventUtils.newTestUpdateListener();
+		chain.getUpdateNotifier().addListener(chainListener);
+		
+		// Change a value referenced by p2
+		this.writeProperties(propFile, "p1=v1b\np2=${p1}\np3=v3\ndb.url=jdbc:${db.host}\ndb.host=h1", 2000);
+		this.waitForCall(chainListener);
+		
+		PropertyInfo p2Info = p2Listener.assertOneCall();
+		Assert.assertEquals("p2", p2Info.getKey());
+		Assert.assertEquals("v1b", p2Info.getValue());
+		p3Listener.assertNoCall();
+		dbListener.assertNoCall();
+		
+		// Change db keys and remove p3
+		this.writeProperties(propFile, "p1=v1b\np2=${p1}\ndb.url=jdbc:${db.host}\ndb.host=h1\ndb.user=sa", 2000);
+		this.waitForCall(chainListener);
+		
+		p2Listener.assertNoCall();
+		Assert.assertNull(p3Listener.assertOneCall().getValue());
+		Assert.assertEquals("sa", dbListener.assertOneCall().getValue());
+		
+		this.writeProperties(propFile, "p1=v1b\np2=${p1}\ndb.url=jdbc:${db.host}\ndb.host=h2\ndb.user=sa", 2000);
+		this.waitForCall(chainListener);
+		
+		// db.host and db.url changed
+		Assert.assertEquals(2, dbListener.resetCalls());
+		
+		chain.unsubscribe("db.", dbListener);
+		this.writeProperties(propFile, "p1=v1b\np2=${p1}\ndb.url=jdbc:${db.host}\ndb.host=h3", 2000);
+		this.waitForCall(chainListener);
+		dbListener.assertNoCall();
+	}
+	
+	private void waitForCall(TestUpdateListener<?> listener) throws Exception {
+		for (int i = 0; i < 250 && listener.getCalls() == 0; i++) {
+			Thread.sleep(20);
+		}
+		listener.assertOneCall();
+	}
+	
+	@Test
+	public void propertyChain_doesNotReload_ifDisabled() throws Exception {
+		Path propFile = this.tempFolder.newFile("noReload.properties").toPath();
+		this.writeProperties(propFile, "p1=v1", 0);
+		
+		PropertyChain chain = new PropertyChainBuilder()
+			.addResourcePropertyEvaluator(JuUrl.toUrl(propFile))
+			.getPropertyChain();
+		
+		Assert.assertEquals("v1", chain.get("p1"));
+		
+		this.writeProperties(propFile, "p1=v1b", 2000);
+		Thread.sleep(100);
+		
+		Assert.assertEquals("v1", chain.get("p1"));
+	}
+	
+	private void writeProperties(Path file, String contents, long modificationTimeOffset) throws Exception {
+		long modificationTime = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+		Files.write(file, contents.getBytes("UTF-8"));
+		if (modificationTimeOffset > 0) {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(modificationTime + modificationTimeOffset));
+		}
+	}
+	
 	static PropertyChain createPropertiesChain(boolean enableInterpolation, String... keyValuePairs) {
 		return new PropertyChainBuilder()
 			.addListPropertyEvaluator(keyValuePairs)
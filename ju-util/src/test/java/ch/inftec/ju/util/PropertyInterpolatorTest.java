@@ -0,0 +1,95 @@
+package ch.inftec.ju.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.plexus.interpolation.AbstractValueSource;
+import org.codehaus.plexus.interpolation.InterpolationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyInterpolatorTest {
+	private final Map<String, String> values = new HashMap<>();
+	
+	private final PropertyInterpolator interpolator = new PropertyInterpolator(new AbstractValueSource(false) {
+		@Override
+		public Object getValue(String expression) {
+			return values.get(expression);
+		}
+	});
+	
+	@Test
+	public void returnsInput_withoutPlaceholders() throws Exception {
+		String input = "no placeholders";
+		Assert.assertSame(input, this.interpolator.interpolate(input));
+		Assert.assertNull(this.interpolator.interpolate(null));
+	}
+	
+	@Test
+	public void replaces_placeholders() throws Exception {
+		this.values.put("a", "A");
+		this.values.put("b", "B");
+		
+		Assert.assertEquals("xAyBz", this.interpolator.interpolate("x${a}y${b}z"));
+		Assert.assertEquals("AA", this.interpolator.interpolate("${a}${a}"));
+	}
+	
+	@Test
+	public void replaces_placeholders_recursively() throws Exception {
+		this.values.put("a", "A");
+		this.values.put("b", "${a}B");
+		
+		Assert.assertEquals("AB", this.interpolator.interpolate("${b}"));
+	}
+	
+	@Test
+	public void leaves_unresolvedPlaceholders() throws Exception {
+		this.values.put("a", "A");
+		
+		Assert.assertEquals("${x} A", this.interpolator.interpolate("${x} ${a}"));
+		Assert.assertEquals("${} ${a", this.interpolator.interpolate("${} ${a"));
+		Assert.assertEquals("${a${b}}", this.interpolator.interpolate("${a${b}}"));
+	}
+	
+	@Test
+	public void handles_dollarSign_beforePlaceholder() throws Exception {
+		this.values.put("a", "A");
+		
+		Assert.assertEquals("$A", this.interpolator.interpolate("$${a}"));
+		Assert.assertEquals("A}", this.interpolator.interpolate("${a}}"));
+	}
+	
+	@Test
+	public void detects_cycles() {
+		this.values.put("c1", "${c2}");
+		this.values.put("c2", "${c1}");
+		
+		try {
+			this.interpolator.interpolate("${c1}");
+			Assert.fail("Expected cycle to be detected");
+		} catch (InterpolationException ex) {
+			Assert.assertEquals("c1", ex.getExpression());
+		}
+	}
+	
+	@Test
+	public void doesNotDetect_cycle_forRepeatedNonRecursivePlaceholders() throws Exception {
+		this.values.put("a", "A");
+		this.values.put("b", "${a}${a}");
+		
+		Assert.assertEquals("AAAA", this.interpolator.interpolate("${b}${b}"));
+	}
+	
+	@Test
+	public void templateCache_evicts_leastRecentlyUsedTemplates() throws Exception {
+		this.values.put("a", "A");
+		
+		for (int i = 0; i < 20000; i++) {
+			Assert.assertEquals("A" + i, this.interpolator.interpolate("${a}" + i));
+		}
+		Assert.assertTrue(PropertyInterpolator.getCachedTemplateCount() <= 10000);
+		
+		JuUtils.clearPropertyChain();
+		Assert.assertEquals(0, PropertyInterpolator.getCachedTemplateCount());
+	}
+}
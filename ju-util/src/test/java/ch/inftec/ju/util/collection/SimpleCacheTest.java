@@ -2,6 +2,9 @@ package ch.inftec.ju.util.collection;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -12,7 +15,7 @@ public class SimpleCacheTest {
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
-	private Cache<String, String> cache = new SimpleCache<>(2, new Function<String, String>() {
+	private SimpleCache<String, String> cache = new SimpleCache<>(2, new Function<String, String>() {
 		@Override
 		public String apply(String s) {
 			return s + "_val";
@@ -87,4 +90,68 @@ public class SimpleCacheTest {
 			}
 		});
 	}
+
+	@Test
+	public void clear_removesAllValues() {
+		cache.put("k1", "v1");
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertEquals("k1_val", cache.get("k1"));
+	}
+
+	@Test
+	public void expiredValue_get_returnsNewValue() throws Exception {
+		Cache<String, String> expiringCache = new SimpleCache<>(2, 1, new Function<String, String>() {
+			@Override
+			public String apply(String s) {
+				return s + "_val";
+			}
+		});
+
+		expiringCache.put("k1", "v1");
+		Thread.sleep(10);
+
+		assertEquals("k1_val", expiringCache.get("k1"));
+		assertEquals(1, expiringCache.size());
+	}
+
+	@Test
+	public void slowUnknownValue_get_doesNotBlockOtherKeys() throws Exception {
+		final CountDownLatch slowGetterStarted = new CountDownLatch(1);
+		final CountDownLatch releaseSlowGetter = new CountDownLatch(1);
+		final Cache<String, String> slowCache = new SimpleCache<>(2, new Function<String, String>() {
+			@Override
+			public String apply(String s) {
+				if ("slow".equals(s)) {
+					slowGetterStarted.countDown();
+					try {
+						releaseSlowGetter.await();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return s + "_val";
+			}
+		});
+
+		final String[] slowValue = new String[1];
+		Thread slowThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				slowValue[0] = slowCache.get("slow");
+			}
+		});
+		slowThread.start();
+
+		try {
+			assertTrue(slowGetterStarted.await(10, TimeUnit.SECONDS));
+			assertEquals("fast_val", slowCache.get("fast"));
+		} finally {
+			releaseSlowGetter.countDown();
+			slowThread.join();
+		}
+		assertEquals("slow_val", slowValue[0]);
+		assertEquals(2, slowCache.size());
+	}
 }
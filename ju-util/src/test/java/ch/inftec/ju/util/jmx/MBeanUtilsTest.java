@@ -1,5 +1,7 @@
 package ch.inftec.ju.util.jmx;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -18,6 +20,46 @@ public class MBeanUtilsTest {
 		Assert.assertTrue(val > 0);
 	}
 	
+	@Test
+	public void canRegister_andUnregister_mbean() {
+		String objectName = "ch.inftec.ju:type=PropertyChain,name=MBeanUtilsTest";
+		
+		PropertyChainMetrics metrics = new PropertyChainMetrics(Arrays.asList("evaluator"));
+		metrics.recordLookup("key");
+		MBeanUtils.registerPlatformMBean(objectName, metrics);
+		
+		try {
+			Assert.assertEquals(new Long(1), MBeanUtils.queryPlatformMBeanServer(objectName).getAttribute("LookupCount").get(Long.class));
+			
+			// Registering again replaces the MBean
+			MBeanUtils.registerPlatformMBean(objectName, new PropertyChainMetrics(Arrays.asList("evaluator")));
+			Assert.assertEquals(new Long(0), MBeanUtils.queryPlatformMBeanServer(objectName).getAttribute("LookupCount").get(Long.class));
+		} finally {
+			Assert.assertTrue(MBeanUtils.unregisterPlatformMBean(objectName));
+		}
+		Assert.assertFalse(MBeanUtils.unregisterPlatformMBean(objectName));
+	}
+	
+	@Test
+	public void propertyChainMetrics_limit_trackedKeys() {
+		PropertyChainMetrics metrics = new PropertyChainMetrics(Arrays.asList("evaluator"), 2);
+		metrics.recordLookup("k1");
+		metrics.recordLookup("k2");
+		metrics.recordLookup("k3");
+		metrics.recordLookup("k1");
+		metrics.recordLookup("k3");
+		
+		Assert.assertEquals(5, metrics.getLookupCount());
+		Assert.assertEquals(2, metrics.getKeyLookupCounts().size());
+		Assert.assertEquals(new Long(2), metrics.getKeyLookupCounts().get("k1"));
+		Assert.assertEquals(2, metrics.getUntrackedKeyLookupCount());
+		
+		metrics.reset();
+		metrics.recordLookup("k3");
+		Assert.assertEquals(new Long(1), metrics.getKeyLookupCounts().get("k3"));
+		Assert.assertEquals(0, metrics.getUntrackedKeyLookupCount());
+	}
+	
 	@Test
 	public void invalidObjectName_throwException() {
 		thrown.expect(JuRuntimeException.class);